@@ -39,6 +39,12 @@ public class BookService {
                 .map(this::convertToDTO);
     }
 
+    public List<BookDTO> getBooksByIds(List<Long> ids) {
+        return bookRepository.findAllById(ids).stream()
+                .map(this::convertToDTO)
+                .collect(Collectors.toList());
+    }
+
     public List<BookDTO> searchBooksByTitle(String title) {
         return bookRepository.findByTitleContainingIgnoreCase(title).stream()
                 .map(this::convertToDTO)
@@ -22,6 +22,9 @@ repositories {
 dependencies {
     implementation("org.springframework.boot:spring-boot-starter-web")
     implementation("org.springframework.boot:spring-boot-starter-data-jpa")
+    implementation("org.springframework.boot:spring-boot-starter-actuator")
+    implementation("org.flywaydb:flyway-core")
+    runtimeOnly("org.flywaydb:flyway-mysql")
     runtimeOnly("com.mysql:mysql-connector-j")
     compileOnly("org.projectlombok:lombok")
     annotationProcessor("org.projectlombok:lombok")
@@ -34,3 +37,16 @@ dependencies {
 tasks.withType<Test> {
     useJUnitPlatform()
 }
+
+// "benchmark" times request hot paths; "loadTest" measures checkout throughput against slow stub
+// upstreams on platform vs virtual threads. The Docker build context only holds this service and
+// skips tests, so it builds without the shared convention.
+val benchmarkConventions = file("../gradle/benchmark-conventions.gradle.kts")
+if (benchmarkConventions.exists()) {
+    apply(from = benchmarkConventions)
+}
+
+// Print a stack trace whenever a virtual thread blocks while pinned to its carrier
+tasks.named<org.springframework.boot.gradle.tasks.run.BootRun>("bootRun") {
+    jvmArgs("-Djdk.tracePinnedThreads=short")
+}
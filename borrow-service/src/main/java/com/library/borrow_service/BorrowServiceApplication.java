@@ -1,8 +1,14 @@
 package com.library.borrow_service;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 
@@ -14,9 +20,18 @@ public class BorrowServiceApplication {
 		SpringApplication.run(BorrowServiceApplication.class, args);
 	}
 
+	// JDK HttpClient blocks without pinning virtual threads; timeouts stop a slow dependency from holding callers forever
 	@Bean
-	public RestTemplate restTemplate() {
-		return new RestTemplate();
+	public RestTemplate restTemplate(@Value("${borrow.http.connect-timeout-ms:2000}") long connectTimeoutMillis,
+									 @Value("${borrow.http.read-timeout-ms:5000}") long readTimeoutMillis) {
+		HttpClient httpClient = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+				.executor(Executors.newVirtualThreadPerTaskExecutor())
+				.build();
+		JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+		requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMillis));
+		return new RestTemplate(requestFactory);
 	}
 
 }
@@ -0,0 +1,93 @@
+package com.library.borrow_service.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * In-memory cache with a time-to-live per entry and a size bound. When full, the least recently
+ * used entry is evicted, one at a time, instead of dropping the whole cache. Expired entries are
+ * removed as they are read.
+ */
+public class BoundedTtlCache<K, V> {
+
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    public BoundedTtlCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        // Access order: get and put move an entry to the tail, the head is the eviction candidate
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    // Null when absent or expired
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(System.currentTimeMillis())) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value();
+    }
+
+    public synchronized void put(K key, V value, long ttlMillis) {
+        entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+    }
+
+    // Stores value unless a live entry exists; returns that live value, or null when value was stored
+    public synchronized V putIfAbsent(K key, V value, long ttlMillis) {
+        V existing = get(key);
+        if (existing != null) {
+            return existing;
+        }
+        put(key, value, ttlMillis);
+        return null;
+    }
+
+    // Replaces the entry only while it still holds expected, compared by identity
+    public synchronized boolean replace(K key, V expected, V value, long ttlMillis) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null || entry.value() != expected) {
+            return false;
+        }
+        put(key, value, ttlMillis);
+        return true;
+    }
+
+    public synchronized void remove(K key) {
+        entries.remove(key);
+    }
+
+    // Removes the entry only while it still holds expected, compared by identity
+    public synchronized boolean remove(K key, V expected) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null || entry.value() != expected) {
+            return false;
+        }
+        entries.remove(key);
+        return true;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+        Entry {
+            Objects.requireNonNull(value);
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.library.borrow_service.config;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
@@ -12,14 +13,19 @@ import com.library.borrow_service.repository.BorrowRepository;
 public class DataInitializer implements CommandLineRunner {
 
     private final BorrowRepository borrowRepository;
+    private final ShardRouter shardRouter;
 
-    public DataInitializer(BorrowRepository borrowRepository) {
+    public DataInitializer(BorrowRepository borrowRepository, ShardRouter shardRouter) {
         this.borrowRepository = borrowRepository;
+        this.shardRouter = shardRouter;
     }
 
     @Override
     public void run(String... args) throws Exception {
-        if (borrowRepository.count() == 0) {
+        long existing = shardRouter.scatter(() -> List.of(borrowRepository.count())).stream()
+                .mapToLong(Long::longValue)
+                .sum();
+        if (existing == 0) {
             createSampleData();
             System.out.println("Sample borrow data initialized successfully!");
         } else {
@@ -36,7 +42,7 @@ public class DataInitializer implements CommandLineRunner {
         borrow1.setBorrowDate(now.minusDays(5));
         borrow1.setDueDate(now.plusDays(9));
         borrow1.setStatus(Borrow.BorrowStatus.BORROWED);
-        borrowRepository.save(borrow1);
+        save(borrow1);
 
         Borrow borrow2 = new Borrow();
         borrow2.setUserId(4L);
@@ -45,7 +51,7 @@ public class DataInitializer implements CommandLineRunner {
         borrow2.setDueDate(now.minusDays(6));
         borrow2.setReturnDate(now.minusDays(8));
         borrow2.setStatus(Borrow.BorrowStatus.RETURNED);
-        borrowRepository.save(borrow2);
+        save(borrow2);
 
         Borrow borrow3 = new Borrow();
         borrow3.setUserId(3L);
@@ -54,7 +60,7 @@ public class DataInitializer implements CommandLineRunner {
         borrow3.setDueDate(now.minusDays(11)); // Due date was 11 days ago
         borrow3.setReturnDate(now.minusDays(8)); // Returned 8 days ago (3 days late)
         borrow3.setStatus(Borrow.BorrowStatus.RETURNED);
-        borrowRepository.save(borrow3);
+        save(borrow3);
 
         Borrow borrow4 = new Borrow();
         borrow4.setUserId(4L);
@@ -63,7 +69,7 @@ public class DataInitializer implements CommandLineRunner {
         borrow4.setDueDate(now.minusDays(1)); // Due date was yesterday
         borrow4.setReturnDate(now.minusDays(1)); // Returned yesterday (on time)
         borrow4.setStatus(Borrow.BorrowStatus.RETURNED);
-        borrowRepository.save(borrow4);
+        save(borrow4);
 
 
         Borrow borrow5 = new Borrow();
@@ -72,9 +78,13 @@ public class DataInitializer implements CommandLineRunner {
         borrow5.setBorrowDate(now.minusDays(3));
         borrow5.setDueDate(now.plusDays(11));
         borrow5.setStatus(Borrow.BorrowStatus.BORROWED);
-        borrowRepository.save(borrow5);
+        save(borrow5);
 
         // Note: Fines are now calculated automatically based on return date vs due date
         // Additional fines (lost, damage) can be added manually if needed
     }
-}
\ No newline at end of file
+
+    private void save(Borrow borrow) {
+        shardRouter.onUser(borrow.getUserId(), () -> borrowRepository.save(borrow));
+    }
+}
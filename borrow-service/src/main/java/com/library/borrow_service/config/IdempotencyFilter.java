@@ -0,0 +1,171 @@
+package com.library.borrow_service.config;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import com.library.borrow_service.cache.BoundedTtlCache;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Replays the stored response when a mutation is retried with the same Idempotency-Key.
+ * Keys are scoped to method and path and kept in a bounded in-memory store with a TTL, so a
+ * duplicate is answered without reaching the controllers, MySQL or downstream services. Each key
+ * remembers a hash of the request body it was first used with; reusing it for a different body
+ * is rejected with 422 rather than answered with the other request's response.
+ */
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final Set<String> MUTATING_METHODS = Set.of("POST", "PUT", "PATCH", "DELETE");
+
+    private final long ttlMillis;
+    private final BoundedTtlCache<String, StoredResponse> responses;
+
+    public IdempotencyFilter(@Value("${borrow.idempotency.ttl-seconds:86400}") long ttlSeconds,
+                             @Value("${borrow.idempotency.max-size:10000}") int maxSize) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.responses = new BoundedTtlCache<>(maxSize);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !MUTATING_METHODS.contains(request.getMethod()) || request.getHeader(IDEMPOTENCY_KEY_HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String storeKey = request.getMethod() + " " + request.getRequestURI() + " " + request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        // Read up front to hash it; the controllers read the same bytes from the wrapper
+        CachedBodyRequest cachedRequest = new CachedBodyRequest(request);
+        byte[] requestHash = sha256(cachedRequest.body);
+        StoredResponse inFlight = StoredResponse.inFlight(requestHash);
+        StoredResponse existing = responses.putIfAbsent(storeKey, inFlight, ttlMillis);
+        if (existing != null) {
+            replay(existing, requestHash, response);
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(cachedRequest, wrapper);
+        } catch (IOException | ServletException | RuntimeException e) {
+            // Failed requests are not remembered, so the client can retry them
+            responses.remove(storeKey, inFlight);
+            throw e;
+        }
+
+        if (wrapper.getStatus() >= 500) {
+            responses.remove(storeKey, inFlight);
+        } else {
+            responses.replace(storeKey, inFlight, new StoredResponse(false, requestHash, wrapper.getStatus(),
+                    wrapper.getContentType(), wrapper.getContentAsByteArray()), ttlMillis);
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    private void replay(StoredResponse stored, byte[] requestHash, HttpServletResponse response) throws IOException {
+        if (!MessageDigest.isEqual(stored.requestHash(), requestHash)) {
+            response.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value(),
+                    "This Idempotency-Key was already used with a different request body");
+            return;
+        }
+        if (stored.inProgress()) {
+            response.sendError(HttpStatus.CONFLICT.value(), "A request with this Idempotency-Key is still in progress");
+            return;
+        }
+        response.setStatus(stored.status());
+        if (stored.contentType() != null) {
+            response.setContentType(stored.contentType());
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(stored.body().length);
+        response.getOutputStream().write(stored.body());
+    }
+
+    private static byte[] sha256(byte[] body) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(body);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record StoredResponse(boolean inProgress, byte[] requestHash, int status, String contentType, byte[] body) {
+
+        static StoredResponse inFlight(byte[] requestHash) {
+            return new StoredResponse(true, requestHash, 0, null, new byte[0]);
+        }
+    }
+
+    // Serves the body read up front to every getInputStream or getReader call
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = request.getInputStream().readAllBytes();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return input.read(buffer, offset, length);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException("Asynchronous reads are not supported");
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+}
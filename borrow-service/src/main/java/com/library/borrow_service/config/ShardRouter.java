@@ -0,0 +1,140 @@
+package com.library.borrow_service.config;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Picks the shard that borrow and fine rows live on. A user's rows live on shard userId mod N.
+ * Each shard hands out ids from its own range of ID_RANGE ids, so an id alone names its shard.
+ * With borrow.sharding.urls unset there is one shard and every call runs inline.
+ */
+@Component
+public class ShardRouter {
+
+    public static final long ID_RANGE = 1_000_000_000_000L;
+
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+    private final int shardCount;
+
+    public ShardRouter(@Value("${borrow.sharding.urls:}") String[] shardUrls) {
+        this.shardCount = Math.max(shardUrls.length, 1);
+    }
+
+    // Shard the routing data source connects to on this thread; null means shard 0
+    static Integer currentShard() {
+        return CURRENT_SHARD.get();
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    public boolean isSharded() {
+        return shardCount > 1;
+    }
+
+    public int shardForUser(Long userId) {
+        return (int) Math.floorMod(userId, (long) shardCount);
+    }
+
+    public int shardForId(Long id) {
+        if (!holdsId(id)) {
+            throw new IllegalArgumentException("No shard holds id " + id);
+        }
+        return (int) (id / ID_RANGE);
+    }
+
+    // False for an id outside every shard's range, which can name no row at all
+    public boolean holdsId(Long id) {
+        return id != null && id > 0 && id / ID_RANGE < shardCount;
+    }
+
+    public <T> T onUser(Long userId, Supplier<T> action) {
+        return isSharded() ? onShard(shardForUser(userId), action) : action.get();
+    }
+
+    public <T> T onId(Long id, Supplier<T> action) {
+        return isSharded() ? onShard(shardForId(id), action) : action.get();
+    }
+
+    // The shard must be chosen before a transaction opens its connection
+    public <T> T onShard(int shard, Supplier<T> action) {
+        if (!isSharded()) {
+            return action.get();
+        }
+        Integer previous = CURRENT_SHARD.get();
+        int active = previous != null ? previous : 0;
+        if (active != shard && TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Cannot switch from shard " + active + " to shard " + shard
+                    + " inside a transaction");
+        }
+        CURRENT_SHARD.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous != null) {
+                CURRENT_SHARD.set(previous);
+            } else {
+                CURRENT_SHARD.remove();
+            }
+        }
+    }
+
+    // Runs a maintenance job once per shard, one shard after another
+    public void forEachShard(Runnable job) {
+        for (int shard = 0; shard < shardCount; shard++) {
+            onShard(shard, () -> {
+                job.run();
+                return null;
+            });
+        }
+    }
+
+    // Runs the query on every shard in parallel and concatenates the rows in shard order
+    public <T> List<T> scatter(Supplier<List<T>> query) {
+        if (!isSharded()) {
+            return query.get();
+        }
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<List<T>>> results = new ArrayList<>();
+            for (int shard = 0; shard < shardCount; shard++) {
+                int target = shard;
+                results.add(executor.submit(() -> onShard(target, query)));
+            }
+            List<T> rows = new ArrayList<>();
+            for (Future<List<T>> result : results) {
+                rows.addAll(result.get());
+            }
+            return rows;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying shards");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Shard query failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    public Map<Integer, List<Long>> groupIdsByShard(Collection<Long> ids) {
+        Map<Integer, List<Long>> groups = new TreeMap<>();
+        for (Long id : ids) {
+            groups.computeIfAbsent(isSharded() ? shardForId(id) : 0, shard -> new ArrayList<>()).add(id);
+        }
+        return groups;
+    }
+}
@@ -0,0 +1,88 @@
+package com.library.borrow_service.config;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Replaces the single borrow_db data source with one pool per URL in borrow.sharding.urls.
+ * The spring.datasource username, password and driver apply to every shard. Every shard is
+ * migrated by Flyway on startup, and its id sequences are moved into the shard's range.
+ */
+@Configuration
+@ConditionalOnExpression("!'${borrow.sharding.urls:}'.isEmpty()")
+public class ShardingConfig {
+
+    // Tables whose ids are generated by the shard and looked up without a user id
+    private static final List<String> SHARDED_ID_TABLES = List.of("borrows", "borrow_fines");
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties, @Value("${borrow.sharding.urls}") String[] shardUrls) {
+        Map<Object, Object> shards = new HashMap<>();
+        for (int shard = 0; shard < shardUrls.length; shard++) {
+            HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .url(shardUrls[shard].trim())
+                    .build();
+            dataSource.setPoolName("borrow-shard-" + shard);
+            shards.put(shard, dataSource);
+        }
+
+        ShardRoutingDataSource routingDataSource = new ShardRoutingDataSource();
+        routingDataSource.setTargetDataSources(shards);
+        // Code paths that never pick a shard keep working against shard 0
+        routingDataSource.setDefaultTargetDataSource(shards.get(0));
+        routingDataSource.afterPropertiesSet();
+        return routingDataSource;
+    }
+
+    @Bean
+    public FlywayMigrationStrategy shardMigrationStrategy(DataSource dataSource) {
+        return flyway -> {
+            Map<Object, DataSource> shards = ((ShardRoutingDataSource) dataSource).getResolvedDataSources();
+            shards.forEach((shard, shardDataSource) -> {
+                Flyway.configure()
+                        .configuration(flyway.getConfiguration())
+                        .dataSource(shardDataSource)
+                        .load()
+                        .migrate();
+                moveIdsIntoRange((Integer) shard, new JdbcTemplate(shardDataSource));
+            });
+        };
+    }
+
+    // Shard k generates ids from k * ID_RANGE + 1; shard 0 keeps the ids of the unsharded database
+    private static void moveIdsIntoRange(int shard, JdbcTemplate jdbcTemplate) {
+        long firstId = shard * ShardRouter.ID_RANGE + 1;
+        for (String table : SHARDED_ID_TABLES) {
+            Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+            if (maxId != null && maxId < firstId) {
+                jdbcTemplate.execute("ALTER TABLE " + table + " AUTO_INCREMENT = " + firstId);
+            }
+        }
+    }
+
+    static class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+        @Override
+        protected Object determineCurrentLookupKey() {
+            return ShardRouter.currentShard();
+        }
+    }
+}
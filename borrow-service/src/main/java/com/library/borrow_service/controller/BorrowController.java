@@ -1,12 +1,19 @@
 package com.library.borrow_service.controller;
 
-import java.math.BigDecimal;
-import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -16,13 +23,23 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.library.borrow_service.config.ShardRouter;
+import com.library.borrow_service.dto.BorrowBatchResultDTO;
+import com.library.borrow_service.dto.BorrowDTO;
 import com.library.borrow_service.dto.BorrowWithFineDTO;
+import com.library.borrow_service.dto.KeysetPageDTO;
 import com.library.borrow_service.entity.Borrow;
-import com.library.borrow_service.repository.BorrowFineRepository;
+import com.library.borrow_service.repository.BorrowArchiveRepository;
 import com.library.borrow_service.repository.BorrowRepository;
+import com.library.borrow_service.service.BookTitleService;
+import com.library.borrow_service.service.BorrowLockService;
+import com.library.borrow_service.service.BorrowService;
+import com.library.borrow_service.service.CheckoutValidator;
+import com.library.borrow_service.service.ExportService;
 
 @RestController
 @RequestMapping("/borrows")
@@ -30,217 +47,239 @@ import com.library.borrow_service.repository.BorrowRepository;
 public class BorrowController {
 
     private final BorrowRepository borrowRepository;
-    private final BorrowFineRepository borrowFineRepository;
-    private final RestTemplate restTemplate;
-
-    public BorrowController(BorrowRepository borrowRepository, BorrowFineRepository borrowFineRepository, RestTemplate restTemplate) {
+    private final BorrowArchiveRepository borrowArchiveRepository;
+    private final BookTitleService bookTitleService;
+    private final CheckoutValidator checkoutValidator;
+    private final ExportService exportService;
+    private final BorrowService borrowService;
+    private final BorrowLockService borrowLockService;
+    private final ShardRouter shardRouter;
+
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_BATCH_SIZE = 100;
+
+    public BorrowController(BorrowRepository borrowRepository, BorrowArchiveRepository borrowArchiveRepository,
+                            BookTitleService bookTitleService, CheckoutValidator checkoutValidator,
+                            ExportService exportService, BorrowService borrowService,
+                            BorrowLockService borrowLockService, ShardRouter shardRouter) {
         this.borrowRepository = borrowRepository;
-        this.borrowFineRepository = borrowFineRepository;
-        this.restTemplate = restTemplate;
+        this.borrowArchiveRepository = borrowArchiveRepository;
+        this.bookTitleService = bookTitleService;
+        this.checkoutValidator = checkoutValidator;
+        this.exportService = exportService;
+        this.borrowService = borrowService;
+        this.borrowLockService = borrowLockService;
+        this.shardRouter = shardRouter;
     }
 
+    // The most recent loans only, newest first; /borrows/page walks all of them and /borrows/export streams them
     @GetMapping
-    public ResponseEntity<List<Borrow>> getAllBorrows() {
-        List<Borrow> borrows = borrowRepository.findAll();
+    public ResponseEntity<List<Borrow>> getAllBorrows(@RequestParam(defaultValue = "" + MAX_PAGE_SIZE) int limit) {
+        int rowLimit = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        List<Borrow> borrows = shardRouter.scatter(() -> borrowRepository.findAllByOrderByIdDesc(PageRequest.of(0, rowLimit)))
+                .stream()
+                .sorted(Comparator.comparing(Borrow::getId).reversed())
+                .limit(rowLimit)
+                .collect(Collectors.toList());
         return ResponseEntity.ok(borrows);
     }
 
+    @GetMapping("/overdue")
+    public ResponseEntity<List<BorrowDTO>> getOverdueBorrows() {
+        return ResponseEntity.ok(borrowService.getOverdueBorrows());
+    }
+
+    @GetMapping("/page")
+    public ResponseEntity<KeysetPageDTO<Borrow>> getBorrowsPage(
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(required = false) Borrow.BorrowStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        // Each shard returns its own first pageSize + 1 rows after the key; the merged first pageSize + 1 are the page
+        List<Borrow> rows = shardRouter.scatter(() -> borrowRepository.findPageAfter(afterId != null ? afterId : 0L, status,
+                from != null ? from.atStartOfDay() : null,
+                to != null ? to.plusDays(1).atStartOfDay() : null,
+                PageRequest.of(0, pageSize + 1))).stream()
+                .sorted(Comparator.comparing(Borrow::getId))
+                .limit(pageSize + 1L)
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(KeysetPageDTO.of(rows, pageSize, Borrow::getId));
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportBorrows(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) Borrow.BorrowStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        boolean csv = ExportService.isCsv(format);
+        StreamingResponseBody body = outputStream -> exportService.writeBorrows(format, status, from, to, outputStream);
+        return ResponseEntity.ok()
+            .contentType(csv ? MediaType.parseMediaType("text/csv") : MediaType.parseMediaType("application/x-ndjson"))
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=borrows." + (csv ? "csv" : "ndjson"))
+            .body(body);
+    }
+
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<BorrowWithFineDTO>> getBorrowsByUser(@PathVariable Long userId) {
-        List<Borrow> borrows = borrowRepository.findByUserId(userId);
+    public ResponseEntity<List<BorrowWithFineDTO>> getBorrowsByUser(@PathVariable Long userId,
+            @RequestParam(defaultValue = "false") boolean fullHistory) {
+        List<Borrow> borrows = shardRouter.onUser(userId, () -> {
+            List<Borrow> rows = new ArrayList<>(borrowRepository.findByUserId(userId));
+            if (fullHistory) {
+                // Archived loans live in cold storage and are only read when the full history is asked for
+                borrowArchiveRepository.findByUserId(userId).forEach(archived -> rows.add(archived.toBorrow()));
+            }
+            return rows;
+        });
+        if (borrows.isEmpty()) {
+            return ResponseEntity.ok(List.of());
+        }
+
+        // Fines are materialized on the borrow; one title lookup for the whole page
+        Map<Long, String> bookTitles = bookTitleService.getBookTitles(
+                borrows.stream().map(Borrow::getBookId).collect(Collectors.toSet()));
 
         List<BorrowWithFineDTO> borrowWithFineDTOs = borrows.stream()
             .map(borrow -> {
-                BigDecimal calculatedFine = calculateFine(borrow);
-                String bookTitle = getBookTitle(borrow.getBookId());
-                return new BorrowWithFineDTO(borrow, calculatedFine, bookTitle);
+                String bookTitle = bookTitles.get(borrow.getBookId());
+                return new BorrowWithFineDTO(borrow, borrow.getFineAmount(), bookTitle);
             })
             .collect(Collectors.toList());
 
         return ResponseEntity.ok(borrowWithFineDTOs);
     }
 
-    private BigDecimal calculateFine(Borrow borrow) {
-        // Calculate fine based on return date vs due date
-        if (borrow.getStatus() == Borrow.BorrowStatus.LATE_RETURNED) {
-            if (borrow.getReturnDate() != null && borrow.getReturnDate().isAfter(borrow.getDueDate())) {
-                // Calculate number of days overdue
-                long daysOverdue = java.time.Duration.between(borrow.getDueDate(), borrow.getReturnDate()).toDays();
-                if (daysOverdue > 0) {
-                    // 10,000 VND per day overdue
-                    return BigDecimal.valueOf(daysOverdue * 10000);
-                }
-            } else if (borrow.getReturnDate() == null) {
-                // Still borrowed but overdue, calculate based on current date
-                long daysOverdue = java.time.Duration.between(borrow.getDueDate(), LocalDateTime.now()).toDays();
-                if (daysOverdue > 0) {
-                    // 10,000 VND per day overdue
-                    return BigDecimal.valueOf(daysOverdue * 10000);
-                }
-            }
-        }
+    @PostMapping
+    public ResponseEntity<BorrowDTO> createBorrow(@RequestBody CreateBorrowRequest request) {
+        System.out.println("BorrowController: Received create borrow request for userId=" + request.getUserId() + ", bookId=" + request.getBookId());
 
-        // Check for additional fines from borrow_fines table (lost, damage, etc.)
-        List<com.library.borrow_service.entity.BorrowFine> fines = borrowFineRepository.findByBorrowId(borrow.getId());
-        return fines.stream()
-            .map(com.library.borrow_service.entity.BorrowFine::getAmount)
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
-    }
+        // A locked user is turned away before the user-service and book-service round trips
+        if (borrowLockService.isLocked(request.getUserId())) {
+            throw new IllegalStateException("User is locked from borrowing due to outstanding fines");
+        }
 
-    private String getBookTitle(Long bookId) {
-        try {
-            String url = "http://localhost:8082/books/" + bookId;
-            ResponseEntity<Object> response = restTemplate.getForEntity(url, Object.class);
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                // Assuming the response is a map with "title" key
-                if (response.getBody() instanceof java.util.Map) {
-                    java.util.Map<String, Object> book = (java.util.Map<String, Object>) response.getBody();
-                    return (String) book.get("title");
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Error fetching book title for bookId " + bookId + ": " + e.getMessage());
+        // Accept either date-only (yyyy-MM-dd) or full ISO datetime
+        LocalDateTime borrowDate = RequestDateBinder.parse(request.getBorrowDate());
+        LocalDateTime dueDate = RequestDateBinder.parse(request.getDueDate());
+        if ((request.getBorrowDate() != null && borrowDate == null) || (request.getDueDate() != null && dueDate == null)) {
+            System.err.println("BorrowController: Failed to parse date fields: borrowDate=" + request.getBorrowDate()
+                    + ", dueDate=" + request.getDueDate());
+            throw new IllegalArgumentException("Invalid date format for borrowDate or dueDate");
         }
-        return "N/A";
+
+        // Validate that user and book exist, in parallel
+        checkoutValidator.validateUserAndBook(request.getUserId(), request.getBookId());
+
+        return ResponseEntity.ok(shardRouter.onUser(request.getUserId(),
+                () -> borrowService.borrowBook(request.getUserId(), request.getBookId(), borrowDate, dueDate)));
     }
 
-    @PostMapping
-    public ResponseEntity<Borrow> createBorrow(@RequestBody CreateBorrowRequest request) {
-        System.out.println("BorrowController: Received create borrow request for userId=" + request.getUserId() + ", bookId=" + request.getBookId());
-        
-        // Validate that user exists
-        try {
-            String userUrl = "http://localhost:8081/users/" + request.getUserId() + "/profile";
-            ResponseEntity<Object> userResponse = restTemplate.getForEntity(userUrl, Object.class);
-            if (!userResponse.getStatusCode().is2xxSuccessful()) {
-                throw new IllegalArgumentException("User not found");
-            }
-        } catch (Exception e) {
-            System.err.println("BorrowController: Failed to validate user: " + e.getMessage());
-            throw new IllegalArgumentException("Invalid userId");
+    // Circulation desk checkout: one user check, one book lookup and one transaction for all scanned books
+    @PostMapping("/batch")
+    public ResponseEntity<List<BorrowBatchResultDTO>> createBorrows(@RequestBody BatchBorrowRequest request) {
+        if (request.getUserId() == null || request.getBookIds() == null || request.getBookIds().isEmpty()) {
+            throw new IllegalArgumentException("userId and bookIds are required");
         }
+        if (request.getBookIds().size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_SIZE + " books per batch");
+        }
+        System.out.println("BorrowController: Received batch borrow request for userId=" + request.getUserId()
+                + ", " + request.getBookIds().size() + " books");
 
-        // Validate that book exists
-        try {
-            String bookUrl = "http://localhost:8082/books/" + request.getBookId();
-            ResponseEntity<Object> bookResponse = restTemplate.getForEntity(bookUrl, Object.class);
-            if (!bookResponse.getStatusCode().is2xxSuccessful()) {
-                throw new IllegalArgumentException("Book not found");
-            }
-        } catch (Exception e) {
-            System.err.println("BorrowController: Failed to validate book: " + e.getMessage());
-            throw new IllegalArgumentException("Invalid bookId");
-        }
-
-        // Check if user already has an active borrow for this book
-        List<Borrow> existingBorrows = borrowRepository.findByUserIdAndBookIdAndStatus(
-            request.getUserId(), 
-            request.getBookId(), 
-            Borrow.BorrowStatus.BORROWED
-        );
-        
-        if (!existingBorrows.isEmpty()) {
-            Borrow existingBorrow = existingBorrows.get(0);
-            System.out.println("BorrowController: Found existing borrow record, updating due date: " + existingBorrow.getId());
-            // Update the due date if provided
-            if (request.getDueDate() != null) {
-                try {
-                    Instant instant = Instant.parse(request.getDueDate());
-                    existingBorrow.setDueDate(LocalDateTime.ofInstant(instant, ZoneId.systemDefault()));
-                } catch (java.time.format.DateTimeParseException ex) {
-                    existingBorrow.setDueDate(java.time.LocalDate.parse(request.getDueDate()).atStartOfDay());
-                }
-            }
-            Borrow updatedBorrow = borrowRepository.save(existingBorrow);
-            return ResponseEntity.ok(updatedBorrow);
-        }
-
-        System.out.println("BorrowController: Creating new borrow record");
-        Borrow borrow = new Borrow();
-        borrow.setUserId(request.getUserId());
-        borrow.setBookId(request.getBookId());
-        // Parse borrowDate and dueDate. Accept either date-only (yyyy-MM-dd) or full ISO datetime.
-        try {
-            if (request.getBorrowDate() != null) {
-                try {
-                    Instant instant = Instant.parse(request.getBorrowDate());
-                    borrow.setBorrowDate(LocalDateTime.ofInstant(instant, ZoneId.systemDefault()));
-                } catch (java.time.format.DateTimeParseException ex) {
-                    borrow.setBorrowDate(java.time.LocalDate.parse(request.getBorrowDate()).atStartOfDay());
-                }
-            } else {
-                borrow.setBorrowDate(LocalDateTime.now());
-            }
+        LocalDateTime dueDate = RequestDateBinder.bind(request.getDueDate(), "dueDate");
 
-            if (request.getDueDate() != null) {
-                try {
-                    Instant instant = Instant.parse(request.getDueDate());
-                    borrow.setDueDate(LocalDateTime.ofInstant(instant, ZoneId.systemDefault()));
-                } catch (java.time.format.DateTimeParseException ex) {
-                    borrow.setDueDate(java.time.LocalDate.parse(request.getDueDate()).atStartOfDay());
-                }
-            } else {
-                throw new IllegalArgumentException("Due date is required");
-            }
-        } catch (Exception e) {
-            System.err.println("BorrowController: Failed to parse date fields: " + e.getMessage());
-            throw new IllegalArgumentException("Invalid date format for borrowDate or dueDate");
-        }
+        Set<Long> knownBookIds = checkoutValidator.validateUserAndBooks(request.getUserId(), request.getBookIds());
+        return ResponseEntity.ok(shardRouter.onUser(request.getUserId(),
+                () -> borrowService.borrowBooks(request.getUserId(), request.getBookIds(), knownBookIds, dueDate)));
+    }
 
-        borrow.setStatus(Borrow.BorrowStatus.BORROWED);
+    // Circulation desk return: per-item results, fines and user locks applied in one transaction
+    @PutMapping("/return/batch")
+    public ResponseEntity<List<BorrowBatchResultDTO>> markReturnedBatch(@RequestBody List<Long> borrowIds) {
+        if (borrowIds == null || borrowIds.isEmpty()) {
+            throw new IllegalArgumentException("borrowIds are required");
+        }
+        if (borrowIds.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_SIZE + " borrows per batch");
+        }
+        // An id outside every shard's range names no borrow; it gets its own not-found result
+        List<Long> knownIds = borrowIds.stream().filter(shardRouter::holdsId).collect(Collectors.toList());
+        Map<Integer, List<Long>> idsByShard = shardRouter.groupIdsByShard(knownIds);
+        if (idsByShard.size() == 1 && knownIds.size() == borrowIds.size()) {
+            Map.Entry<Integer, List<Long>> only = idsByShard.entrySet().iterator().next();
+            return ResponseEntity.ok(shardRouter.onShard(only.getKey(), () -> borrowService.returnBooks(borrowIds)));
+        }
 
-        Borrow savedBorrow = borrowRepository.save(borrow);
-        System.out.println("BorrowController: Created new borrow record with id: " + savedBorrow.getId());
-        return ResponseEntity.ok(savedBorrow);
+        // Borrows of users on different shards: one transaction per shard, results back in request order
+        Map<Long, BorrowBatchResultDTO> resultsById = new HashMap<>();
+        idsByShard.forEach((shard, ids) -> shardRouter.onShard(shard, () -> borrowService.returnBooks(ids))
+                .forEach(result -> resultsById.putIfAbsent(result.getBorrowId(), result)));
+        return ResponseEntity.ok(borrowIds.stream()
+                .map(borrowId -> resultsById.getOrDefault(borrowId,
+                        BorrowBatchResultDTO.failed(null, borrowId, "Borrow record not found")))
+                .collect(Collectors.toList()));
     }
 
     @PutMapping("/{borrowId}/return")
-    public ResponseEntity<Borrow> markReturned(@PathVariable Long borrowId) {
-        return borrowRepository.findById(borrowId)
-            .map(borrow -> {
-                borrow.setReturnDate(LocalDateTime.now());
-                borrow.setStatus(LocalDateTime.now().isAfter(borrow.getDueDate()) ? Borrow.BorrowStatus.LATE_RETURNED : Borrow.BorrowStatus.RETURNED);
-                Borrow updated = borrowRepository.save(borrow);
-                return ResponseEntity.ok(updated);
-            })
-            .orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<BorrowDTO> markReturned(@PathVariable Long borrowId) {
+        return shardRouter.onId(borrowId, () -> {
+            if (!borrowRepository.existsById(borrowId)) {
+                return ResponseEntity.<BorrowDTO>notFound().build();
+            }
+            // Settles the late fine and the borrow's fine total in the same transaction as the return
+            return ResponseEntity.ok(borrowService.returnBook(borrowId));
+        });
     }
 
     @PutMapping("/{borrowId}")
     public ResponseEntity<Borrow> updateBorrow(@PathVariable Long borrowId, @RequestBody UpdateBorrowRequest request) {
-        return borrowRepository.findById(borrowId)
+        return shardRouter.onId(borrowId, () -> borrowRepository.findById(borrowId)
             .map(borrow -> {
                 if (request.getUserId() != null) {
+                    if (shardRouter.isSharded() && shardRouter.shardForUser(request.getUserId()) != shardRouter.shardForId(borrowId)) {
+                        throw new IllegalArgumentException("Cannot move a borrow to a user on another shard");
+                    }
                     borrow.setUserId(request.getUserId());
                 }
                 if (request.getBookId() != null) {
                     borrow.setBookId(request.getBookId());
                 }
                 if (request.getBorrowDate() != null) {
-                    borrow.setBorrowDate(java.time.LocalDate.parse(request.getBorrowDate()).atStartOfDay());
+                    borrow.setBorrowDate(RequestDateBinder.bind(request.getBorrowDate(), "borrowDate"));
                 }
                 if (request.getDueDate() != null) {
-                    borrow.setDueDate(java.time.LocalDate.parse(request.getDueDate()).atStartOfDay());
+                    borrow.setDueDate(RequestDateBinder.bind(request.getDueDate(), "dueDate"));
                 }
                 if (request.getStatus() != null) {
                     borrow.setStatus(Borrow.BorrowStatus.valueOf(request.getStatus()));
                 }
                 if (request.getReturnDate() != null) {
-                    borrow.setReturnDate(java.time.LocalDate.parse(request.getReturnDate()).atStartOfDay());
+                    borrow.setReturnDate(RequestDateBinder.bind(request.getReturnDate(), "returnDate"));
                 }
                 Borrow updated = borrowRepository.save(borrow);
                 return ResponseEntity.ok(updated);
             })
-            .orElse(ResponseEntity.notFound().build());
+            .orElse(ResponseEntity.notFound().build()));
+    }
+
+    // Called by user-service when an admin changes a user's borrow lock, so checkouts see it at once
+    @DeleteMapping("/lock-cache/{userId}")
+    public ResponseEntity<Void> evictLockCache(@PathVariable Long userId) {
+        borrowLockService.evict(userId);
+        return ResponseEntity.noContent().build();
     }
 
     @DeleteMapping("/{borrowId}")
     public ResponseEntity<Void> deleteBorrow(@PathVariable Long borrowId) {
-        if (borrowRepository.existsById(borrowId)) {
-            borrowRepository.deleteById(borrowId);
-            return ResponseEntity.noContent().build();
-        }
-        return ResponseEntity.notFound().build();
+        return shardRouter.onId(borrowId, () -> {
+            if (borrowRepository.existsById(borrowId)) {
+                borrowRepository.deleteById(borrowId);
+                return ResponseEntity.<Void>noContent().build();
+            }
+            return ResponseEntity.<Void>notFound().build();
+        });
     }
 
     public static class CreateBorrowRequest {
@@ -282,6 +321,36 @@ public class BorrowController {
         }
     }
 
+    public static class BatchBorrowRequest {
+        private Long userId;
+        private List<Long> bookIds;
+        private String dueDate;
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public void setUserId(Long userId) {
+            this.userId = userId;
+        }
+
+        public List<Long> getBookIds() {
+            return bookIds;
+        }
+
+        public void setBookIds(List<Long> bookIds) {
+            this.bookIds = bookIds;
+        }
+
+        public String getDueDate() {
+            return dueDate;
+        }
+
+        public void setDueDate(String dueDate) {
+            this.dueDate = dueDate;
+        }
+    }
+
     public static class UpdateBorrowRequest {
         private Long userId;
         private Long bookId;
@@ -1,8 +1,13 @@
 package com.library.borrow_service.controller;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -12,11 +17,16 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.library.borrow_service.config.ShardRouter;
 import com.library.borrow_service.dto.BorrowFineDTO;
+import com.library.borrow_service.dto.KeysetPageDTO;
 import com.library.borrow_service.entity.BorrowFine;
 import com.library.borrow_service.service.BorrowService;
+import com.library.borrow_service.service.ExportService;
 
 @RestController
 @RequestMapping("/fines")
@@ -24,24 +34,67 @@ import com.library.borrow_service.service.BorrowService;
 public class BorrowFineController {
 
     private final BorrowService borrowService;
+    private final ExportService exportService;
+    private final ShardRouter shardRouter;
 
-    public BorrowFineController(BorrowService borrowService) {
+    private static final int MAX_PAGE_SIZE = 500;
+
+    public BorrowFineController(BorrowService borrowService, ExportService exportService, ShardRouter shardRouter) {
         this.borrowService = borrowService;
+        this.exportService = exportService;
+        this.shardRouter = shardRouter;
     }
 
     @GetMapping
-    public ResponseEntity<List<BorrowFineDTO>> listFines() {
-        return ResponseEntity.ok(borrowService.getAllFines());
+    public ResponseEntity<List<BorrowFineDTO>> listFines(
+            @RequestParam(required = false) Boolean paid,
+            @RequestParam(required = false) BorrowFine.FineReason reason,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(borrowService.getFines(paid, reason, from, to));
+    }
+
+    @GetMapping("/page")
+    public ResponseEntity<KeysetPageDTO<BorrowFineDTO>> listFinesPage(
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(required = false) Boolean paid,
+            @RequestParam(required = false) BorrowFine.FineReason reason,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        return ResponseEntity.ok(borrowService.getFinesPage(afterId, pageSize, paid, reason, from, to));
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportFines(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) Boolean paid,
+            @RequestParam(required = false) BorrowFine.FineReason reason,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        boolean csv = ExportService.isCsv(format);
+        StreamingResponseBody body = outputStream -> exportService.writeFines(format, paid, reason, from, to, outputStream);
+        return ResponseEntity.ok()
+                .contentType(csv ? MediaType.parseMediaType("text/csv") : MediaType.parseMediaType("application/x-ndjson"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=fines." + (csv ? "csv" : "ndjson"))
+                .body(body);
     }
 
     @GetMapping("/user/{userId}")
     public ResponseEntity<List<BorrowFineDTO>> getFinesByUser(@PathVariable Long userId) {
-        return ResponseEntity.ok(borrowService.getFinesByUser(userId));
+        return ResponseEntity.ok(shardRouter.onUser(userId, () -> borrowService.getFinesByUser(userId)));
+    }
+
+    @GetMapping("/user/{userId}/balance")
+    public ResponseEntity<Map<String, Object>> getUnpaidBalance(@PathVariable Long userId) {
+        BigDecimal balance = shardRouter.onUser(userId, () -> borrowService.getTotalUnpaidFinesByUser(userId));
+        return ResponseEntity.ok(Map.of("userId", userId, "balance", balance));
     }
 
     @GetMapping("/{fineId}")
     public ResponseEntity<BorrowFineDTO> getFine(@PathVariable Long fineId) {
-        BorrowFineDTO fine = borrowService.getFineById(fineId);
+        BorrowFineDTO fine = shardRouter.onId(fineId, () -> borrowService.getFineById(fineId));
         if (fine != null) {
             return ResponseEntity.ok(fine);
         }
@@ -50,25 +103,30 @@ public class BorrowFineController {
 
     @PostMapping
     public ResponseEntity<BorrowFineDTO> createFine(@RequestBody CreateFineRequest request) {
-        BorrowFineDTO fine = borrowService.createFine(request.getBorrowId(), request.getUserId(), request.getAmount(), request.getReason());
+        // A fine lives on the shard of its user, next to the borrow it belongs to
+        BorrowFineDTO fine = shardRouter.onUser(request.getUserId(), () ->
+                borrowService.createFine(request.getBorrowId(), request.getUserId(), request.getAmount(), request.getReason()));
         return ResponseEntity.ok(fine);
     }
 
     @PutMapping("/{fineId}")
     public ResponseEntity<BorrowFineDTO> updateFine(@PathVariable Long fineId, @RequestBody UpdateFineRequest request) {
-        BorrowFineDTO fine = borrowService.updateFine(fineId, request.getAmount(), request.getReason());
+        BorrowFineDTO fine = shardRouter.onId(fineId, () -> borrowService.updateFine(fineId, request.getAmount(), request.getReason()));
         return ResponseEntity.ok(fine);
     }
 
     @PutMapping("/{fineId}/pay")
     public ResponseEntity<BorrowFineDTO> payFine(@PathVariable Long fineId) {
-        BorrowFineDTO updatedFine = borrowService.payFine(fineId);
+        BorrowFineDTO updatedFine = shardRouter.onId(fineId, () -> borrowService.payFine(fineId));
         return ResponseEntity.ok(updatedFine);
     }
 
     @DeleteMapping("/{fineId}")
     public ResponseEntity<Void> deleteFine(@PathVariable Long fineId) {
-        borrowService.deleteFine(fineId);
+        shardRouter.onId(fineId, () -> {
+            borrowService.deleteFine(fineId);
+            return null;
+        });
         return ResponseEntity.noContent().build();
     }
 
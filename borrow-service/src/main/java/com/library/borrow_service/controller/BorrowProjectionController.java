@@ -0,0 +1,93 @@
+package com.library.borrow_service.controller;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.library.borrow_service.config.ShardRouter;
+import com.library.borrow_service.dto.BookLoanCountsDTO;
+import com.library.borrow_service.dto.BorrowDTO;
+import com.library.borrow_service.dto.ProjectionStatusDTO;
+import com.library.borrow_service.projection.BookLoanCountsProjection;
+import com.library.borrow_service.projection.OverdueSetProjection;
+import com.library.borrow_service.projection.ProjectionRunner;
+import com.library.borrow_service.projection.UserHistoryProjection;
+
+// Read models built from the borrow event log; they trail the log by up to borrow.projections.poll-ms
+@RestController
+@RequestMapping("/borrows/projections")
+@CrossOrigin(origins = "*")
+public class BorrowProjectionController {
+
+    private final ProjectionRunner projectionRunner;
+    private final UserHistoryProjection userHistoryProjection;
+    private final BookLoanCountsProjection bookLoanCountsProjection;
+    private final OverdueSetProjection overdueSetProjection;
+    private final ShardRouter shardRouter;
+
+    public BorrowProjectionController(ProjectionRunner projectionRunner, UserHistoryProjection userHistoryProjection,
+                                      BookLoanCountsProjection bookLoanCountsProjection,
+                                      OverdueSetProjection overdueSetProjection, ShardRouter shardRouter) {
+        this.projectionRunner = projectionRunner;
+        this.userHistoryProjection = userHistoryProjection;
+        this.bookLoanCountsProjection = bookLoanCountsProjection;
+        this.overdueSetProjection = overdueSetProjection;
+        this.shardRouter = shardRouter;
+    }
+
+    // Checkpoint and lag of every projection on every shard
+    @GetMapping
+    public ResponseEntity<List<ProjectionStatusDTO>> getStatus() {
+        return ResponseEntity.ok(statusOfAllShards());
+    }
+
+    @PostMapping("/{name}/rebuild")
+    public ResponseEntity<List<ProjectionStatusDTO>> rebuild(@PathVariable String name) {
+        if (!projectionRunner.hasProjection(name)) {
+            return ResponseEntity.notFound().build();
+        }
+        shardRouter.forEachShard(() -> projectionRunner.rebuild(name));
+        return ResponseEntity.ok(statusOfAllShards());
+    }
+
+    @GetMapping("/users/{userId}/history")
+    public ResponseEntity<List<BorrowDTO>> getUserHistory(@PathVariable Long userId) {
+        return ResponseEntity.ok(shardRouter.onUser(userId, () -> userHistoryProjection.findByUser(userId)));
+    }
+
+    // A book's loans are spread over the shards of its borrowers
+    @GetMapping("/books/{bookId}/counts")
+    public ResponseEntity<BookLoanCountsDTO> getBookCounts(@PathVariable Long bookId) {
+        BookLoanCountsDTO total = new BookLoanCountsDTO(bookId, 0, 0, 0);
+        shardRouter.scatter(() -> List.of(bookLoanCountsProjection.findByBook(bookId))).forEach(total::add);
+        return ResponseEntity.ok(total);
+    }
+
+    @GetMapping("/overdue")
+    public ResponseEntity<List<BorrowDTO>> getOverdue() {
+        List<BorrowDTO> overdue = new ArrayList<>(shardRouter.scatter(overdueSetProjection::findAll));
+        overdue.sort(Comparator.comparing(BorrowDTO::getDueDate, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(BorrowDTO::getId));
+        return ResponseEntity.ok(overdue);
+    }
+
+    private List<ProjectionStatusDTO> statusOfAllShards() {
+        List<ProjectionStatusDTO> statuses = new ArrayList<>();
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            int current = shard;
+            shardRouter.onShard(shard, projectionRunner::status).forEach(status -> {
+                status.setShard(current);
+                statuses.add(status);
+            });
+        }
+        return statuses;
+    }
+}
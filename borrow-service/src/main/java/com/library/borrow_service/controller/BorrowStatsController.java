@@ -1,26 +1,55 @@
 package com.library.borrow_service.controller;
 
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Map;
 
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.library.borrow_service.dto.BorrowStatsDTO;
 import com.library.borrow_service.service.BorrowService;
+import com.library.borrow_service.service.BorrowStatsService;
 
 @RestController
+@CrossOrigin(origins = "*")
 public class BorrowStatsController {
 
+    private static final int MAX_RANGE_DAYS = 3660;
+
+    private final BorrowStatsService borrowStatsService;
     private final BorrowService borrowService;
 
-    public BorrowStatsController(BorrowService borrowService) {
+    public BorrowStatsController(BorrowStatsService borrowStatsService, BorrowService borrowService) {
+        this.borrowStatsService = borrowStatsService;
         this.borrowService = borrowService;
     }
 
+    // Live count across every shard: of one book for the book detail page, of all loans for the admin dashboard
     @GetMapping("/borrows/count")
-    public ResponseEntity<Map<String, Long>> countByBook(@RequestParam Long bookId) {
+    public ResponseEntity<Map<String, Long>> countByBook(@RequestParam(required = false) Long bookId) {
+        if (bookId == null) {
+            return ResponseEntity.ok(Map.of("count", borrowService.countBorrows()));
+        }
         Long count = borrowService.countBorrowsByBook(bookId);
         return ResponseEntity.ok(Map.of("bookId", bookId, "count", count));
     }
+
+    // Answered from the daily rollup; defaults to the last 30 days grouped by day
+    @GetMapping("/borrows/stats")
+    public ResponseEntity<List<BorrowStatsDTO>> getStats(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "day") String groupBy) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(29);
+        if (start.isAfter(end) || start.plusDays(MAX_RANGE_DAYS).isBefore(end)) {
+            throw new IllegalArgumentException("Invalid date range");
+        }
+        return ResponseEntity.ok(borrowStatsService.getStats(start, end, groupBy));
+    }
 }
@@ -0,0 +1,143 @@
+package com.library.borrow_service.controller;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Binds the date strings of borrow request bodies. Accepts a date only (yyyy-MM-dd, taken as the
+ * start of that day) or an ISO instant (yyyy-MM-ddTHH:mm[:ss[.fraction]] followed by Z or an
+ * offset, converted to the server's zone). The format is told apart by the string's shape and
+ * the digits are read directly, so no exception is thrown for either format.
+ */
+public final class RequestDateBinder {
+
+    private static final int DATE_LENGTH = 10;
+    private static final int MAX_OFFSET_SECONDS = 18 * 3600;
+
+    private RequestDateBinder() {
+    }
+
+    // Null when the value is neither a date nor an instant
+    public static LocalDateTime parse(String value) {
+        if (value == null || value.length() < DATE_LENGTH) {
+            return null;
+        }
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 2);
+        int day = digits(value, 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || value.charAt(4) != '-' || value.charAt(7) != '-'
+                || day > Month.of(month).length(Year.isLeap(year))) {
+            return null;
+        }
+        if (value.length() == DATE_LENGTH) {
+            return LocalDateTime.of(year, month, day, 0, 0);
+        }
+        return parseInstant(value, year, month, day);
+    }
+
+    // Binds a required or optional field, rejecting values in neither format
+    public static LocalDateTime bind(String value, String field) {
+        if (value == null) {
+            return null;
+        }
+        LocalDateTime parsed = parse(value);
+        if (parsed == null) {
+            throw new IllegalArgumentException("Invalid date format for " + field);
+        }
+        return parsed;
+    }
+
+    // Time and offset after the date: THH:mm[:ss[.fffffffff]](Z|+HH[:mm]|-HH[:mm])
+    private static LocalDateTime parseInstant(String value, int year, int month, int day) {
+        int length = value.length();
+        if (length < 17 || value.charAt(10) != 'T' || value.charAt(13) != ':') {
+            return null;
+        }
+        int hour = digits(value, 11, 2);
+        int minute = digits(value, 14, 2);
+        int second = 0;
+        int nanos = 0;
+        int pos = 16;
+        if (pos < length && value.charAt(pos) == ':') {
+            second = digits(value, pos + 1, 2);
+            pos += 3;
+            if (pos < length && value.charAt(pos) == '.') {
+                int start = ++pos;
+                while (pos < length && pos - start < 9 && isDigit(value.charAt(pos))) {
+                    nanos = nanos * 10 + (value.charAt(pos) - '0');
+                    pos++;
+                }
+                if (pos == start) {
+                    return null;
+                }
+                for (int scale = pos - start; scale < 9; scale++) {
+                    nanos *= 10;
+                }
+            }
+        }
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return null;
+        }
+
+        int offsetSeconds = parseOffset(value, pos);
+        if (offsetSeconds == Integer.MIN_VALUE) {
+            return null;
+        }
+        long epochSecond = LocalDateTime.of(year, month, day, hour, minute, second)
+                .toEpochSecond(ZoneOffset.UTC) - offsetSeconds;
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, nanos), ZoneId.systemDefault());
+    }
+
+    // Offset in seconds, or Integer.MIN_VALUE when the rest of the string is not an offset
+    private static int parseOffset(String value, int pos) {
+        int length = value.length();
+        if (pos == length - 1 && value.charAt(pos) == 'Z') {
+            return 0;
+        }
+        if (pos >= length || (value.charAt(pos) != '+' && value.charAt(pos) != '-')) {
+            return Integer.MIN_VALUE;
+        }
+        int sign = value.charAt(pos) == '-' ? -1 : 1;
+        int rest = length - pos - 1;
+        int hours = digits(value, pos + 1, 2);
+        int minutes;
+        if (rest == 2) {
+            minutes = 0;
+        } else if (rest == 4) {
+            minutes = digits(value, pos + 3, 2);
+        } else if (rest == 5 && value.charAt(pos + 3) == ':') {
+            minutes = digits(value, pos + 4, 2);
+        } else {
+            return Integer.MIN_VALUE;
+        }
+        int seconds = hours * 3600 + minutes * 60;
+        if (hours < 0 || minutes < 0 || minutes > 59 || seconds > MAX_OFFSET_SECONDS) {
+            return Integer.MIN_VALUE;
+        }
+        return sign * seconds;
+    }
+
+    // Non-negative value of count digits at start, or -1 if any of them is not a digit
+    private static int digits(String value, int start, int count) {
+        if (start + count > value.length()) {
+            return -1;
+        }
+        int result = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = value.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,62 @@
+package com.library.borrow_service.dto;
+
+public class BookLoanCountsDTO {
+    private Long bookId;
+    private long loans;
+    private long returns;
+    private long lost;
+
+    // Constructors
+    public BookLoanCountsDTO() {}
+
+    public BookLoanCountsDTO(Long bookId, long loans, long returns, long lost) {
+        this.bookId = bookId;
+        this.loans = loans;
+        this.returns = returns;
+        this.lost = lost;
+    }
+
+    public void add(BookLoanCountsDTO other) {
+        this.loans += other.loans;
+        this.returns += other.returns;
+        this.lost += other.lost;
+    }
+
+    // Copies currently out on loan
+    public long getActive() {
+        return loans - returns - lost;
+    }
+
+    // Getters and Setters
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(Long bookId) {
+        this.bookId = bookId;
+    }
+
+    public long getLoans() {
+        return loans;
+    }
+
+    public void setLoans(long loans) {
+        this.loans = loans;
+    }
+
+    public long getReturns() {
+        return returns;
+    }
+
+    public void setReturns(long returns) {
+        this.returns = returns;
+    }
+
+    public long getLost() {
+        return lost;
+    }
+
+    public void setLost(long lost) {
+        this.lost = lost;
+    }
+}
@@ -0,0 +1,71 @@
+package com.library.borrow_service.dto;
+
+public class BorrowBatchResultDTO {
+    private Long bookId;
+    private Long borrowId;
+    private boolean success;
+    private String error;
+    private BorrowDTO borrow;
+
+    // Constructors
+    public BorrowBatchResultDTO() {}
+
+    public static BorrowBatchResultDTO succeeded(BorrowDTO borrow) {
+        BorrowBatchResultDTO result = new BorrowBatchResultDTO();
+        result.bookId = borrow.getBookId();
+        result.borrowId = borrow.getId();
+        result.success = true;
+        result.borrow = borrow;
+        return result;
+    }
+
+    public static BorrowBatchResultDTO failed(Long bookId, Long borrowId, String error) {
+        BorrowBatchResultDTO result = new BorrowBatchResultDTO();
+        result.bookId = bookId;
+        result.borrowId = borrowId;
+        result.success = false;
+        result.error = error;
+        return result;
+    }
+
+    // Getters and Setters
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(Long bookId) {
+        this.bookId = bookId;
+    }
+
+    public Long getBorrowId() {
+        return borrowId;
+    }
+
+    public void setBorrowId(Long borrowId) {
+        this.borrowId = borrowId;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public BorrowDTO getBorrow() {
+        return borrow;
+    }
+
+    public void setBorrow(BorrowDTO borrow) {
+        this.borrow = borrow;
+    }
+}
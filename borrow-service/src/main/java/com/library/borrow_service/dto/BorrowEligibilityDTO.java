@@ -0,0 +1,20 @@
+package com.library.borrow_service.dto;
+
+public class BorrowEligibilityDTO {
+
+    private final long activeBorrowCount;
+    private final boolean alreadyBorrowed;
+
+    public BorrowEligibilityDTO(Long activeBorrowCount, Long sameBookCount) {
+        this.activeBorrowCount = activeBorrowCount != null ? activeBorrowCount : 0L;
+        this.alreadyBorrowed = sameBookCount != null && sameBookCount > 0;
+    }
+
+    public long getActiveBorrowCount() {
+        return activeBorrowCount;
+    }
+
+    public boolean isAlreadyBorrowed() {
+        return alreadyBorrowed;
+    }
+}
@@ -20,6 +20,19 @@ public class BorrowFineDTO {
     // Constructors
     public BorrowFineDTO() {}
 
+    public BorrowFineDTO(Long id, Long borrowId, Long userId, Long bookId, BigDecimal amount,
+                         BorrowFine.FineReason reason, Boolean paid, LocalDateTime createdAt) {
+        this.id = id;
+        this.borrowId = borrowId;
+        this.userId = userId;
+        this.bookId = bookId;
+        this.amount = amount;
+        this.reason = reason;
+        this.paid = paid;
+        this.status = Boolean.TRUE.equals(paid) ? "PAID" : "UNPAID";
+        this.createdAt = createdAt;
+    }
+
     // Getters and Setters
     public Long getId() {
         return id;
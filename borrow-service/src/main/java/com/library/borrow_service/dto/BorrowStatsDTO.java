@@ -0,0 +1,86 @@
+package com.library.borrow_service.dto;
+
+import java.math.BigDecimal;
+
+public class BorrowStatsDTO {
+    private String key;
+    private String label;
+    private long loans;
+    private long returns;
+    private long overdue;
+    private BigDecimal finesIssued = BigDecimal.ZERO;
+    private BigDecimal finesPaid = BigDecimal.ZERO;
+
+    // Constructors
+    public BorrowStatsDTO() {}
+
+    public BorrowStatsDTO(String key, String label) {
+        this.key = key;
+        this.label = label;
+    }
+
+    public void add(BorrowStatsDTO other) {
+        this.loans += other.loans;
+        this.returns += other.returns;
+        this.overdue += other.overdue;
+        this.finesIssued = this.finesIssued.add(other.finesIssued);
+        this.finesPaid = this.finesPaid.add(other.finesPaid);
+    }
+
+    // Getters and Setters
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    public long getLoans() {
+        return loans;
+    }
+
+    public void setLoans(long loans) {
+        this.loans = loans;
+    }
+
+    public long getReturns() {
+        return returns;
+    }
+
+    public void setReturns(long returns) {
+        this.returns = returns;
+    }
+
+    public long getOverdue() {
+        return overdue;
+    }
+
+    public void setOverdue(long overdue) {
+        this.overdue = overdue;
+    }
+
+    public BigDecimal getFinesIssued() {
+        return finesIssued;
+    }
+
+    public void setFinesIssued(BigDecimal finesIssued) {
+        this.finesIssued = finesIssued;
+    }
+
+    public BigDecimal getFinesPaid() {
+        return finesPaid;
+    }
+
+    public void setFinesPaid(BigDecimal finesPaid) {
+        this.finesPaid = finesPaid;
+    }
+}
@@ -0,0 +1,54 @@
+package com.library.borrow_service.dto;
+
+import java.time.LocalDateTime;
+
+public class DueSoonLoanDTO {
+
+    private Long borrowId;
+    private Long bookId;
+    private String bookTitle;
+    private LocalDateTime dueDate;
+
+    // Constructors
+    public DueSoonLoanDTO() {}
+
+    public DueSoonLoanDTO(Long borrowId, Long bookId, String bookTitle, LocalDateTime dueDate) {
+        this.borrowId = borrowId;
+        this.bookId = bookId;
+        this.bookTitle = bookTitle;
+        this.dueDate = dueDate;
+    }
+
+    // Getters and Setters
+    public Long getBorrowId() {
+        return borrowId;
+    }
+
+    public void setBorrowId(Long borrowId) {
+        this.borrowId = borrowId;
+    }
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(Long bookId) {
+        this.bookId = bookId;
+    }
+
+    public String getBookTitle() {
+        return bookTitle;
+    }
+
+    public void setBookTitle(String bookTitle) {
+        this.bookTitle = bookTitle;
+    }
+
+    public LocalDateTime getDueDate() {
+        return dueDate;
+    }
+
+    public void setDueDate(LocalDateTime dueDate) {
+        this.dueDate = dueDate;
+    }
+}
@@ -0,0 +1,53 @@
+package com.library.borrow_service.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+public class KeysetPageDTO<T> {
+
+    private List<T> items;
+    private Long nextAfterId;
+    private boolean hasMore;
+
+    // Constructors
+    public KeysetPageDTO() {}
+
+    public KeysetPageDTO(List<T> items, Long nextAfterId, boolean hasMore) {
+        this.items = items;
+        this.nextAfterId = nextAfterId;
+        this.hasMore = hasMore;
+    }
+
+    // Build a page from a query that fetched one row more than the page size
+    public static <T> KeysetPageDTO<T> of(List<T> rows, int size, Function<T, Long> idExtractor) {
+        boolean hasMore = rows.size() > size;
+        List<T> items = hasMore ? rows.subList(0, size) : rows;
+        Long nextAfterId = items.isEmpty() ? null : idExtractor.apply(items.get(items.size() - 1));
+        return new KeysetPageDTO<>(items, nextAfterId, hasMore);
+    }
+
+    // Getters and Setters
+    public List<T> getItems() {
+        return items;
+    }
+
+    public void setItems(List<T> items) {
+        this.items = items;
+    }
+
+    public Long getNextAfterId() {
+        return nextAfterId;
+    }
+
+    public void setNextAfterId(Long nextAfterId) {
+        this.nextAfterId = nextAfterId;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
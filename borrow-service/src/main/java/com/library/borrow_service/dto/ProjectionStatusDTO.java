@@ -0,0 +1,55 @@
+package com.library.borrow_service.dto;
+
+public class ProjectionStatusDTO {
+    private String name;
+    private int shard;
+    private long lastEventId;
+    private long logEventId;
+
+    // Constructors
+    public ProjectionStatusDTO() {}
+
+    public ProjectionStatusDTO(String name, long lastEventId, long logEventId) {
+        this.name = name;
+        this.lastEventId = lastEventId;
+        this.logEventId = logEventId;
+    }
+
+    // Events logged but not yet applied
+    public long getLag() {
+        return Math.max(logEventId - lastEventId, 0);
+    }
+
+    // Getters and Setters
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public void setShard(int shard) {
+        this.shard = shard;
+    }
+
+    public long getLastEventId() {
+        return lastEventId;
+    }
+
+    public void setLastEventId(long lastEventId) {
+        this.lastEventId = lastEventId;
+    }
+
+    public long getLogEventId() {
+        return logEventId;
+    }
+
+    public void setLogEventId(long logEventId) {
+        this.logEventId = logEventId;
+    }
+}
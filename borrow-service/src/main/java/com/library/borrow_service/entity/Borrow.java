@@ -1,9 +1,14 @@
 package com.library.borrow_service.entity;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
+import com.library.borrow_service.event.BorrowEventListener;
+import com.library.borrow_service.scheduler.BorrowDueDateListener;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
@@ -12,9 +17,11 @@ import jakarta.persistence.Id;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 
 @Entity
 @Table(name = "borrows")
+@EntityListeners({ BorrowDueDateListener.class, BorrowEventListener.class })
 public class Borrow {
 
     @Id
@@ -40,12 +47,30 @@ public class Borrow {
     @Column(nullable = false)
     private BorrowStatus status;
 
+    // Total of the fines recorded for this borrow, kept in step with borrow_fines
+    @Column(name = "fine_amount", nullable = false, precision = 10, scale = 2)
+    private BigDecimal fineAmount = BigDecimal.ZERO;
+
+    // Due date covered by the last due-soon reminder, so a rerun of the job skips users already reminded
+    @Column(name = "due_reminder_for")
+    private LocalDateTime dueReminderFor;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // Loan state as last loaded or written, compared on update to classify the transition
+    @Transient
+    private BorrowStatus recordedStatus;
+
+    @Transient
+    private LocalDateTime recordedDueDate;
+
+    @Transient
+    private LocalDateTime recordedReturnDate;
+
     // Constructors
     public Borrow() {}
 
@@ -106,6 +131,22 @@ public class Borrow {
         this.status = status;
     }
 
+    public BigDecimal getFineAmount() {
+        return fineAmount;
+    }
+
+    public void setFineAmount(BigDecimal fineAmount) {
+        this.fineAmount = fineAmount;
+    }
+
+    public LocalDateTime getDueReminderFor() {
+        return dueReminderFor;
+    }
+
+    public void setDueReminderFor(LocalDateTime dueReminderFor) {
+        this.dueReminderFor = dueReminderFor;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -122,6 +163,24 @@ public class Borrow {
         this.updatedAt = updatedAt;
     }
 
+    public BorrowStatus getRecordedStatus() {
+        return recordedStatus;
+    }
+
+    public LocalDateTime getRecordedDueDate() {
+        return recordedDueDate;
+    }
+
+    public LocalDateTime getRecordedReturnDate() {
+        return recordedReturnDate;
+    }
+
+    public void markRecorded() {
+        recordedStatus = status;
+        recordedDueDate = dueDate;
+        recordedReturnDate = returnDate;
+    }
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -0,0 +1,114 @@
+package com.library.borrow_service.entity;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+@Entity
+@Table(name = "borrows_archive")
+public class BorrowArchive {
+
+    @Id
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "book_id", nullable = false)
+    private Long bookId;
+
+    @Column(name = "borrow_date", nullable = false)
+    private LocalDateTime borrowDate;
+
+    @Column(name = "due_date", nullable = false)
+    private LocalDateTime dueDate;
+
+    @Column(name = "return_date")
+    private LocalDateTime returnDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Borrow.BorrowStatus status;
+
+    @Column(name = "fine_amount", nullable = false, precision = 10, scale = 2)
+    private BigDecimal fineAmount;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+
+    // Constructors
+    public BorrowArchive() {}
+
+    // Detached copy in the shape of a live borrow, for merging into history views
+    public Borrow toBorrow() {
+        Borrow borrow = new Borrow();
+        borrow.setId(id);
+        borrow.setUserId(userId);
+        borrow.setBookId(bookId);
+        borrow.setBorrowDate(borrowDate);
+        borrow.setDueDate(dueDate);
+        borrow.setReturnDate(returnDate);
+        borrow.setStatus(status);
+        borrow.setFineAmount(fineAmount);
+        borrow.setCreatedAt(createdAt);
+        borrow.setUpdatedAt(updatedAt);
+        return borrow;
+    }
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public LocalDateTime getBorrowDate() {
+        return borrowDate;
+    }
+
+    public LocalDateTime getDueDate() {
+        return dueDate;
+    }
+
+    public LocalDateTime getReturnDate() {
+        return returnDate;
+    }
+
+    public Borrow.BorrowStatus getStatus() {
+        return status;
+    }
+
+    public BigDecimal getFineAmount() {
+        return fineAmount;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public LocalDateTime getArchivedAt() {
+        return archivedAt;
+    }
+}
@@ -40,6 +40,9 @@ public class BorrowFine {
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
+    @Column(name = "paid_at")
+    private LocalDateTime paidAt;
+
     // Constructors
     public BorrowFine() {}
 
@@ -107,6 +110,14 @@ public class BorrowFine {
         this.createdAt = createdAt;
     }
 
+    public LocalDateTime getPaidAt() {
+        return paidAt;
+    }
+
+    public void setPaidAt(LocalDateTime paidAt) {
+        this.paidAt = paidAt;
+    }
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -0,0 +1,32 @@
+package com.library.borrow_service.event;
+
+import java.time.LocalDateTime;
+
+import com.library.borrow_service.entity.Borrow;
+
+/**
+ * One row of the borrow_events log: a loan transition and the loan's state right after it.
+ */
+public record BorrowEvent(long id, Long borrowId, Long userId, Long bookId, Type type, Borrow.BorrowStatus status,
+                          LocalDateTime borrowDate, LocalDateTime dueDate, LocalDateTime returnDate,
+                          LocalDateTime occurredAt) {
+
+    public enum Type {
+        // Loan created
+        BORROWED,
+        // Loan that existed before the log was introduced
+        IMPORTED,
+        RETURNED,
+        OVERDUE,
+        LOST,
+        DUE_DATE_CHANGED,
+        // Status or return date edited by hand without one of the transitions above
+        STATUS_CHANGED,
+        DELETED
+    }
+
+    // Out on loan and past due, as marked by the overdue job
+    public boolean isOverdue() {
+        return status == Borrow.BorrowStatus.LATE_RETURNED && returnDate == null;
+    }
+}
@@ -0,0 +1,73 @@
+package com.library.borrow_service.event;
+
+import java.util.Objects;
+
+import org.springframework.beans.factory.ObjectProvider;
+
+import com.library.borrow_service.entity.Borrow;
+
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Appends a borrow_events row for every loan created, transitioned or deleted through JPA.
+ * The callbacks run during the flush, so the event joins the transaction writing the borrow.
+ */
+public class BorrowEventListener {
+
+    // Resolved lazily, like the overdue timer: Hibernate creates this listener before the JDBC beans exist
+    private final ObjectProvider<BorrowEventLog> eventLog;
+
+    public BorrowEventListener(ObjectProvider<BorrowEventLog> eventLog) {
+        this.eventLog = eventLog;
+    }
+
+    @PostLoad
+    public void onBorrowLoaded(Borrow borrow) {
+        borrow.markRecorded();
+    }
+
+    @PostPersist
+    public void onBorrowCreated(Borrow borrow) {
+        eventLog.getObject().append(borrow, BorrowEvent.Type.BORROWED);
+        borrow.markRecorded();
+    }
+
+    @PostUpdate
+    public void onBorrowUpdated(Borrow borrow) {
+        BorrowEvent.Type type = classify(borrow);
+        if (type != null) {
+            eventLog.getObject().append(borrow, type);
+        }
+        borrow.markRecorded();
+    }
+
+    @PostRemove
+    public void onBorrowRemoved(Borrow borrow) {
+        eventLog.getObject().append(borrow, BorrowEvent.Type.DELETED);
+    }
+
+    // Null when none of status, due date and return date changed, e.g. a fine total refresh
+    static BorrowEvent.Type classify(Borrow borrow) {
+        boolean statusChanged = borrow.getStatus() != borrow.getRecordedStatus();
+        boolean returnDateChanged = !Objects.equals(borrow.getReturnDate(), borrow.getRecordedReturnDate());
+        if (statusChanged && borrow.getStatus() == Borrow.BorrowStatus.LOST) {
+            return BorrowEvent.Type.LOST;
+        }
+        if (borrow.getRecordedReturnDate() == null && borrow.getReturnDate() != null) {
+            return BorrowEvent.Type.RETURNED;
+        }
+        if (statusChanged && borrow.getStatus() == Borrow.BorrowStatus.LATE_RETURNED && borrow.getReturnDate() == null) {
+            return BorrowEvent.Type.OVERDUE;
+        }
+        if (!Objects.equals(borrow.getDueDate(), borrow.getRecordedDueDate())) {
+            return BorrowEvent.Type.DUE_DATE_CHANGED;
+        }
+        if (statusChanged || returnDateChanged) {
+            return BorrowEvent.Type.STATUS_CHANGED;
+        }
+        return null;
+    }
+}
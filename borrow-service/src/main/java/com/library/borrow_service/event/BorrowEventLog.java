@@ -0,0 +1,114 @@
+package com.library.borrow_service.event;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.library.borrow_service.entity.Borrow;
+
+/**
+ * Appends loan transitions to borrow_events and reads them back in id order. Appends join the
+ * caller's transaction, so an event is committed exactly when the change it records is.
+ * Events are never updated or deleted.
+ */
+@Component
+public class BorrowEventLog {
+
+    // occurred_at is the insert time on the database clock, the same clock that hands out ids and
+    // that readAfter's settle window is measured on, however many instances append
+    private static final String INSERT_SQL = "INSERT INTO borrow_events "
+            + "(borrow_id, user_id, book_id, event_type, status, borrow_date, due_date, return_date, occurred_at) "
+            + "VALUES (:borrowId, :userId, :bookId, :type, :status, :borrowDate, :dueDate, :returnDate, "
+            + "CURRENT_TIMESTAMP(6))";
+
+    // Rows flipped by a bulk overdue update carry its timestamp in updated_at; like every other
+    // event, occurred_at is the insert time
+    private static final String INSERT_OVERDUE_SQL = "INSERT INTO borrow_events "
+            + "(borrow_id, user_id, book_id, event_type, status, borrow_date, due_date, return_date, occurred_at) "
+            + "SELECT id, user_id, book_id, 'OVERDUE', status, borrow_date, due_date, return_date, CURRENT_TIMESTAMP(6) "
+            + "FROM borrows WHERE id IN (:ids) AND status = 'LATE_RETURNED' AND return_date IS NULL "
+            + "AND updated_at = :markedAt ORDER BY id";
+
+    private static final String SELECT_AFTER_SQL = "SELECT id, borrow_id, user_id, book_id, event_type, status, "
+            + "borrow_date, due_date, return_date, occurred_at, "
+            + "CASE WHEN occurred_at <= TIMESTAMPADD(MICROSECOND, -:settleMicros, CURRENT_TIMESTAMP(6)) "
+            + "THEN 1 ELSE 0 END AS settled FROM borrow_events "
+            + "WHERE id > :afterId ORDER BY id LIMIT :limit";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public BorrowEventLog(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void append(Borrow borrow, BorrowEvent.Type type) {
+        jdbcTemplate.update(INSERT_SQL, new MapSqlParameterSource()
+                .addValue("borrowId", borrow.getId())
+                .addValue("userId", borrow.getUserId())
+                .addValue("bookId", borrow.getBookId())
+                .addValue("type", type.name())
+                .addValue("status", borrow.getStatus().name())
+                .addValue("borrowDate", timestamp(borrow.getBorrowDate()))
+                .addValue("dueDate", timestamp(borrow.getDueDate()))
+                .addValue("returnDate", timestamp(borrow.getReturnDate())));
+    }
+
+    // Records the loans a bulk status update has just marked overdue at markedAt
+    public int appendOverdue(Collection<Long> borrowIds, LocalDateTime markedAt) {
+        if (borrowIds.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update(INSERT_OVERDUE_SQL, new MapSqlParameterSource()
+                .addValue("ids", borrowIds)
+                .addValue("markedAt", Timestamp.valueOf(markedAt)));
+    }
+
+    // Up to limit events after afterId, in id order and without gaps. A lower id can commit after a
+    // higher one, so the batch ends before the first event younger than settleTime: its predecessors
+    // may still be in flight, and the caller's checkpoint must not move past them.
+    public List<BorrowEvent> readAfter(long afterId, Duration settleTime, int limit) {
+        return jdbcTemplate.query(SELECT_AFTER_SQL, new MapSqlParameterSource()
+                .addValue("afterId", afterId)
+                .addValue("settleMicros", settleTime.toNanos() / 1000)
+                .addValue("limit", limit), rs -> {
+            List<BorrowEvent> settled = new ArrayList<>();
+            while (rs.next() && rs.getInt("settled") == 1) {
+                settled.add(toEvent(rs));
+            }
+            return settled;
+        });
+    }
+
+    public long lastEventId() {
+        Long lastId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM borrow_events", Map.of(), Long.class);
+        return lastId != null ? lastId : 0L;
+    }
+
+    private static BorrowEvent toEvent(ResultSet rs) throws SQLException {
+        return new BorrowEvent(
+                rs.getLong("id"),
+                rs.getLong("borrow_id"),
+                rs.getLong("user_id"),
+                rs.getLong("book_id"),
+                BorrowEvent.Type.valueOf(rs.getString("event_type")),
+                Borrow.BorrowStatus.valueOf(rs.getString("status")),
+                rs.getObject("borrow_date", LocalDateTime.class),
+                rs.getObject("due_date", LocalDateTime.class),
+                rs.getObject("return_date", LocalDateTime.class),
+                rs.getObject("occurred_at", LocalDateTime.class));
+    }
+
+    private static Timestamp timestamp(LocalDateTime value) {
+        return value != null ? Timestamp.valueOf(value) : null;
+    }
+}
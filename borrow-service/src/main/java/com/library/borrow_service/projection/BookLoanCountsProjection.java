@@ -0,0 +1,99 @@
+package com.library.borrow_service.projection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+
+import com.library.borrow_service.dto.BookLoanCountsDTO;
+import com.library.borrow_service.entity.Borrow;
+import com.library.borrow_service.event.BorrowEvent;
+
+/**
+ * borrow_book_counts: loans, returns and losses per book over the whole log. A batch is summed
+ * in memory first, so each book it touches costs one statement.
+ */
+@Component
+public class BookLoanCountsProjection implements BorrowProjection {
+
+    private static final String UPDATE_SQL = "UPDATE borrow_book_counts SET loans = loans + :loans, "
+            + "returns = returns + :returns, lost = lost + :lost WHERE book_id = :bookId";
+    private static final String INSERT_SQL = "INSERT INTO borrow_book_counts (book_id, loans, returns, lost) "
+            + "VALUES (:bookId, :loans, :returns, :lost)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public BookLoanCountsProjection(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public String name() {
+        return "book-counts";
+    }
+
+    @Override
+    public void apply(List<BorrowEvent> events) {
+        Map<Long, BookLoanCountsDTO> deltas = new TreeMap<>();
+        for (BorrowEvent event : events) {
+            BookLoanCountsDTO delta = countsOf(event);
+            if (delta != null) {
+                deltas.computeIfAbsent(event.bookId(), bookId -> new BookLoanCountsDTO(bookId, 0, 0, 0)).add(delta);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        SqlParameterSource[] rows = deltas.values().stream().map(BookLoanCountsProjection::params)
+                .toArray(SqlParameterSource[]::new);
+        int[] updated = jdbcTemplate.batchUpdate(UPDATE_SQL, rows);
+        List<SqlParameterSource> inserts = new ArrayList<>();
+        for (int i = 0; i < rows.length; i++) {
+            if (updated[i] == 0) {
+                inserts.add(rows[i]);
+            }
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserts.toArray(SqlParameterSource[]::new));
+        }
+    }
+
+    @Override
+    public void reset() {
+        jdbcTemplate.update("DELETE FROM borrow_book_counts", Map.of());
+    }
+
+    public BookLoanCountsDTO findByBook(Long bookId) {
+        List<BookLoanCountsDTO> rows = jdbcTemplate.query(
+                "SELECT book_id, loans, returns, lost FROM borrow_book_counts WHERE book_id = :bookId",
+                Map.of("bookId", bookId), (rs, rowNum) -> new BookLoanCountsDTO(
+                        rs.getLong("book_id"), rs.getLong("loans"), rs.getLong("returns"), rs.getLong("lost")));
+        return rows.isEmpty() ? new BookLoanCountsDTO(bookId, 0, 0, 0) : rows.get(0);
+    }
+
+    // A created or imported loan counts once, along with a return or loss it already carries
+    private static BookLoanCountsDTO countsOf(BorrowEvent event) {
+        boolean lost = event.status() == Borrow.BorrowStatus.LOST;
+        return switch (event.type()) {
+            case BORROWED, IMPORTED -> new BookLoanCountsDTO(event.bookId(), 1,
+                    event.returnDate() != null && !lost ? 1 : 0, lost ? 1 : 0);
+            case RETURNED -> new BookLoanCountsDTO(event.bookId(), 0, 1, 0);
+            case LOST -> new BookLoanCountsDTO(event.bookId(), 0, 0, 1);
+            default -> null;
+        };
+    }
+
+    private static SqlParameterSource params(BookLoanCountsDTO counts) {
+        return new MapSqlParameterSource()
+                .addValue("bookId", counts.getBookId())
+                .addValue("loans", counts.getLoans())
+                .addValue("returns", counts.getReturns())
+                .addValue("lost", counts.getLost());
+    }
+}
@@ -0,0 +1,32 @@
+package com.library.borrow_service.projection;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.library.borrow_service.event.BorrowEvent;
+
+/**
+ * A read model built from the borrow_events log. ProjectionRunner feeds each projection the
+ * events after its checkpoint in id order, and replays the whole log into it after a reset.
+ */
+public interface BorrowProjection {
+
+    // Key of the projection's checkpoint row
+    String name();
+
+    // Applies a batch of events in id order; runs in the transaction that advances the checkpoint
+    void apply(List<BorrowEvent> events);
+
+    // Empties the read model before a rebuild
+    void reset();
+
+    // The last event of each borrow in the batch, for read models that only keep a loan's latest state
+    static Map<Long, BorrowEvent> latestByBorrow(List<BorrowEvent> events) {
+        Map<Long, BorrowEvent> latest = new LinkedHashMap<>();
+        for (BorrowEvent event : events) {
+            latest.put(event.borrowId(), event);
+        }
+        return latest;
+    }
+}
@@ -0,0 +1,76 @@
+package com.library.borrow_service.projection;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+
+import com.library.borrow_service.dto.BorrowDTO;
+import com.library.borrow_service.entity.Borrow;
+import com.library.borrow_service.event.BorrowEvent;
+
+/**
+ * borrow_overdue_set: loans marked overdue and not yet returned, oldest due date first.
+ */
+@Component
+public class OverdueSetProjection implements BorrowProjection {
+
+    private static final String DELETE_SQL = "DELETE FROM borrow_overdue_set WHERE borrow_id IN (:ids)";
+    private static final String INSERT_SQL = "INSERT INTO borrow_overdue_set (borrow_id, user_id, book_id, due_date) "
+            + "VALUES (:borrowId, :userId, :bookId, :dueDate)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public OverdueSetProjection(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public String name() {
+        return "overdue-set";
+    }
+
+    @Override
+    public void apply(List<BorrowEvent> events) {
+        Map<Long, BorrowEvent> latest = BorrowProjection.latestByBorrow(events);
+        jdbcTemplate.update(DELETE_SQL, Map.of("ids", latest.keySet()));
+
+        List<SqlParameterSource> rows = new ArrayList<>();
+        for (BorrowEvent event : latest.values()) {
+            if (event.type() != BorrowEvent.Type.DELETED && event.isOverdue()) {
+                rows.add(new MapSqlParameterSource()
+                        .addValue("borrowId", event.borrowId())
+                        .addValue("userId", event.userId())
+                        .addValue("bookId", event.bookId())
+                        .addValue("dueDate", event.dueDate() != null ? Timestamp.valueOf(event.dueDate()) : null));
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows.toArray(SqlParameterSource[]::new));
+        }
+    }
+
+    @Override
+    public void reset() {
+        jdbcTemplate.update("DELETE FROM borrow_overdue_set", Map.of());
+    }
+
+    public List<BorrowDTO> findAll() {
+        return jdbcTemplate.query("SELECT borrow_id, user_id, book_id, due_date FROM borrow_overdue_set "
+                + "ORDER BY due_date, borrow_id", Map.of(), (rs, rowNum) -> {
+                    BorrowDTO dto = new BorrowDTO();
+                    dto.setId(rs.getLong("borrow_id"));
+                    dto.setUserId(rs.getLong("user_id"));
+                    dto.setBookId(rs.getLong("book_id"));
+                    dto.setDueDate(rs.getObject("due_date", LocalDateTime.class));
+                    dto.setStatus(Borrow.BorrowStatus.LATE_RETURNED);
+                    return dto;
+                });
+    }
+}
@@ -0,0 +1,153 @@
+package com.library.borrow_service.projection;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.library.borrow_service.dto.ProjectionStatusDTO;
+import com.library.borrow_service.event.BorrowEvent;
+import com.library.borrow_service.event.BorrowEventLog;
+
+/**
+ * Feeds borrow_events to every BorrowProjection on the current shard. Each batch is applied
+ * together with the projection's checkpoint in one transaction, so a crash never applies an
+ * event twice. The checkpoint only moves from the value it was read at, so two instances
+ * catching up the same projection cannot both apply a batch.
+ */
+@Service
+public class ProjectionRunner {
+
+    private static final String ADVANCE_SQL = "UPDATE borrow_projection_checkpoints SET last_event_id = :lastEventId, "
+            + "updated_at = :now WHERE name = :name AND last_event_id = :expected";
+
+    private final List<BorrowProjection> projections;
+    private final BorrowEventLog borrowEventLog;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration settleTime;
+    // Catch-up and rebuild of the same projection must not interleave on this instance
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public ProjectionRunner(List<BorrowProjection> projections, BorrowEventLog borrowEventLog,
+                            NamedParameterJdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                            @Value("${borrow.projections.batch-size:1000}") int batchSize,
+                            @Value("${borrow.projections.settle-ms:5000}") long settleMillis) {
+        this.projections = projections;
+        this.borrowEventLog = borrowEventLog;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.settleTime = Duration.ofMillis(settleMillis);
+    }
+
+    public boolean hasProjection(String name) {
+        return projections.stream().anyMatch(projection -> projection.name().equals(name));
+    }
+
+    public void catchUp() {
+        lock.lock();
+        try {
+            for (BorrowProjection projection : projections) {
+                catchUp(projection);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Empties the read model and replays the whole log into it, batch by batch in id order
+    public int rebuild(String name) {
+        BorrowProjection projection = projections.stream()
+                .filter(candidate -> candidate.name().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown projection " + name));
+        lock.lock();
+        try {
+            long startNanos = System.nanoTime();
+            readCheckpoint(name);
+            transactionTemplate.executeWithoutResult(status -> {
+                projection.reset();
+                jdbcTemplate.update("UPDATE borrow_projection_checkpoints SET last_event_id = 0, updated_at = :now "
+                        + "WHERE name = :name", Map.of("name", name, "now", Timestamp.valueOf(LocalDateTime.now())));
+            });
+            int applied = catchUp(projection);
+            System.out.println("Projection " + name + " rebuilt from " + applied + " events in "
+                    + Duration.ofNanos(System.nanoTime() - startNanos).toMillis() + " ms");
+            return applied;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<ProjectionStatusDTO> status() {
+        long logEventId = borrowEventLog.lastEventId();
+        return projections.stream()
+                .map(projection -> new ProjectionStatusDTO(projection.name(), readCheckpoint(projection.name()), logEventId))
+                .collect(Collectors.toList());
+    }
+
+    private int catchUp(BorrowProjection projection) {
+        long checkpoint = readCheckpoint(projection.name());
+        int applied = 0;
+        while (true) {
+            // A gap-free prefix, so the checkpoint can move to its last id
+            List<BorrowEvent> events = borrowEventLog.readAfter(checkpoint, settleTime, batchSize);
+            if (events.isEmpty()) {
+                break;
+            }
+            long expected = checkpoint;
+            long lastEventId = events.get(events.size() - 1).id();
+            Boolean advanced = transactionTemplate.execute(status -> {
+                projection.apply(events);
+                int updated = jdbcTemplate.update(ADVANCE_SQL, new MapSqlParameterSource()
+                        .addValue("lastEventId", lastEventId)
+                        .addValue("now", Timestamp.valueOf(LocalDateTime.now()))
+                        .addValue("name", projection.name())
+                        .addValue("expected", expected));
+                if (updated == 0) {
+                    // Another instance got there first; drop this batch
+                    status.setRollbackOnly();
+                    return false;
+                }
+                return true;
+            });
+            if (!Boolean.TRUE.equals(advanced)) {
+                System.out.println("Projection " + projection.name() + " was advanced elsewhere, skipping this round");
+                break;
+            }
+            checkpoint = lastEventId;
+            applied += events.size();
+            if (events.size() < batchSize) {
+                break;
+            }
+        }
+        return applied;
+    }
+
+    private long readCheckpoint(String name) {
+        List<Long> checkpoint = jdbcTemplate.queryForList(
+                "SELECT last_event_id FROM borrow_projection_checkpoints WHERE name = :name", Map.of("name", name), Long.class);
+        if (!checkpoint.isEmpty()) {
+            return checkpoint.get(0);
+        }
+        try {
+            jdbcTemplate.update("INSERT INTO borrow_projection_checkpoints (name, last_event_id, updated_at) "
+                    + "VALUES (:name, 0, :now)", Map.of("name", name, "now", Timestamp.valueOf(LocalDateTime.now())));
+        } catch (DuplicateKeyException e) {
+            // Created by another instance in the meantime
+        }
+        return 0L;
+    }
+}
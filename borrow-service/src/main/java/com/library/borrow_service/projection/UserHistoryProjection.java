@@ -0,0 +1,90 @@
+package com.library.borrow_service.projection;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+
+import com.library.borrow_service.dto.BorrowDTO;
+import com.library.borrow_service.entity.Borrow;
+import com.library.borrow_service.event.BorrowEvent;
+
+/**
+ * borrow_user_history: every loan of a user with its latest state, archived loans included,
+ * so a user's history is one indexed read.
+ */
+@Component
+public class UserHistoryProjection implements BorrowProjection {
+
+    private static final String DELETE_SQL = "DELETE FROM borrow_user_history WHERE borrow_id IN (:ids)";
+    private static final String INSERT_SQL = "INSERT INTO borrow_user_history "
+            + "(borrow_id, user_id, book_id, status, borrow_date, due_date, return_date, updated_at) "
+            + "VALUES (:borrowId, :userId, :bookId, :status, :borrowDate, :dueDate, :returnDate, :updatedAt)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public UserHistoryProjection(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public String name() {
+        return "user-history";
+    }
+
+    @Override
+    public void apply(List<BorrowEvent> events) {
+        Map<Long, BorrowEvent> latest = BorrowProjection.latestByBorrow(events);
+        jdbcTemplate.update(DELETE_SQL, Map.of("ids", latest.keySet()));
+
+        List<SqlParameterSource> rows = new ArrayList<>();
+        for (BorrowEvent event : latest.values()) {
+            if (event.type() != BorrowEvent.Type.DELETED) {
+                rows.add(new MapSqlParameterSource()
+                        .addValue("borrowId", event.borrowId())
+                        .addValue("userId", event.userId())
+                        .addValue("bookId", event.bookId())
+                        .addValue("status", event.status().name())
+                        .addValue("borrowDate", timestamp(event.borrowDate()))
+                        .addValue("dueDate", timestamp(event.dueDate()))
+                        .addValue("returnDate", timestamp(event.returnDate()))
+                        .addValue("updatedAt", timestamp(event.occurredAt())));
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows.toArray(SqlParameterSource[]::new));
+        }
+    }
+
+    @Override
+    public void reset() {
+        jdbcTemplate.update("DELETE FROM borrow_user_history", Map.of());
+    }
+
+    public List<BorrowDTO> findByUser(Long userId) {
+        return jdbcTemplate.query("SELECT borrow_id, user_id, book_id, status, borrow_date, due_date, return_date, "
+                        + "updated_at FROM borrow_user_history WHERE user_id = :userId ORDER BY borrow_date DESC, borrow_id DESC",
+                Map.of("userId", userId), (rs, rowNum) -> {
+                    BorrowDTO dto = new BorrowDTO();
+                    dto.setId(rs.getLong("borrow_id"));
+                    dto.setUserId(rs.getLong("user_id"));
+                    dto.setBookId(rs.getLong("book_id"));
+                    dto.setStatus(Borrow.BorrowStatus.valueOf(rs.getString("status")));
+                    dto.setBorrowDate(rs.getObject("borrow_date", LocalDateTime.class));
+                    dto.setDueDate(rs.getObject("due_date", LocalDateTime.class));
+                    dto.setReturnDate(rs.getObject("return_date", LocalDateTime.class));
+                    dto.setUpdatedAt(rs.getObject("updated_at", LocalDateTime.class));
+                    return dto;
+                });
+    }
+
+    private static Timestamp timestamp(LocalDateTime value) {
+        return value != null ? Timestamp.valueOf(value) : null;
+    }
+}
@@ -0,0 +1,27 @@
+package com.library.borrow_service.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.library.borrow_service.entity.BorrowArchive;
+
+@Repository
+public interface BorrowArchiveRepository extends JpaRepository<BorrowArchive, Long> {
+
+    List<BorrowArchive> findByUserId(Long userId);
+
+    @Modifying
+    @Query(value = "INSERT INTO borrows_archive (id, user_id, book_id, borrow_date, due_date, return_date, status, "
+            + "fine_amount, created_at, updated_at, archived_at) "
+            + "SELECT id, user_id, book_id, borrow_date, due_date, return_date, status, fine_amount, created_at, updated_at, "
+            + ":archivedAt "
+            + "FROM borrows WHERE id IN :ids", nativeQuery = true)
+    int copyFromBorrows(@Param("ids") Collection<Long> ids, @Param("archivedAt") LocalDateTime archivedAt);
+}
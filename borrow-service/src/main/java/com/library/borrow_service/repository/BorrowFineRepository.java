@@ -1,11 +1,19 @@
 package com.library.borrow_service.repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.library.borrow_service.dto.BorrowFineDTO;
 import com.library.borrow_service.entity.BorrowFine;
 
 @Repository
@@ -13,13 +21,71 @@ public interface BorrowFineRepository extends JpaRepository<BorrowFine, Long> {
 
     List<BorrowFine> findByBorrowId(Long borrowId);
 
+    List<BorrowFine> findByBorrowIdIn(Collection<Long> borrowIds);
+
+    List<BorrowFine> findByBorrowIdInAndReason(Collection<Long> borrowIds, BorrowFine.FineReason reason);
+
     List<BorrowFine> findByUserId(Long userId);
 
     List<BorrowFine> findByUserIdAndPaid(Long userId, Boolean paid);
 
+    @Query("SELECT COALESCE(SUM(f.amount), 0) FROM BorrowFine f WHERE f.userId = :userId AND f.paid = false")
+    BigDecimal sumUnpaidAmountByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT COALESCE(SUM(f.amount), 0) FROM BorrowFine f WHERE f.borrowId = :borrowId")
+    BigDecimal sumAmountByBorrowId(@Param("borrowId") Long borrowId);
+
+    @Query("SELECT f.borrowId, SUM(f.amount) FROM BorrowFine f WHERE f.borrowId IN :borrowIds GROUP BY f.borrowId")
+    List<Object[]> sumAmountsByBorrowIds(@Param("borrowIds") Collection<Long> borrowIds);
+
     List<BorrowFine> findByReason(BorrowFine.FineReason reason);
 
     List<BorrowFine> findByPaid(Boolean paid);
 
     Optional<BorrowFine> findByBorrowIdAndReason(Long borrowId, BorrowFine.FineReason reason);
+
+    // Insert the late fine of a borrow, or set its amount if another writer charged it first
+    @Modifying
+    @Query(value = "INSERT INTO borrow_fines (borrow_id, user_id, amount, reason, paid, created_at) "
+            + "VALUES (:borrowId, :userId, :amount, 'LATE', FALSE, :createdAt) "
+            + "ON DUPLICATE KEY UPDATE amount = VALUES(amount)", nativeQuery = true)
+    int upsertLateFine(@Param("borrowId") Long borrowId,
+                       @Param("userId") Long userId,
+                       @Param("amount") BigDecimal amount,
+                       @Param("createdAt") LocalDateTime createdAt);
+
+    // Fine read models joined with their borrow (live or archived), so bookId comes back in the same query
+    String FINE_DETAILS_SELECT = "SELECT new com.library.borrow_service.dto.BorrowFineDTO("
+            + "f.id, f.borrowId, f.userId, COALESCE(b.bookId, a.bookId), f.amount, f.reason, f.paid, f.createdAt) "
+            + "FROM BorrowFine f LEFT JOIN Borrow b ON b.id = f.borrowId "
+            + "LEFT JOIN BorrowArchive a ON a.id = f.borrowId ";
+
+    String FINE_FILTER = "WHERE (:paid IS NULL OR f.paid = :paid) "
+            + "AND (:reason IS NULL OR f.reason = :reason) "
+            + "AND (:from IS NULL OR f.createdAt >= :from) "
+            + "AND (:to IS NULL OR f.createdAt < :to)";
+
+    @Query(FINE_DETAILS_SELECT + "WHERE f.id = :fineId")
+    Optional<BorrowFineDTO> findFineDetailsById(@Param("fineId") Long fineId);
+
+    @Query(FINE_DETAILS_SELECT + "WHERE f.userId = :userId ORDER BY f.id")
+    List<BorrowFineDTO> findFineDetailsByUserId(@Param("userId") Long userId);
+
+    @Query(FINE_DETAILS_SELECT + "WHERE f.userId = :userId AND f.paid = :paid ORDER BY f.id")
+    List<BorrowFineDTO> findFineDetailsByUserIdAndPaid(@Param("userId") Long userId,
+                                                       @Param("paid") Boolean paid);
+
+    @Query(FINE_DETAILS_SELECT + FINE_FILTER + " ORDER BY f.id")
+    List<BorrowFineDTO> findFineDetails(@Param("paid") Boolean paid,
+                                        @Param("reason") BorrowFine.FineReason reason,
+                                        @Param("from") LocalDateTime from,
+                                        @Param("to") LocalDateTime to);
+
+    @Query(FINE_DETAILS_SELECT + FINE_FILTER + " AND f.id > :afterId ORDER BY f.id")
+    List<BorrowFineDTO> findFineDetailsAfter(@Param("afterId") Long afterId,
+                                             @Param("paid") Boolean paid,
+                                             @Param("reason") BorrowFine.FineReason reason,
+                                             @Param("from") LocalDateTime from,
+                                             @Param("to") LocalDateTime to,
+                                             Pageable pageable);
 }
\ No newline at end of file
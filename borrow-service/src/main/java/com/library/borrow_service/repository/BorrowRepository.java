@@ -1,13 +1,17 @@
 package com.library.borrow_service.repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.library.borrow_service.dto.BorrowEligibilityDTO;
 import com.library.borrow_service.entity.Borrow;
 
 @Repository
@@ -25,10 +29,98 @@ public interface BorrowRepository extends JpaRepository<Borrow, Long> {
     List<Borrow> findOverdueBorrows(@Param("currentDate") LocalDateTime currentDate,
                                    @Param("status") Borrow.BorrowStatus status);
 
+    @Query("SELECT b FROM Borrow b WHERE b.dueDate < :currentDate AND b.status = :status AND b.id > :afterId ORDER BY b.id")
+    List<Borrow> findOverdueBorrowsAfter(@Param("currentDate") LocalDateTime currentDate,
+                                         @Param("status") Borrow.BorrowStatus status,
+                                         @Param("afterId") Long afterId,
+                                         Pageable pageable);
+
+    @Query("SELECT b FROM Borrow b WHERE b.id IN :ids AND b.dueDate < :currentDate AND b.status = :status")
+    List<Borrow> findOverdueBorrowsByIds(@Param("ids") Collection<Long> ids,
+                                         @Param("currentDate") LocalDateTime currentDate,
+                                         @Param("status") Borrow.BorrowStatus status);
+
+    // Loans falling due in [from, until); those already past due are left to the chunked overdue job
+    @Query("SELECT b FROM Borrow b WHERE b.status = :status AND b.dueDate >= :from AND b.dueDate < :until")
+    List<Borrow> findDueBetween(@Param("status") Borrow.BorrowStatus status,
+                                @Param("from") LocalDateTime from,
+                                @Param("until") LocalDateTime until);
+
+    // Range over idx_borrows_status_due_date, one chunk of users after afterUserId at a time;
+    // loans already reminded for their current due date are skipped
+    @Query("SELECT b FROM Borrow b WHERE b.status = :status AND b.dueDate >= :from AND b.dueDate < :until "
+            + "AND (b.dueReminderFor IS NULL OR b.dueReminderFor <> b.dueDate) AND b.userId > :afterUserId "
+            + "ORDER BY b.userId, b.dueDate, b.id")
+    List<Borrow> findDueSoonUnreminded(@Param("status") Borrow.BorrowStatus status,
+                                       @Param("from") LocalDateTime from,
+                                       @Param("until") LocalDateTime until,
+                                       @Param("afterUserId") Long afterUserId,
+                                       Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Borrow b SET b.dueReminderFor = b.dueDate WHERE b.id IN :ids")
+    int markDueReminderSent(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE Borrow b SET b.status = :newStatus, b.updatedAt = :now WHERE b.id IN :ids AND b.status = :currentStatus")
+    int updateStatusByIds(@Param("ids") Collection<Long> ids,
+                          @Param("currentStatus") Borrow.BorrowStatus currentStatus,
+                          @Param("newStatus") Borrow.BorrowStatus newStatus,
+                          @Param("now") LocalDateTime now);
+
+    // The rows a bulk status update stamped with exactly markedAt, i.e. the ones it actually flipped
+    @Query("SELECT b.id FROM Borrow b WHERE b.id IN :ids AND b.status = :status AND b.updatedAt = :markedAt")
+    List<Long> findIdsUpdatedAt(@Param("ids") Collection<Long> ids,
+                                @Param("status") Borrow.BorrowStatus status,
+                                @Param("markedAt") LocalDateTime markedAt);
+
+    // Overdue loans flagged LATE_RETURNED by the overdue job that are still out
+    @Query("SELECT b FROM Borrow b WHERE b.status = :status AND b.returnDate IS NULL AND b.id > :afterId ORDER BY b.id")
+    List<Borrow> findOutstandingAfter(@Param("status") Borrow.BorrowStatus status,
+                                      @Param("afterId") Long afterId,
+                                      Pageable pageable);
+
+    @Modifying
+    @Query(value = "UPDATE borrows SET fine_amount = "
+            + "(SELECT COALESCE(SUM(f.amount), 0) FROM borrow_fines f WHERE f.borrow_id = borrows.id) "
+            + "WHERE id IN :ids", nativeQuery = true)
+    int refreshFineAmounts(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT b FROM Borrow b WHERE b.id > :afterId "
+            + "AND (:status IS NULL OR b.status = :status) "
+            + "AND (:from IS NULL OR b.borrowDate >= :from) "
+            + "AND (:to IS NULL OR b.borrowDate < :to) ORDER BY b.id")
+    List<Borrow> findPageAfter(@Param("afterId") Long afterId,
+                               @Param("status") Borrow.BorrowStatus status,
+                               @Param("from") LocalDateTime from,
+                               @Param("to") LocalDateTime to,
+                               Pageable pageable);
+
+    // Most recent loans first, for the admin list; a primary key range read, no count query
+    List<Borrow> findAllByOrderByIdDesc(Pageable pageable);
+
+    // Unordered: a read straight off the (status, return_date) range with no sort; archived rows are
+    // deleted, so the next batch simply takes the next ones
+    @Query("SELECT b.id FROM Borrow b WHERE b.status IN :statuses AND b.returnDate < :cutoff")
+    List<Long> findArchivableBorrowIds(@Param("statuses") Collection<Borrow.BorrowStatus> statuses,
+                                       @Param("cutoff") LocalDateTime cutoff,
+                                       Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM Borrow b WHERE b.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
     @Query("SELECT b FROM Borrow b WHERE b.userId = :userId AND b.status = :status")
     List<Borrow> findActiveBorrowsByUser(@Param("userId") Long userId,
                                         @Param("status") Borrow.BorrowStatus status);
 
+    @Query("SELECT new com.library.borrow_service.dto.BorrowEligibilityDTO(COUNT(b), "
+            + "SUM(CASE WHEN b.bookId = :bookId THEN 1L ELSE 0L END)) "
+            + "FROM Borrow b WHERE b.userId = :userId AND b.status = :status")
+    BorrowEligibilityDTO checkEligibility(@Param("userId") Long userId,
+                                         @Param("bookId") Long bookId,
+                                         @Param("status") Borrow.BorrowStatus status);
+
     @Query("SELECT COUNT(b) FROM Borrow b WHERE b.userId = :userId AND b.status = :status")
     Long countActiveBorrowsByUser(@Param("userId") Long userId,
                                  @Param("status") Borrow.BorrowStatus status);
@@ -0,0 +1,37 @@
+package com.library.borrow_service.scheduler;
+
+import org.springframework.beans.factory.ObjectProvider;
+
+import com.library.borrow_service.entity.Borrow;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Keeps the overdue timer in sync with borrows created, returned or re-dated through JPA.
+ */
+public class BorrowDueDateListener {
+
+    // Resolved lazily: Hibernate creates this listener while the repositories the timer needs are still being built
+    private final ObjectProvider<OverdueTimer> overdueTimer;
+
+    public BorrowDueDateListener(ObjectProvider<OverdueTimer> overdueTimer) {
+        this.overdueTimer = overdueTimer;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onBorrowSaved(Borrow borrow) {
+        if (borrow.getStatus() == Borrow.BorrowStatus.BORROWED) {
+            overdueTimer.getObject().schedule(borrow.getId(), borrow.getDueDate());
+        } else {
+            overdueTimer.getObject().cancel(borrow.getId());
+        }
+    }
+
+    @PostRemove
+    public void onBorrowRemoved(Borrow borrow) {
+        overdueTimer.getObject().cancel(borrow.getId());
+    }
+}
@@ -3,20 +3,74 @@ package com.library.borrow_service.scheduler;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import com.library.borrow_service.service.BorrowService;
+import com.library.borrow_service.config.ShardRouter;
+import com.library.borrow_service.projection.ProjectionRunner;
+import com.library.borrow_service.service.BorrowArchiver;
+import com.library.borrow_service.service.BorrowStatsService;
+import com.library.borrow_service.service.DueReminderService;
+import com.library.borrow_service.service.OverdueBorrowProcessor;
 
 @Component
 public class BorrowScheduler {
 
-    private final BorrowService borrowService;
+    private final OverdueBorrowProcessor overdueBorrowProcessor;
+    private final OverdueTimer overdueTimer;
+    private final BorrowArchiver borrowArchiver;
+    private final BorrowStatsService borrowStatsService;
+    private final DueReminderService dueReminderService;
+    private final ProjectionRunner projectionRunner;
+    private final ShardRouter shardRouter;
 
-    public BorrowScheduler(BorrowService borrowService) {
-        this.borrowService = borrowService;
+    public BorrowScheduler(OverdueBorrowProcessor overdueBorrowProcessor, OverdueTimer overdueTimer,
+                           BorrowArchiver borrowArchiver, BorrowStatsService borrowStatsService,
+                           DueReminderService dueReminderService, ProjectionRunner projectionRunner,
+                           ShardRouter shardRouter) {
+        this.overdueBorrowProcessor = overdueBorrowProcessor;
+        this.overdueTimer = overdueTimer;
+        this.borrowArchiver = borrowArchiver;
+        this.borrowStatsService = borrowStatsService;
+        this.dueReminderService = dueReminderService;
+        this.projectionRunner = projectionRunner;
+        this.shardRouter = shardRouter;
     }
 
-    // Run every hour
+    // Run every hour as a catch-up; OverdueTimer flips loans as soon as they fall due
     @Scheduled(fixedRate = 3600000) // 1 hour in milliseconds
     public void checkAndLockOverdueUsers() {
-        borrowService.checkAndLockOverdueUsers();
+        shardRouter.forEachShard(() -> {
+            overdueBorrowProcessor.checkAndLockOverdueUsers();
+            overdueBorrowProcessor.refreshOutstandingFines();
+        });
+        overdueTimer.loadUpcoming();
     }
-}
\ No newline at end of file
+
+    // Move old completed loans to the archive once a day, off-peak
+    @Scheduled(cron = "${borrow.archive.cron:0 30 2 * * *}")
+    public void archiveCompletedBorrows() {
+        shardRouter.forEachShard(borrowArchiver::archiveCompletedBorrows);
+    }
+
+    // Refresh today's and yesterday's rollup rows
+    @Scheduled(fixedDelayString = "${borrow.stats.refresh-ms:900000}", initialDelayString = "${borrow.stats.refresh-ms:900000}")
+    public void refreshBorrowStats() {
+        shardRouter.forEachShard(borrowStatsService::refreshRecent);
+    }
+
+    // Nightly catch-up for late edits to earlier days
+    @Scheduled(cron = "${borrow.stats.catch-up-cron:0 15 2 * * *}")
+    public void catchUpBorrowStats() {
+        shardRouter.forEachShard(borrowStatsService::catchUp);
+    }
+
+    // Morning reminder for loans falling due in the next few days
+    @Scheduled(cron = "${borrow.reminders.cron:0 0 8 * * *}")
+    public void sendDueSoonReminders() {
+        shardRouter.forEachShard(dueReminderService::sendDueSoonReminders);
+    }
+
+    // Apply new borrow events to the read models
+    @Scheduled(fixedDelayString = "${borrow.projections.poll-ms:10000}")
+    public void catchUpProjections() {
+        shardRouter.forEachShard(projectionRunner::catchUp);
+    }
+}
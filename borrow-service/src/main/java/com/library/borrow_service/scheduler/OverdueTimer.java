@@ -0,0 +1,142 @@
+package com.library.borrow_service.scheduler;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.library.borrow_service.config.ShardRouter;
+import com.library.borrow_service.entity.Borrow;
+import com.library.borrow_service.repository.BorrowRepository;
+import com.library.borrow_service.service.OverdueBorrowProcessor;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Flips active borrows to overdue within seconds of their due date.
+ * Only loans due within the loading horizon are held in memory; the hourly
+ * scheduler run refills the window and catches anything the timer missed.
+ */
+@Component
+public class OverdueTimer {
+
+    private final BorrowRepository borrowRepository;
+    private final OverdueBorrowProcessor overdueBorrowProcessor;
+    private final ShardRouter shardRouter;
+    private final long horizonHours;
+    private final int batchSize;
+
+    private final DelayQueue<DueBorrow> dueQueue = new DelayQueue<>();
+    // Latest scheduled due date per borrow; queue entries that no longer match are stale and skipped
+    private final Map<Long, LocalDateTime> scheduledDueDates = new ConcurrentHashMap<>();
+    private volatile LocalDateTime loadedUntil = LocalDateTime.MIN;
+    private Thread worker;
+
+    public OverdueTimer(BorrowRepository borrowRepository, OverdueBorrowProcessor overdueBorrowProcessor,
+                        ShardRouter shardRouter,
+                        @Value("${borrow.overdue.timer.horizon-hours:24}") long horizonHours,
+                        @Value("${borrow.overdue.chunk-size:500}") int batchSize) {
+        this.borrowRepository = borrowRepository;
+        this.overdueBorrowProcessor = overdueBorrowProcessor;
+        this.shardRouter = shardRouter;
+        this.horizonHours = horizonHours;
+        this.batchSize = batchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        loadUpcoming();
+        worker = Thread.ofVirtual().name("overdue-timer").start(this::run);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    // Load active borrows that fall due within the horizon. The backlog already past due is not
+    // loaded, however large: the hourly chunked run flips it without holding it all in memory.
+    public void loadUpcoming() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime until = now.plusHours(horizonHours);
+        List<Borrow> upcoming = shardRouter.scatter(
+                () -> borrowRepository.findDueBetween(Borrow.BorrowStatus.BORROWED, now, until));
+        loadedUntil = until;
+        upcoming.forEach(borrow -> schedule(borrow.getId(), borrow.getDueDate()));
+        System.out.println("Overdue timer: " + scheduledDueDates.size() + " borrows due before " + until);
+    }
+
+    public void schedule(Long borrowId, LocalDateTime dueDate) {
+        if (borrowId == null || dueDate == null) {
+            return;
+        }
+        if (dueDate.isAfter(loadedUntil)) {
+            // Outside the loaded window; the next refill picks it up
+            scheduledDueDates.remove(borrowId);
+            return;
+        }
+        if (!dueDate.equals(scheduledDueDates.put(borrowId, dueDate))) {
+            dueQueue.offer(new DueBorrow(borrowId, dueDate));
+        }
+    }
+
+    public void cancel(Long borrowId) {
+        if (borrowId != null) {
+            scheduledDueDates.remove(borrowId);
+        }
+    }
+
+    boolean isScheduled(Long borrowId) {
+        return scheduledDueDates.containsKey(borrowId);
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                List<DueBorrow> expired = new ArrayList<>();
+                expired.add(dueQueue.take());
+                dueQueue.drainTo(expired, batchSize - 1);
+
+                List<Long> borrowIds = expired.stream()
+                        .filter(due -> scheduledDueDates.remove(due.borrowId(), due.dueDate()))
+                        .map(DueBorrow::borrowId)
+                        .toList();
+                if (!borrowIds.isEmpty()) {
+                    int updated = overdueBorrowProcessor.markOverdue(borrowIds);
+                    System.out.println("Overdue timer: marked " + updated + " borrows overdue");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                // Log error and keep the timer alive; the hourly run retries
+                System.err.println("Overdue timer failed to process due borrows: " + e.getMessage());
+            }
+        }
+    }
+
+    private record DueBorrow(Long borrowId, LocalDateTime dueDate) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            // Full precision: firing even a millisecond early finds the loan not yet due, and drops it
+            return unit.convert(Duration.between(LocalDateTime.now(), dueDate));
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return dueDate.compareTo(((DueBorrow) other).dueDate());
+        }
+    }
+}
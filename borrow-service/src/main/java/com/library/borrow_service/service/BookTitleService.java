@@ -0,0 +1,129 @@
+package com.library.borrow_service.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import com.library.borrow_service.cache.BoundedTtlCache;
+
+@Service
+public class BookTitleService {
+
+    private static final String UNKNOWN_TITLE = "N/A";
+
+    // Local title cache
+    private static final long CACHE_TTL_MILLIS = 10 * 60 * 1000; // 10 minutes
+    private static final int MAX_CACHE_SIZE = 10000;
+
+    private final RestTemplate restTemplate;
+    private final String bookServiceUrl;
+    private final BoundedTtlCache<Long, String> titleCache = new BoundedTtlCache<>(MAX_CACHE_SIZE);
+
+    public BookTitleService(RestTemplate restTemplate,
+                            @Value("${book-service.url:http://localhost:8082}") String bookServiceUrl) {
+        this.restTemplate = restTemplate;
+        this.bookServiceUrl = bookServiceUrl + "/books";
+    }
+
+    public String getBookTitle(Long bookId) {
+        return getBookTitles(List.of(bookId)).get(bookId);
+    }
+
+    // Resolve titles for all given books with at most one call to book-service
+    public Map<Long, String> getBookTitles(Collection<Long> bookIds) {
+        Map<Long, String> titles = new HashMap<>();
+        Set<Long> missingIds = new LinkedHashSet<>();
+
+        for (Long bookId : bookIds) {
+            String cached = titleCache.get(bookId);
+            if (cached != null) {
+                titles.put(bookId, cached);
+            } else {
+                missingIds.add(bookId);
+            }
+        }
+
+        if (!missingIds.isEmpty()) {
+            Map<Long, String> fetchedTitles = fetchTitles(missingIds);
+            fetchedTitles.forEach((bookId, title) -> {
+                titleCache.put(bookId, title, CACHE_TTL_MILLIS);
+                titles.put(bookId, title);
+            });
+            // Unresolved books are not cached so they are retried on the next request
+            missingIds.forEach(bookId -> titles.putIfAbsent(bookId, UNKNOWN_TITLE));
+        }
+
+        return titles;
+    }
+
+    public void evictBookTitle(Long bookId) {
+        titleCache.remove(bookId);
+    }
+
+    private Map<Long, String> fetchTitles(Set<Long> bookIds) {
+        try {
+            String ids = bookIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+            List<Map<String, Object>> books = restTemplate.exchange(
+                    bookServiceUrl + "/batch?ids=" + ids,
+                    HttpMethod.GET,
+                    null,
+                    new ParameterizedTypeReference<List<Map<String, Object>>>() {}).getBody();
+
+            Map<Long, String> titles = new HashMap<>();
+            if (books != null) {
+                for (Map<String, Object> book : books) {
+                    if (book.get("id") instanceof Number id && book.get("title") instanceof String title) {
+                        titles.put(id.longValue(), title);
+                    }
+                }
+            }
+            return titles;
+        } catch (Exception e) {
+            System.err.println("Batch book lookup failed, falling back to parallel lookups: " + e.getMessage());
+            return fetchTitlesInParallel(bookIds);
+        }
+    }
+
+    private Map<Long, String> fetchTitlesInParallel(Set<Long> bookIds) {
+        Map<Long, String> titles = new HashMap<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Map<Long, Future<String>> futures = new HashMap<>();
+            for (Long bookId : bookIds) {
+                futures.put(bookId, executor.submit(() -> fetchTitle(bookId)));
+            }
+            for (Map.Entry<Long, Future<String>> entry : futures.entrySet()) {
+                try {
+                    String title = entry.getValue().get();
+                    if (title != null) {
+                        titles.put(entry.getKey(), title);
+                    }
+                } catch (Exception e) {
+                    System.err.println("Error fetching book title for bookId " + entry.getKey() + ": " + e.getMessage());
+                }
+            }
+        }
+        return titles;
+    }
+
+    private String fetchTitle(Long bookId) {
+        Map<String, Object> book = restTemplate.exchange(
+                bookServiceUrl + "/" + bookId,
+                HttpMethod.GET,
+                null,
+                new ParameterizedTypeReference<Map<String, Object>>() {}).getBody();
+        return book != null && book.get("title") instanceof String title ? title : null;
+    }
+}
@@ -0,0 +1,74 @@
+package com.library.borrow_service.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.library.borrow_service.entity.Borrow;
+import com.library.borrow_service.repository.BorrowArchiveRepository;
+import com.library.borrow_service.repository.BorrowRepository;
+
+/**
+ * Moves completed borrows returned more than the configured age ago from the hot borrows
+ * table into borrows_archive. Each batch is copied and deleted in its own transaction.
+ */
+@Service
+public class BorrowArchiver {
+
+    // LATE_RETURNED without a return date is a loan still out; the returnDate filter keeps those hot
+    private static final List<Borrow.BorrowStatus> COMPLETED_STATUSES =
+            List.of(Borrow.BorrowStatus.RETURNED, Borrow.BorrowStatus.LATE_RETURNED);
+
+    private final BorrowRepository borrowRepository;
+    private final BorrowArchiveRepository borrowArchiveRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int minAgeDays;
+    private final int batchSize;
+
+    public BorrowArchiver(BorrowRepository borrowRepository, BorrowArchiveRepository borrowArchiveRepository,
+                          TransactionTemplate transactionTemplate,
+                          @Value("${borrow.archive.min-age-days:365}") int minAgeDays,
+                          @Value("${borrow.archive.batch-size:1000}") int batchSize) {
+        this.borrowRepository = borrowRepository;
+        this.borrowArchiveRepository = borrowArchiveRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.minAgeDays = minAgeDays;
+        this.batchSize = batchSize;
+    }
+
+    public int archiveCompletedBorrows() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime cutoff = now.minusDays(minAgeDays);
+        long startNanos = System.nanoTime();
+        int archived = 0;
+
+        while (true) {
+            // Always the first page: the previous batch is gone from borrows
+            List<Long> ids = borrowRepository.findArchivableBorrowIds(
+                    COMPLETED_STATUSES, cutoff, PageRequest.of(0, batchSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+
+            Integer moved = transactionTemplate.execute(status -> {
+                borrowArchiveRepository.copyFromBorrows(ids, now);
+                return borrowRepository.deleteByIds(ids);
+            });
+            archived += moved != null ? moved : 0;
+
+            // Nothing deleted means the same ids would come back forever
+            if (ids.size() < batchSize || moved == null || moved == 0) {
+                break;
+            }
+        }
+
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        System.out.println("Borrow archiver: moved " + archived + " borrows returned before " + cutoff
+                + " in " + elapsedMillis + " ms");
+        return archived;
+    }
+}
@@ -0,0 +1,108 @@
+package com.library.borrow_service.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import com.library.borrow_service.cache.BoundedTtlCache;
+import com.library.borrow_service.dto.UserProfileLockDto;
+
+/**
+ * Owns the borrow lock calls to user-service and keeps a local, bounded TTL cache of each
+ * user's lock state, so checkouts do not need a user-service round-trip on every request.
+ * An unlocked state is kept only briefly, since an admin may lock the user in user-service at any
+ * time; user-service also evicts the entry when an admin changes the lock.
+ */
+@Service
+public class BorrowLockService {
+
+
+    private final RestTemplate restTemplate;
+    private final String userServiceUrl;
+    private final long lockedTtlMillis;
+    private final long unlockedTtlMillis;
+    private final BoundedTtlCache<Long, Boolean> lockCache;
+
+    public BorrowLockService(RestTemplate restTemplate,
+                             @Value("${user-service.url:http://localhost:8081}") String userServiceUrl,
+                             @Value("${borrow.lock-cache.ttl-seconds:300}") long ttlSeconds,
+                             @Value("${borrow.lock-cache.unlocked-ttl-seconds:30}") long unlockedTtlSeconds,
+                             @Value("${borrow.lock-cache.max-size:10000}") int maxSize) {
+        this.restTemplate = restTemplate;
+        this.userServiceUrl = userServiceUrl + "/users";
+        this.lockedTtlMillis = ttlSeconds * 1000;
+        this.unlockedTtlMillis = Math.min(unlockedTtlSeconds, ttlSeconds) * 1000;
+        this.lockCache = new BoundedTtlCache<>(maxSize);
+    }
+
+    public boolean isLocked(Long userId) {
+        Boolean cached = lockCache.get(userId);
+        if (cached != null) {
+            return cached;
+        }
+
+        try {
+            UserProfileLockDto userProfile = restTemplate.getForObject(
+                    userServiceUrl + "/" + userId + "/profile", UserProfileLockDto.class);
+            boolean locked = userProfile != null && Boolean.TRUE.equals(userProfile.getBorrowLock());
+            remember(userId, locked);
+            return locked;
+        } catch (Exception e) {
+            // If we can't check the lock status, allow borrowing but log the error
+            System.err.println("Failed to check borrow lock status for user " + userId + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    public void lockUser(Long userId) {
+        remember(userId, true);
+        try {
+            restTemplate.put(userServiceUrl + "/" + userId + "/lock", null);
+        } catch (Exception e) {
+            System.err.println("Failed to lock user " + userId + ": " + e.getMessage());
+        }
+    }
+
+    public void lockUsers(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        userIds.forEach(userId -> remember(userId, true));
+        try {
+            // Call user-service once to lock borrowing for all users
+            restTemplate.put(userServiceUrl + "/lock", new ArrayList<>(userIds));
+        } catch (Exception e) {
+            System.err.println("Batch lock failed, falling back to per-user lock: " + e.getMessage());
+            for (Long userId : userIds) {
+                try {
+                    restTemplate.put(userServiceUrl + "/" + userId + "/lock", null);
+                } catch (Exception ex) {
+                    // Log error but don't fail the process
+                    System.err.println("Failed to lock user " + userId + ": " + ex.getMessage());
+                }
+            }
+        }
+    }
+
+    public void unlockUser(Long userId) {
+        remember(userId, false);
+        try {
+            restTemplate.put(userServiceUrl + "/" + userId + "/unlock", null);
+        } catch (Exception e) {
+            // Log error but don't fail the process
+            System.err.println("Failed to unlock user " + userId + ": " + e.getMessage());
+        }
+    }
+
+    // Drops the cached state so the next check asks user-service
+    public void evict(Long userId) {
+        lockCache.remove(userId);
+    }
+
+    private void remember(Long userId, boolean locked) {
+        lockCache.put(userId, locked, locked ? lockedTtlMillis : unlockedTtlMillis);
+    }
+}
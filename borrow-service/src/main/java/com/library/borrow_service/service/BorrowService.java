@@ -1,20 +1,35 @@
 package com.library.borrow_service.service;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.library.borrow_service.config.ShardRouter;
+import com.library.borrow_service.dto.BorrowBatchResultDTO;
 import com.library.borrow_service.dto.BorrowDTO;
+import com.library.borrow_service.dto.BorrowEligibilityDTO;
 import com.library.borrow_service.dto.BorrowFineDTO;
-import com.library.borrow_service.dto.UserProfileLockDto;
+import com.library.borrow_service.dto.KeysetPageDTO;
 import com.library.borrow_service.entity.Borrow;
 import com.library.borrow_service.entity.BorrowFine;
+import com.library.borrow_service.repository.BorrowArchiveRepository;
 import com.library.borrow_service.repository.BorrowFineRepository;
 import com.library.borrow_service.repository.BorrowRepository;
 
@@ -24,21 +39,44 @@ public class BorrowService {
 
     private final BorrowRepository borrowRepository;
     private final BorrowFineRepository borrowFineRepository;
-    private final RestTemplate restTemplate;
+    private final BorrowArchiveRepository borrowArchiveRepository;
+    private final BorrowLockService borrowLockService;
+    private final UserBorrowLocks userBorrowLocks;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
 
     // Fine rates
-    private static final BigDecimal LATE_FINE_RATE = BigDecimal.valueOf(10000); // 10,000 VND per day
+    static final BigDecimal LATE_FINE_RATE = BigDecimal.valueOf(10000); // 10,000 VND per day
     private static final int BORROW_PERIOD_DAYS = 14; // 2 weeks
+    private static final int MAX_ACTIVE_BORROWS = 5;
 
-    public BorrowService(BorrowRepository borrowRepository, BorrowFineRepository borrowFineRepository, RestTemplate restTemplate) {
+    public BorrowService(BorrowRepository borrowRepository, BorrowFineRepository borrowFineRepository,
+                         BorrowArchiveRepository borrowArchiveRepository, BorrowLockService borrowLockService, UserBorrowLocks userBorrowLocks,
+                         TransactionTemplate transactionTemplate, ShardRouter shardRouter) {
         this.borrowRepository = borrowRepository;
         this.borrowFineRepository = borrowFineRepository;
-        this.restTemplate = restTemplate;
+        this.borrowArchiveRepository = borrowArchiveRepository;
+        this.borrowLockService = borrowLockService;
+        this.userBorrowLocks = userBorrowLocks;
+        this.transactionTemplate = transactionTemplate;
+        this.shardRouter = shardRouter;
     }
 
     // Borrow operations
+    // Queries that are not scoped to one user gather from every shard, outside any single shard's transaction
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public List<BorrowDTO> getAllBorrows() {
-        return borrowRepository.findAll().stream()
+        return shardRouter.scatter(borrowRepository::findAll).stream()
+                .sorted(Comparator.comparing(Borrow::getId))
+                .map(this::convertBorrowToDTO)
+                .collect(Collectors.toList());
+    }
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<BorrowDTO> getOverdueBorrows() {
+        LocalDateTime now = LocalDateTime.now();
+        return shardRouter.scatter(() -> borrowRepository.findOverdueBorrows(now, Borrow.BorrowStatus.BORROWED)).stream()
+                .sorted(Comparator.comparing(Borrow::getDueDate).thenComparing(Borrow::getId))
                 .map(this::convertBorrowToDTO)
                 .collect(Collectors.toList());
     }
@@ -49,13 +87,23 @@ public class BorrowService {
     }
 
     public List<BorrowDTO> getBorrowsByUser(Long userId) {
-        return borrowRepository.findByUserId(userId).stream()
+        return getBorrowsByUser(userId, false);
+    }
+
+    public List<BorrowDTO> getBorrowsByUser(Long userId, boolean fullHistory) {
+        List<Borrow> borrows = new ArrayList<>(borrowRepository.findByUserId(userId));
+        if (fullHistory) {
+            borrowArchiveRepository.findByUserId(userId).forEach(archived -> borrows.add(archived.toBorrow()));
+        }
+        return borrows.stream()
                 .map(this::convertBorrowToDTO)
                 .collect(Collectors.toList());
     }
 
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public List<BorrowDTO> getBorrowsByBook(Long bookId) {
-        return borrowRepository.findByBookId(bookId).stream()
+        return shardRouter.scatter(() -> borrowRepository.findByBookId(bookId)).stream()
+                .sorted(Comparator.comparing(Borrow::getId))
                 .map(this::convertBorrowToDTO)
                 .collect(Collectors.toList());
     }
@@ -70,52 +118,69 @@ public class BorrowService {
         return borrowRepository.countActiveBorrowsByUser(userId, Borrow.BorrowStatus.BORROWED);
     }
 
-    public BorrowDTO borrowBook(Long userId, Long bookId) {
+    // Single checkout (POST /borrows). Checking out a book the user already holds renews it to the given due date.
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public BorrowDTO borrowBook(Long userId, Long bookId, LocalDateTime borrowDate, LocalDateTime dueDate) {
         // Check if user is locked from borrowing
-        try {
-            String url = "http://localhost:8081/users/" + userId + "/profile";
-            UserProfileLockDto userProfile = restTemplate.getForObject(url, UserProfileLockDto.class);
-            if (userProfile != null && Boolean.TRUE.equals(userProfile.getBorrowLock())) {
-                throw new IllegalStateException("User is locked from borrowing due to outstanding fines");
-            }
-        } catch (Exception e) {
-            // If we can't check the lock status, allow borrowing but log the error
-            System.err.println("Failed to check borrow lock status for user " + userId + ": " + e.getMessage());
+        if (borrowLockService.isLocked(userId)) {
+            throw new IllegalStateException("User is locked from borrowing due to outstanding fines");
         }
 
-        // Check if user already has this book borrowed
-        List<Borrow> activeBorrows = borrowRepository.findActiveBorrowsByUser(userId, Borrow.BorrowStatus.BORROWED);
-        boolean alreadyBorrowed = activeBorrows.stream()
-                .anyMatch(borrow -> borrow.getBookId().equals(bookId));
+        // Serialise checkouts of the same user so the eligibility check and the insert commit together
+        return userBorrowLocks.withLock(userId,
+                () -> transactionTemplate.execute(status -> createBorrow(userId, bookId, borrowDate, dueDate)));
+    }
 
-        if (alreadyBorrowed) {
-            throw new IllegalStateException("User already has this book borrowed");
+    private BorrowDTO createBorrow(Long userId, Long bookId, LocalDateTime borrowDate, LocalDateTime dueDate) {
+        BorrowEligibilityDTO eligibility = borrowRepository.checkEligibility(userId, bookId, Borrow.BorrowStatus.BORROWED);
+
+        // A repeat checkout of a book the user already has moves its due date
+        if (eligibility.isAlreadyBorrowed()) {
+            Borrow existingBorrow = borrowRepository.findByUserIdAndBookIdAndStatus(
+                    userId, bookId, Borrow.BorrowStatus.BORROWED).get(0);
+            if (dueDate != null) {
+                existingBorrow.setDueDate(dueDate);
+            }
+            return convertBorrowToDTO(borrowRepository.save(existingBorrow));
         }
 
         // Check borrow limit (max 5 books per user)
-        if (countActiveBorrowsByUser(userId) >= 5) {
+        if (eligibility.getActiveBorrowCount() >= MAX_ACTIVE_BORROWS) {
             throw new IllegalStateException("User has reached maximum borrow limit");
         }
+        if (dueDate == null) {
+            throw new IllegalArgumentException("Due date is required");
+        }
 
         Borrow borrow = new Borrow();
         borrow.setUserId(userId);
         borrow.setBookId(bookId);
-        borrow.setBorrowDate(LocalDateTime.now());
-        borrow.setDueDate(LocalDateTime.now().plusDays(BORROW_PERIOD_DAYS));
+        borrow.setBorrowDate(borrowDate != null ? borrowDate : LocalDateTime.now());
+        borrow.setDueDate(dueDate);
         borrow.setStatus(Borrow.BorrowStatus.BORROWED);
 
         Borrow savedBorrow = borrowRepository.save(borrow);
         return convertBorrowToDTO(savedBorrow);
     }
 
+    // The user lock is an HTTP call to user-service: it goes out after the return commits, not while
+    // the borrow and fine rows are still locked, and only for a fine that was actually saved
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public BorrowDTO returnBook(Long borrowId) {
+        Set<Long> usersToLock = new LinkedHashSet<>();
+        BorrowDTO returned = transactionTemplate.execute(status -> applyReturn(borrowId, usersToLock));
+        borrowLockService.lockUsers(usersToLock);
+        return returned;
+    }
+
+    private BorrowDTO applyReturn(Long borrowId, Set<Long> usersToLock) {
         Optional<Borrow> borrowOpt = borrowRepository.findById(borrowId);
         if (borrowOpt.isEmpty()) {
             throw new IllegalArgumentException("Borrow record not found");
         }
 
         Borrow borrow = borrowOpt.get();
-        if (borrow.getStatus() != Borrow.BorrowStatus.BORROWED) {
+        if (!isCheckedOut(borrow)) {
             throw new IllegalStateException("Book is not currently borrowed");
         }
 
@@ -136,17 +201,144 @@ public class BorrowService {
                 borrowFineRepository.save(fine);
             } else {
                 // Create late fine if not exists
-                createLateFine(borrow, returnDate);
+                if (createLateFine(borrow, returnDate)) {
+                    usersToLock.add(borrow.getUserId());
+                }
             }
         } else {
             borrow.setStatus(Borrow.BorrowStatus.RETURNED);
         }
+        refreshFineAmount(borrow);
 
         Borrow savedBorrow = borrowRepository.save(borrow);
         return convertBorrowToDTO(savedBorrow);
     }
 
+    // Desk checkout: one lock check, one eligibility read and one transaction for the whole scan
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<BorrowBatchResultDTO> borrowBooks(Long userId, List<Long> bookIds, Set<Long> knownBookIds,
+                                                  LocalDateTime dueDate) {
+        if (borrowLockService.isLocked(userId)) {
+            throw new IllegalStateException("User is locked from borrowing due to outstanding fines");
+        }
+
+        return userBorrowLocks.withLock(userId,
+                () -> transactionTemplate.execute(status -> createBorrows(userId, bookIds, knownBookIds, dueDate)));
+    }
+
+    private List<BorrowBatchResultDTO> createBorrows(Long userId, List<Long> bookIds, Set<Long> knownBookIds,
+                                                     LocalDateTime dueDate) {
+        List<Borrow> activeBorrows = borrowRepository.findActiveBorrowsByUser(userId, Borrow.BorrowStatus.BORROWED);
+        Set<Long> borrowedBookIds = activeBorrows.stream().map(Borrow::getBookId).collect(Collectors.toSet());
+        int activeCount = activeBorrows.size();
+
+        LocalDateTime now = LocalDateTime.now();
+        BorrowBatchResultDTO[] results = new BorrowBatchResultDTO[bookIds.size()];
+        Map<Integer, Borrow> accepted = new LinkedHashMap<>();
+        for (int i = 0; i < bookIds.size(); i++) {
+            Long bookId = bookIds.get(i);
+            if (!knownBookIds.contains(bookId)) {
+                results[i] = BorrowBatchResultDTO.failed(bookId, null, "Invalid bookId");
+            } else if (!borrowedBookIds.add(bookId)) {
+                results[i] = BorrowBatchResultDTO.failed(bookId, null, "User already has this book borrowed");
+            } else if (activeCount >= MAX_ACTIVE_BORROWS) {
+                results[i] = BorrowBatchResultDTO.failed(bookId, null, "User has reached maximum borrow limit");
+            } else {
+                Borrow borrow = new Borrow();
+                borrow.setUserId(userId);
+                borrow.setBookId(bookId);
+                borrow.setBorrowDate(now);
+                borrow.setDueDate(dueDate != null ? dueDate : now.plusDays(BORROW_PERIOD_DAYS));
+                borrow.setStatus(Borrow.BorrowStatus.BORROWED);
+                accepted.put(i, borrow);
+                activeCount++;
+            }
+        }
+
+        borrowRepository.saveAll(accepted.values());
+        accepted.forEach((i, borrow) -> results[i] = BorrowBatchResultDTO.succeeded(convertBorrowToDTO(borrow)));
+        return Arrays.asList(results);
+    }
+
+    // Desk return: all borrows and their late fines are loaded with one query each. As in returnBook,
+    // users are locked for their new fines only once the returns have committed
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<BorrowBatchResultDTO> returnBooks(List<Long> borrowIds) {
+        Set<Long> usersToLock = new LinkedHashSet<>();
+        List<BorrowBatchResultDTO> results = transactionTemplate.execute(status -> applyReturns(borrowIds, usersToLock));
+        borrowLockService.lockUsers(usersToLock);
+        return results;
+    }
+
+    private List<BorrowBatchResultDTO> applyReturns(List<Long> borrowIds, Set<Long> usersToLock) {
+        LocalDateTime returnDate = LocalDateTime.now();
+        Map<Long, Borrow> borrows = borrowRepository.findAllById(borrowIds).stream()
+                .collect(Collectors.toMap(Borrow::getId, Function.identity()));
+        List<Long> lateBorrowIds = borrows.values().stream()
+                .filter(borrow -> returnDate.isAfter(borrow.getDueDate()))
+                .map(Borrow::getId)
+                .collect(Collectors.toList());
+        Map<Long, BorrowFine> lateFines = lateBorrowIds.isEmpty() ? Map.of()
+                : borrowFineRepository.findByBorrowIdInAndReason(lateBorrowIds, BorrowFine.FineReason.LATE).stream()
+                        .collect(Collectors.toMap(BorrowFine::getBorrowId, Function.identity(), (first, second) -> first));
+
+        BorrowBatchResultDTO[] results = new BorrowBatchResultDTO[borrowIds.size()];
+        Map<Integer, Borrow> returned = new LinkedHashMap<>();
+        List<BorrowFine> finesToSave = new ArrayList<>();
+        for (int i = 0; i < borrowIds.size(); i++) {
+            Long borrowId = borrowIds.get(i);
+            Borrow borrow = borrows.get(borrowId);
+            if (borrow == null) {
+                results[i] = BorrowBatchResultDTO.failed(null, borrowId, "Borrow record not found");
+                continue;
+            }
+            if (!isCheckedOut(borrow)) {
+                results[i] = BorrowBatchResultDTO.failed(borrow.getBookId(), borrowId, "Book is not currently borrowed");
+                continue;
+            }
+
+            borrow.setReturnDate(returnDate);
+            if (returnDate.isAfter(borrow.getDueDate())) {
+                borrow.setStatus(Borrow.BorrowStatus.LATE_RETURNED);
+                long daysLate = java.time.Duration.between(borrow.getDueDate(), returnDate).toDays();
+                BigDecimal fineAmount = LATE_FINE_RATE.multiply(BigDecimal.valueOf(Math.max(daysLate, 0)));
+                BorrowFine fine = lateFines.get(borrowId);
+                if (fine != null) {
+                    fine.setAmount(fineAmount);
+                    finesToSave.add(fine);
+                } else if (daysLate > 0) {
+                    borrowFineRepository.upsertLateFine(borrowId, borrow.getUserId(), fineAmount, returnDate);
+                    usersToLock.add(borrow.getUserId());
+                }
+            } else {
+                borrow.setStatus(Borrow.BorrowStatus.RETURNED);
+            }
+            returned.put(i, borrow);
+        }
+
+        borrowFineRepository.saveAll(finesToSave);
+        if (!returned.isEmpty()) {
+            // Materialize the fine totals of all returned borrows with one grouped query
+            Map<Long, BigDecimal> fineTotals = borrowFineRepository.sumAmountsByBorrowIds(
+                    returned.values().stream().map(Borrow::getId).collect(Collectors.toList())).stream()
+                    .collect(Collectors.toMap(row -> (Long) row[0], row -> (BigDecimal) row[1]));
+            returned.forEach((i, borrow) -> {
+                borrow.setFineAmount(fineTotals.getOrDefault(borrow.getId(), BigDecimal.ZERO));
+                results[i] = BorrowBatchResultDTO.succeeded(convertBorrowToDTO(borrow));
+            });
+        }
+        return Arrays.asList(results);
+    }
+
+    // Like returnBook: the user is locked through user-service once the lost fine has committed
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public BorrowDTO reportLostBook(Long borrowId) {
+        BorrowDTO lost = transactionTemplate.execute(status -> applyLoss(borrowId));
+        borrowLockService.lockUser(lost.getUserId());
+        return lost;
+    }
+
+    private BorrowDTO applyLoss(Long borrowId) {
         Optional<Borrow> borrowOpt = borrowRepository.findById(borrowId);
         if (borrowOpt.isEmpty()) {
             throw new IllegalArgumentException("Borrow record not found");
@@ -164,48 +356,75 @@ public class BorrowService {
         BorrowFine lostFine = new BorrowFine(borrow.getId(), borrow.getUserId(),
                                            BigDecimal.valueOf(20.00), BorrowFine.FineReason.LOST);
         borrowFineRepository.save(lostFine);
-
-        // Lock user borrowing due to fine
-        try {
-            String url = "http://localhost:8081/users/" + borrow.getUserId() + "/lock";
-            restTemplate.put(url, null);
-        } catch (Exception e) {
-            System.err.println("Failed to lock user " + borrow.getUserId() + " due to lost book fine: " + e.getMessage());
-        }
+        refreshFineAmount(borrow);
 
         Borrow savedBorrow = borrowRepository.save(borrow);
         return convertBorrowToDTO(savedBorrow);
     }
 
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Long countBorrows() {
+        return shardRouter.scatter(() -> List.of(borrowRepository.count())).stream()
+                .mapToLong(Long::longValue)
+                .sum();
+    }
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Long countBorrowsByBook(Long bookId) {
-        return borrowRepository.countByBookId(bookId);
+        return shardRouter.scatter(() -> List.of(borrowRepository.countByBookId(bookId))).stream()
+                .mapToLong(Long::longValue)
+                .sum();
     }
 
     // Fine operations
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public List<BorrowFineDTO> getAllFines() {
-        return borrowFineRepository.findAll().stream()
-                .map(this::convertFineToDTO)
+        return getFines(null, null, null, null);
+    }
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<BorrowFineDTO> getFines(Boolean paid, BorrowFine.FineReason reason, LocalDate from, LocalDate to) {
+        List<BorrowFineDTO> fines = new ArrayList<>(shardRouter.scatter(() ->
+                borrowFineRepository.findFineDetails(paid, reason, startOfDay(from), startOfNextDay(to))));
+        fines.sort(Comparator.comparing(BorrowFineDTO::getId));
+        return fines;
+    }
+
+    // Each shard returns its own first size + 1 rows after the key; the merged first size + 1 are the page
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public KeysetPageDTO<BorrowFineDTO> getFinesPage(Long afterId, int size, Boolean paid, BorrowFine.FineReason reason,
+                                                     LocalDate from, LocalDate to) {
+        List<BorrowFineDTO> rows = shardRouter.scatter(() -> borrowFineRepository.findFineDetailsAfter(
+                afterId != null ? afterId : 0L, paid, reason, startOfDay(from), startOfNextDay(to),
+                PageRequest.of(0, size + 1))).stream()
+                .sorted(Comparator.comparing(BorrowFineDTO::getId))
+                .limit(size + 1L)
                 .collect(Collectors.toList());
+        return KeysetPageDTO.of(rows, size, BorrowFineDTO::getId);
     }
 
     public List<BorrowFineDTO> getFinesByUser(Long userId) {
-        return borrowFineRepository.findByUserId(userId).stream()
-                .map(this::convertFineToDTO)
-                .collect(Collectors.toList());
+        return borrowFineRepository.findFineDetailsByUserId(userId);
     }
 
     public BorrowFineDTO getFineById(Long fineId) {
-        Optional<BorrowFine> fineOpt = borrowFineRepository.findById(fineId);
-        return fineOpt.map(this::convertFineToDTO).orElse(null);
+        return borrowFineRepository.findFineDetailsById(fineId).orElse(null);
     }
 
     public List<BorrowFineDTO> getUnpaidFinesByUser(Long userId) {
-        return borrowFineRepository.findByUserIdAndPaid(userId, false).stream()
-                .map(this::convertFineToDTO)
-                .collect(Collectors.toList());
+        return borrowFineRepository.findFineDetailsByUserIdAndPaid(userId, false);
     }
 
+    // The unlock goes out after the payment commits, and only if it cleared the user's last unpaid fine
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public BorrowFineDTO payFine(Long fineId) {
+        Set<Long> usersToUnlock = new LinkedHashSet<>();
+        BorrowFineDTO paid = transactionTemplate.execute(status -> applyPayment(fineId, usersToUnlock));
+        usersToUnlock.forEach(borrowLockService::unlockUser);
+        return paid;
+    }
+
+    private BorrowFineDTO applyPayment(Long fineId, Set<Long> usersToUnlock) {
         Optional<BorrowFine> fineOpt = borrowFineRepository.findById(fineId);
         if (fineOpt.isEmpty()) {
             throw new IllegalArgumentException("Fine record not found");
@@ -217,36 +436,33 @@ public class BorrowService {
         }
 
         fine.setPaid(true);
+        fine.setPaidAt(LocalDateTime.now());
         BorrowFine savedFine = borrowFineRepository.save(fine);
 
         // Check if user has no more unpaid fines, then unlock borrowing
         BigDecimal totalUnpaidFines = getTotalUnpaidFinesByUser(fine.getUserId());
         if (totalUnpaidFines.compareTo(BigDecimal.ZERO) == 0) {
-            try {
-                // Call user-service to unlock borrowing
-                String url = "http://localhost:8081/users/" + fine.getUserId() + "/unlock";
-                restTemplate.put(url, null);
-            } catch (Exception e) {
-                // Log error but don't fail the process
-                System.err.println("Failed to unlock user " + fine.getUserId() + ": " + e.getMessage());
-            }
+            usersToUnlock.add(fine.getUserId());
         }
 
         return convertFineToDTO(savedFine);
     }
 
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public BorrowFineDTO createFine(Long borrowId, Long userId, BigDecimal amount, BorrowFine.FineReason reason) {
-        BorrowFine fine = new BorrowFine(borrowId, userId, amount, reason);
-        BorrowFine savedFine = borrowFineRepository.save(fine);
+        BorrowFineDTO created = transactionTemplate.execute(status -> saveFine(borrowId, userId, amount, reason));
+        // Lock user borrowing due to fine, once the fine is committed
+        borrowLockService.lockUser(userId);
+        return created;
+    }
 
-        // Lock user borrowing due to fine
-        try {
-            String url = "http://localhost:8081/users/" + userId + "/lock";
-            restTemplate.put(url, null);
-        } catch (Exception e) {
-            System.err.println("Failed to lock user " + userId + " due to fine: " + e.getMessage());
+    private BorrowFineDTO saveFine(Long borrowId, Long userId, BigDecimal amount, BorrowFine.FineReason reason) {
+        if (borrowFineRepository.findByBorrowIdAndReason(borrowId, reason).isPresent()) {
+            throw new IllegalStateException("Borrow already has a fine for this reason");
         }
-
+        BorrowFine fine = new BorrowFine(borrowId, userId, amount, reason);
+        BorrowFine savedFine = borrowFineRepository.save(fine);
+        refreshFineAmount(borrowId);
         return convertFineToDTO(savedFine);
     }
 
@@ -260,68 +476,57 @@ public class BorrowService {
         fine.setAmount(amount);
         fine.setReason(reason);
         BorrowFine savedFine = borrowFineRepository.save(fine);
+        refreshFineAmount(fine.getBorrowId());
         return convertFineToDTO(savedFine);
     }
 
     public void deleteFine(Long fineId) {
-        if (!borrowFineRepository.existsById(fineId)) {
+        Optional<BorrowFine> fineOpt = borrowFineRepository.findById(fineId);
+        if (fineOpt.isEmpty()) {
             throw new IllegalArgumentException("Fine record not found");
         }
-        borrowFineRepository.deleteById(fineId);
+        borrowFineRepository.delete(fineOpt.get());
+        refreshFineAmount(fineOpt.get().getBorrowId());
     }
 
     public BigDecimal getTotalUnpaidFinesByUser(Long userId) {
-        return borrowFineRepository.findByUserIdAndPaid(userId, false).stream()
-                .map(BorrowFine::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return borrowFineRepository.sumUnpaidAmountByUserId(userId);
     }
 
     // Helper methods
-    private void createLateFine(Borrow borrow, LocalDateTime returnDate) {
+    static LocalDateTime startOfDay(LocalDate date) {
+        return date != null ? date.atStartOfDay() : null;
+    }
+
+    static LocalDateTime startOfNextDay(LocalDate date) {
+        return date != null ? date.plusDays(1).atStartOfDay() : null;
+    }
+
+    // Overdue loans are flagged LATE_RETURNED by the overdue job but are still out until a return date is set
+    private static boolean isCheckedOut(Borrow borrow) {
+        return borrow.getStatus() == Borrow.BorrowStatus.BORROWED
+                || (borrow.getStatus() == Borrow.BorrowStatus.LATE_RETURNED && borrow.getReturnDate() == null);
+    }
+
+    // Keep the materialized fine total on the borrow in step with its recorded fines
+    private void refreshFineAmount(Borrow borrow) {
+        borrow.setFineAmount(borrowFineRepository.sumAmountByBorrowId(borrow.getId()));
+    }
+
+    private void refreshFineAmount(Long borrowId) {
+        borrowRepository.findById(borrowId).ifPresent(this::refreshFineAmount);
+    }
+
+    // Returns whether a fine was created, i.e. whether the user must be locked
+    private boolean createLateFine(Borrow borrow, LocalDateTime returnDate) {
         long daysLate = java.time.Duration.between(borrow.getDueDate(), returnDate).toDays();
         if (daysLate > 0) {
             BigDecimal fineAmount = LATE_FINE_RATE.multiply(BigDecimal.valueOf(daysLate));
-            BorrowFine lateFine = new BorrowFine(borrow.getId(), borrow.getUserId(),
-                                               fineAmount, BorrowFine.FineReason.LATE);
-            borrowFineRepository.save(lateFine);
-
-            // Lock user borrowing due to fine
-            try {
-                String url = "http://localhost:8081/users/" + borrow.getUserId() + "/lock";
-                restTemplate.put(url, null);
-            } catch (Exception e) {
-                System.err.println("Failed to lock user " + borrow.getUserId() + " due to late fine: " + e.getMessage());
-            }
-        }
-    }
-
-    private BigDecimal calculateFineAmount(Borrow borrow) {
-        // For late returned books, calculate fine based on days late
-        if (borrow.getStatus() == Borrow.BorrowStatus.LATE_RETURNED) {
-            if (borrow.getReturnDate() != null) {
-                // Already returned, calculate based on return date
-                long daysLate = java.time.Duration.between(borrow.getDueDate(), borrow.getReturnDate()).toDays();
-                if (daysLate > 0) {
-                    return LATE_FINE_RATE.multiply(BigDecimal.valueOf(daysLate));
-                }
-            } else {
-                // Still borrowed but overdue, calculate based on current date
-                long daysLate = java.time.Duration.between(borrow.getDueDate(), LocalDateTime.now()).toDays();
-                if (daysLate > 0) {
-                    return LATE_FINE_RATE.multiply(BigDecimal.valueOf(daysLate));
-                }
-            }
-        }
-        
-        // For lost books, get fine from borrow_fines table
-        if (borrow.getStatus() == Borrow.BorrowStatus.LOST) {
-            List<BorrowFine> fines = borrowFineRepository.findByBorrowId(borrow.getId());
-            return fines.stream()
-                    .map(BorrowFine::getAmount)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            // Upsert, so a late fine the overdue refresh charged in the meantime is updated, not duplicated
+            borrowFineRepository.upsertLateFine(borrow.getId(), borrow.getUserId(), fineAmount, returnDate);
+            return true;
         }
-        
-        return BigDecimal.ZERO;
+        return false;
     }
 
     private BorrowDTO convertBorrowToDTO(Borrow borrow) {
@@ -335,10 +540,7 @@ public class BorrowService {
         dto.setStatus(borrow.getStatus());
         dto.setCreatedAt(borrow.getCreatedAt());
         dto.setUpdatedAt(borrow.getUpdatedAt());
-        
-        // Calculate fine amount
-        dto.setFineAmount(calculateFineAmount(borrow));
-        
+        dto.setFineAmount(borrow.getFineAmount());
         return dto;
     }
 
@@ -359,61 +561,4 @@ public class BorrowService {
         dto.setCreatedAt(fine.getCreatedAt());
         return dto;
     }
-
-    // Scheduled task to check and lock users with overdue borrows
-    public void checkAndLockOverdueUsers() {
-        LocalDateTime currentDate = LocalDateTime.now();
-
-        // Find borrows that are overdue
-        List<Borrow> overdueBorrows = borrowRepository.findOverdueBorrows(currentDate, Borrow.BorrowStatus.BORROWED);
-
-        // Update status of overdue borrows to LATE_RETURNED and create fines
-        for (Borrow borrow : overdueBorrows) {
-            if (borrow.getDueDate().isBefore(currentDate)) {
-                borrow.setStatus(Borrow.BorrowStatus.LATE_RETURNED);
-                borrowRepository.save(borrow);
-                System.out.println("Updated borrow " + borrow.getId() + " status to LATE_RETURNED due to overdue");
-
-                // Create or update late fine
-                Optional<BorrowFine> lateFineOpt = borrowFineRepository.findByBorrowIdAndReason(borrow.getId(), BorrowFine.FineReason.LATE);
-
-                if (lateFineOpt.isPresent()) {
-                    // Update existing fine
-                    BorrowFine lateFine = lateFineOpt.get();
-                    long daysLate = java.time.Duration.between(borrow.getDueDate(), currentDate).toDays();
-                    BigDecimal fineAmount = LATE_FINE_RATE.multiply(BigDecimal.valueOf(Math.max(daysLate, 0)));
-                    lateFine.setAmount(fineAmount);
-                    borrowFineRepository.save(lateFine);
-                    System.out.println("Updated late fine for borrow " + borrow.getId() + " to " + fineAmount);
-                } else {
-                    // Create new fine
-                    long daysLate = java.time.Duration.between(borrow.getDueDate(), currentDate).toDays();
-                    BigDecimal fineAmount = LATE_FINE_RATE.multiply(BigDecimal.valueOf(Math.max(daysLate, 0)));
-                    BorrowFine lateFine = new BorrowFine(borrow.getId(), borrow.getUserId(), fineAmount, BorrowFine.FineReason.LATE);
-                    borrowFineRepository.save(lateFine);
-                    System.out.println("Created late fine for borrow " + borrow.getId() + " with amount " + fineAmount);
-                }
-            }
-        }
-
-        // Group by userId to avoid multiple calls for same user
-        overdueBorrows.stream()
-                .collect(Collectors.groupingBy(Borrow::getUserId))
-                .forEach((userId, borrows) -> {
-                    // Check if any borrow is overdue
-                    boolean hasOverdue = borrows.stream()
-                            .anyMatch(borrow -> borrow.getDueDate().isBefore(currentDate));
-
-                    if (hasOverdue) {
-                        try {
-                            // Call user-service to lock borrowing
-                            String url = "http://localhost:8081/users/" + userId + "/lock";
-                            restTemplate.put(url, null);
-                        } catch (Exception e) {
-                            // Log error but don't fail the process
-                            System.err.println("Failed to lock user " + userId + ": " + e.getMessage());
-                        }
-                    }
-                });
-    }
 }
\ No newline at end of file
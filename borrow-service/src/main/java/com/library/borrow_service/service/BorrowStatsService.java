@@ -0,0 +1,257 @@
+package com.library.borrow_service.service;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.RestTemplate;
+
+import com.library.borrow_service.config.ShardRouter;
+import com.library.borrow_service.dto.BorrowStatsDTO;
+
+/**
+ * Maintains the borrow_daily_stats rollup (loans, returns, loans falling overdue, fines issued
+ * and paid, per day and book) and answers dashboard queries from it. A day is rebuilt from the
+ * source tables, live and archived loans alike, in one transaction, so re-running a day is always safe.
+ */
+@Service
+public class BorrowStatsService {
+
+    private static final String UNCATEGORIZED = "Uncategorized";
+
+    private static final String DELETE_DAY_SQL = "DELETE FROM borrow_daily_stats WHERE stat_date = :day";
+    private static final String ROLL_UP_DAY_SQL =
+            "INSERT INTO borrow_daily_stats (stat_date, book_id, loans, returns, overdue, fines_issued, fines_paid) "
+            + "SELECT :day, book_id, SUM(loans), SUM(returns), SUM(overdue), SUM(fines_issued), SUM(fines_paid) FROM ("
+            + " SELECT book_id, 1 AS loans, 0 AS returns, 0 AS overdue,"
+            + "   CAST(0 AS DECIMAL(12,2)) AS fines_issued, CAST(0 AS DECIMAL(12,2)) AS fines_paid"
+            + " FROM borrows WHERE borrow_date >= :from AND borrow_date < :to"
+            + " UNION ALL SELECT book_id, 1, 0, 0, 0, 0 FROM borrows_archive"
+            + " WHERE borrow_date >= :from AND borrow_date < :to"
+            + " UNION ALL SELECT book_id, 0, 1, 0, 0, 0 FROM borrows"
+            + " WHERE status IN ('RETURNED', 'LATE_RETURNED') AND return_date >= :from AND return_date < :to"
+            + " UNION ALL SELECT book_id, 0, 1, 0, 0, 0 FROM borrows_archive"
+            + " WHERE status IN ('RETURNED', 'LATE_RETURNED') AND return_date >= :from AND return_date < :to"
+            + " UNION ALL SELECT book_id, 0, 0, 1, 0, 0 FROM borrows"
+            + " WHERE status IN ('BORROWED', 'LATE_RETURNED') AND due_date >= :from AND due_date < :dueUntil"
+            + "   AND (return_date IS NULL OR return_date > due_date)"
+            + " UNION ALL SELECT book_id, 0, 0, 1, 0, 0 FROM borrows_archive"
+            + " WHERE status = 'LATE_RETURNED' AND due_date >= :from AND due_date < :dueUntil"
+            + "   AND return_date > due_date"
+            + " UNION ALL SELECT COALESCE(b.book_id, a.book_id), 0, 0, 0, f.amount, 0 FROM borrow_fines f"
+            + "   LEFT JOIN borrows b ON b.id = f.borrow_id LEFT JOIN borrows_archive a ON a.id = f.borrow_id"
+            + " WHERE f.created_at >= :from AND f.created_at < :to"
+            + " UNION ALL SELECT COALESCE(b.book_id, a.book_id), 0, 0, 0, 0, f.amount FROM borrow_fines f"
+            + "   LEFT JOIN borrows b ON b.id = f.borrow_id LEFT JOIN borrows_archive a ON a.id = f.borrow_id"
+            + " WHERE f.paid_at >= :from AND f.paid_at < :to"
+            + ") t WHERE book_id IS NOT NULL GROUP BY book_id";
+
+    private static final String SUM_COLUMNS =
+            "SUM(loans) AS loans, SUM(returns) AS returns, SUM(overdue) AS overdue, "
+            + "SUM(fines_issued) AS fines_issued, SUM(fines_paid) AS fines_paid ";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BookTitleService bookTitleService;
+    private final RestTemplate restTemplate;
+    private final ShardRouter shardRouter;
+    private final String bookServiceUrl;
+    private final int catchUpDays;
+
+    public BorrowStatsService(NamedParameterJdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                              BookTitleService bookTitleService, RestTemplate restTemplate, ShardRouter shardRouter,
+                              @Value("${book-service.url:http://localhost:8082}") String bookServiceUrl,
+                              @Value("${borrow.stats.catch-up-days:7}") int catchUpDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.bookTitleService = bookTitleService;
+        this.restTemplate = restTemplate;
+        this.shardRouter = shardRouter;
+        this.bookServiceUrl = bookServiceUrl + "/books";
+        this.catchUpDays = catchUpDays;
+    }
+
+    // First start on an existing database: build the whole history of each empty shard in the background
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        Thread.ofVirtual().name("borrow-stats-backfill").start(() -> shardRouter.forEachShard(() -> {
+            Integer rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM borrow_daily_stats", Map.of(), Integer.class);
+            if (rows != null && rows == 0) {
+                catchUp();
+            }
+        }));
+    }
+
+    // Keep today and yesterday fresh; earlier days only change through late edits
+    public void refreshRecent() {
+        LocalDate today = LocalDate.now();
+        rollUpDay(today.minusDays(1));
+        rollUpDay(today);
+    }
+
+    // Rebuild the last catch-up window, or everything since the first borrow when the rollup is empty
+    public void catchUp() {
+        LocalDate today = LocalDate.now();
+        LocalDate start = today.minusDays(catchUpDays);
+        Integer rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM borrow_daily_stats", Map.of(), Integer.class);
+        if (rows != null && rows == 0) {
+            LocalDateTime firstBorrow = jdbcTemplate.queryForObject(
+                    "SELECT MIN(first_borrow) FROM (SELECT MIN(borrow_date) AS first_borrow FROM borrows"
+                    + " UNION ALL SELECT MIN(borrow_date) FROM borrows_archive) t", Map.of(), LocalDateTime.class);
+            if (firstBorrow != null && firstBorrow.toLocalDate().isBefore(start)) {
+                start = firstBorrow.toLocalDate();
+            }
+        }
+
+        long startNanos = System.nanoTime();
+        int days = 0;
+        for (LocalDate day = start; !day.isAfter(today); day = day.plusDays(1)) {
+            rollUpDay(day);
+            days++;
+        }
+        System.out.println("Borrow stats: rolled up " + days + " days from " + start + " in "
+                + (System.nanoTime() - startNanos) / 1_000_000 + " ms");
+    }
+
+    public void rollUpDay(LocalDate day) {
+        LocalDateTime from = day.atStartOfDay();
+        LocalDateTime to = day.plusDays(1).atStartOfDay();
+        LocalDateTime now = LocalDateTime.now();
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("day", Date.valueOf(day))
+                .addValue("from", from)
+                .addValue("to", to)
+                // A loan only counts as overdue once its due date has actually passed
+                .addValue("dueUntil", now.isBefore(to) ? now : to);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update(DELETE_DAY_SQL, params);
+            jdbcTemplate.update(ROLL_UP_DAY_SQL, params);
+        });
+    }
+
+    public List<BorrowStatsDTO> getStats(LocalDate from, LocalDate to, String groupBy) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Date.valueOf(from))
+                .addValue("to", Date.valueOf(to));
+        switch (groupBy == null ? "day" : groupBy.toLowerCase()) {
+            case "day":
+                return mergeShards(shardRouter.scatter(() -> jdbcTemplate.query("SELECT stat_date, " + SUM_COLUMNS
+                        + "FROM borrow_daily_stats WHERE stat_date BETWEEN :from AND :to GROUP BY stat_date ORDER BY stat_date",
+                        params, (rs, rowNum) -> {
+                            String day = rs.getDate("stat_date").toLocalDate().toString();
+                            return mapTotals(rs, new BorrowStatsDTO(day, day));
+                        })), BorrowStatsDTO::getKey);
+            case "book":
+                return withBookTitles(statsByBook(params));
+            case "category":
+                return statsByCategory(statsByBook(params));
+            default:
+                throw new IllegalArgumentException("groupBy must be one of day, book, category");
+        }
+    }
+
+    private List<BorrowStatsDTO> statsByBook(MapSqlParameterSource params) {
+        return mergeShards(shardRouter.scatter(() -> jdbcTemplate.query("SELECT book_id, " + SUM_COLUMNS
+                + "FROM borrow_daily_stats WHERE stat_date BETWEEN :from AND :to GROUP BY book_id ORDER BY book_id", params,
+                (rs, rowNum) -> mapTotals(rs, new BorrowStatsDTO(String.valueOf(rs.getLong("book_id")), null)))),
+                row -> Long.valueOf(row.getKey()));
+    }
+
+    // Each shard rolls up its own users' loans; rows with the same key are summed across shards
+    private static <K extends Comparable<K>> List<BorrowStatsDTO> mergeShards(List<BorrowStatsDTO> rows,
+                                                                             Function<BorrowStatsDTO, K> key) {
+        Map<K, BorrowStatsDTO> merged = new TreeMap<>();
+        for (BorrowStatsDTO row : rows) {
+            BorrowStatsDTO total = merged.putIfAbsent(key.apply(row), row);
+            if (total != null) {
+                total.add(row);
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    private List<BorrowStatsDTO> withBookTitles(List<BorrowStatsDTO> rows) {
+        if (!rows.isEmpty()) {
+            Map<Long, String> titles = bookTitleService.getBookTitles(
+                    rows.stream().map(row -> Long.valueOf(row.getKey())).collect(Collectors.toSet()));
+            rows.forEach(row -> row.setLabel(titles.get(Long.valueOf(row.getKey()))));
+        }
+        return rows;
+    }
+
+    // A book counts towards each of its categories
+    private List<BorrowStatsDTO> statsByCategory(List<BorrowStatsDTO> bookRows) {
+        Map<Long, List<String>> categories = fetchCategories(
+                bookRows.stream().map(row -> Long.valueOf(row.getKey())).collect(Collectors.toList()));
+        Map<String, BorrowStatsDTO> totals = new LinkedHashMap<>();
+        for (BorrowStatsDTO bookRow : bookRows) {
+            for (String category : categories.getOrDefault(Long.valueOf(bookRow.getKey()), List.of(UNCATEGORIZED))) {
+                totals.computeIfAbsent(category, name -> new BorrowStatsDTO(name, name)).add(bookRow);
+            }
+        }
+        return new ArrayList<>(totals.values());
+    }
+
+    private Map<Long, List<String>> fetchCategories(Collection<Long> bookIds) {
+        Map<Long, List<String>> categories = new HashMap<>();
+        if (bookIds.isEmpty()) {
+            return categories;
+        }
+        try {
+            String ids = bookIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+            List<Map<String, Object>> books = restTemplate.exchange(
+                    bookServiceUrl + "/batch?ids=" + ids,
+                    HttpMethod.GET,
+                    null,
+                    new ParameterizedTypeReference<List<Map<String, Object>>>() {}).getBody();
+            if (books != null) {
+                for (Map<String, Object> book : books) {
+                    if (book.get("id") instanceof Number id && book.get("categories") instanceof Collection<?> bookCategories) {
+                        List<String> names = new ArrayList<>();
+                        for (Object category : bookCategories) {
+                            if (category instanceof Map<?, ?> map && map.get("name") instanceof String name) {
+                                names.add(name);
+                            }
+                        }
+                        if (!names.isEmpty()) {
+                            categories.put(id.longValue(), names);
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // Log error and report the books as uncategorized
+            System.err.println("Failed to fetch book categories: " + e.getMessage());
+        }
+        return categories;
+    }
+
+    private BorrowStatsDTO mapTotals(ResultSet rs, BorrowStatsDTO dto) throws SQLException {
+        dto.setLoans(rs.getLong("loans"));
+        dto.setReturns(rs.getLong("returns"));
+        dto.setOverdue(rs.getLong("overdue"));
+        dto.setFinesIssued(rs.getBigDecimal("fines_issued"));
+        dto.setFinesPaid(rs.getBigDecimal("fines_paid"));
+        return dto;
+    }
+}
@@ -0,0 +1,191 @@
+package com.library.borrow_service.service;
+
+import java.net.SocketTimeoutException;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Validates the user and the book of a checkout concurrently on virtual threads.
+ * Each call has its own timeout; the first failure or timeout cancels the other call, and each
+ * upstream call is recorded in the borrow.upstream.latency timer tagged by dependency.
+ * An unknown user or book is a bad request; an upstream that is down, failing or too slow
+ * answers 503 or 504 naming it.
+ */
+@Service
+public class CheckoutValidator {
+
+
+    private final RestTemplate restTemplate;
+    private final MeterRegistry meterRegistry;
+    private final String userServiceUrl;
+    private final String bookServiceUrl;
+    private final long userServiceTimeoutMillis;
+    private final long bookServiceTimeoutMillis;
+
+    public CheckoutValidator(RestTemplate restTemplate, MeterRegistry meterRegistry,
+                             @Value("${user-service.url:http://localhost:8081}") String userServiceUrl,
+                             @Value("${book-service.url:http://localhost:8082}") String bookServiceUrl,
+                             @Value("${borrow.validation.user-service-timeout-ms:2000}") long userServiceTimeoutMillis,
+                             @Value("${borrow.validation.book-service-timeout-ms:2000}") long bookServiceTimeoutMillis) {
+        this.restTemplate = restTemplate;
+        this.meterRegistry = meterRegistry;
+        this.userServiceUrl = userServiceUrl + "/users";
+        this.bookServiceUrl = bookServiceUrl + "/books";
+        this.userServiceTimeoutMillis = userServiceTimeoutMillis;
+        this.bookServiceTimeoutMillis = bookServiceTimeoutMillis;
+    }
+
+    public void validateUserAndBook(Long userId, Long bookId) {
+        runAll(List.of(
+                new UpstreamCall("user-service", userServiceTimeoutMillis,
+                        () -> validate("user-service", userServiceUrl + "/" + userId + "/profile", "Invalid userId")),
+                new UpstreamCall("book-service", bookServiceTimeoutMillis,
+                        () -> validate("book-service", bookServiceUrl + "/" + bookId, "Invalid bookId"))));
+    }
+
+    // Validates the user and looks up all books in one batch call; returns the ids book-service knows
+    public Set<Long> validateUserAndBooks(Long userId, Collection<Long> bookIds) {
+        Set<Long> knownBookIds = new HashSet<>();
+        runAll(List.of(
+                new UpstreamCall("user-service", userServiceTimeoutMillis,
+                        () -> validate("user-service", userServiceUrl + "/" + userId + "/profile", "Invalid userId")),
+                new UpstreamCall("book-service", bookServiceTimeoutMillis, () -> {
+                    if (!bookIds.isEmpty()) {
+                        knownBookIds.addAll(fetchKnownBookIds(bookIds));
+                    }
+                    return null;
+                })));
+        return knownBookIds;
+    }
+
+    private void runAll(List<UpstreamCall> upstreamCalls) {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+            long start = System.nanoTime();
+            Map<Future<Void>, UpstreamCall> pending = new HashMap<>();
+            upstreamCalls.forEach(call -> pending.put(completionService.submit(call.task()), call));
+            List<Future<Void>> calls = List.copyOf(pending.keySet());
+
+            try {
+                while (!pending.isEmpty()) {
+                    // Wait until the next call's own deadline; if nothing finished by then, that call timed out
+                    UpstreamCall next = pending.values().stream()
+                            .min(Comparator.comparingLong(UpstreamCall::timeoutMillis))
+                            .orElseThrow();
+                    long deadline = start + TimeUnit.MILLISECONDS.toNanos(next.timeoutMillis());
+                    Future<Void> done = completionService.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (done == null) {
+                        throw new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT,
+                                next.dependency() + " did not answer within " + next.timeoutMillis() + " ms");
+                    }
+                    pending.remove(done);
+                    done.get();
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw new IllegalStateException("Checkout validation failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Checkout validation interrupted", e);
+            } finally {
+                // Fail fast: stop whichever call is still running
+                calls.forEach(call -> call.cancel(true));
+            }
+        }
+    }
+
+    private Set<Long> fetchKnownBookIds(Collection<Long> bookIds) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            String ids = bookIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+            List<Map<String, Object>> books = restTemplate.exchange(
+                    bookServiceUrl + "/batch?ids=" + ids,
+                    HttpMethod.GET,
+                    null,
+                    new ParameterizedTypeReference<List<Map<String, Object>>>() {}).getBody();
+
+            Set<Long> known = new HashSet<>();
+            if (books != null) {
+                for (Map<String, Object> book : books) {
+                    if (book.get("id") instanceof Number id) {
+                        known.add(id.longValue());
+                    }
+                }
+            }
+            outcome = "success";
+            return known;
+        } catch (ResourceAccessException | HttpServerErrorException e) {
+            throw upstreamFailure("book-service", e);
+        } catch (Exception e) {
+            System.err.println("CheckoutValidator: Failed to validate book-service batch lookup: " + e.getMessage());
+            throw new IllegalArgumentException("Unable to validate bookIds");
+        } finally {
+            sample.stop(meterRegistry.timer("borrow.upstream.latency", "dependency", "book-service", "outcome", outcome));
+        }
+    }
+
+    private Void validate(String dependency, String url, String errorMessage) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            ResponseEntity<Object> response = restTemplate.getForEntity(url, Object.class);
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                throw new IllegalArgumentException(errorMessage);
+            }
+            outcome = "success";
+            return null;
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (ResourceAccessException | HttpServerErrorException e) {
+            throw upstreamFailure(dependency, e);
+        } catch (Exception e) {
+            System.err.println("CheckoutValidator: Failed to validate " + dependency + " call " + url + ": " + e.getMessage());
+            throw new IllegalArgumentException(errorMessage);
+        } finally {
+            sample.stop(meterRegistry.timer("borrow.upstream.latency", "dependency", dependency, "outcome", outcome));
+        }
+    }
+
+    // The upstream is unreachable, failing or timed out at the HTTP level: not the client's fault
+    private static ResponseStatusException upstreamFailure(String dependency, Exception e) {
+        System.err.println("CheckoutValidator: " + dependency + " unavailable: " + e.getMessage());
+        if (e.getCause() instanceof SocketTimeoutException) {
+            return new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, dependency + " timed out", e);
+        }
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, dependency + " is unavailable", e);
+    }
+
+    private record UpstreamCall(String dependency, long timeoutMillis, Callable<Void> task) {
+    }
+}
@@ -0,0 +1,146 @@
+package com.library.borrow_service.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.RestTemplate;
+
+import com.library.borrow_service.dto.DueSoonLoanDTO;
+import com.library.borrow_service.entity.Borrow;
+import com.library.borrow_service.repository.BorrowRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Sends one due-soon reminder per user covering all of their loans due within the configured
+ * window. Loans are read in chunks of whole users ordered by (user_id, due_date), so memory stays
+ * bounded however many loans fall due. Loans are marked once their user's reminder is accepted,
+ * so a rerun after a crash or a failed call resumes with the users not yet reminded. Sends are
+ * paced to protect SMTP.
+ */
+@Service
+public class DueReminderService {
+
+    private final BorrowRepository borrowRepository;
+    private final BookTitleService bookTitleService;
+    private final RestTemplate restTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final String notificationServiceUrl;
+    private final int daysAhead;
+    private final int chunkSize;
+    private final long sendIntervalNanos;
+
+    public DueReminderService(BorrowRepository borrowRepository, BookTitleService bookTitleService,
+                              RestTemplate restTemplate, TransactionTemplate transactionTemplate,
+                              MeterRegistry meterRegistry,
+                              @Value("${notification-service.url:http://localhost:8085}") String notificationServiceUrl,
+                              @Value("${borrow.reminders.days-ahead:3}") int daysAhead,
+                              @Value("${borrow.reminders.chunk-size:500}") int chunkSize,
+                              @Value("${borrow.reminders.rate-per-second:5}") double ratePerSecond) {
+        this.borrowRepository = borrowRepository;
+        this.bookTitleService = bookTitleService;
+        this.restTemplate = restTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.notificationServiceUrl = notificationServiceUrl + "/api/notifications";
+        this.daysAhead = daysAhead;
+        this.chunkSize = chunkSize;
+        this.sendIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+    }
+
+    public int sendDueSoonReminders() {
+        LocalDateTime now = LocalDateTime.now();
+        long startNanos = System.nanoTime();
+        long afterUserId = 0L;
+        int users = 0;
+        int loans = 0;
+        int reminded = 0;
+
+        while (true) {
+            List<Borrow> chunk = borrowRepository.findDueSoonUnreminded(Borrow.BorrowStatus.BORROWED, now,
+                    now.plusDays(daysAhead), afterUserId, PageRequest.of(0, chunkSize));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            boolean lastChunk = chunk.size() < chunkSize;
+
+            // Rows arrive ordered by user, so each user's loans are contiguous
+            Map<Long, List<Borrow>> loansByUser = new LinkedHashMap<>();
+            for (Borrow borrow : chunk) {
+                loansByUser.computeIfAbsent(borrow.getUserId(), userId -> new ArrayList<>()).add(borrow);
+            }
+            // A full chunk may have cut off the last user's loans; they are read again with the next chunk
+            if (!lastChunk && loansByUser.size() > 1) {
+                loansByUser.remove(chunk.get(chunk.size() - 1).getUserId());
+            }
+            Map<Long, String> titles = bookTitleService.getBookTitles(loansByUser.values().stream()
+                    .flatMap(List::stream).map(Borrow::getBookId).distinct().toList());
+
+            for (Map.Entry<Long, List<Borrow>> entry : loansByUser.entrySet()) {
+                long sendStartNanos = System.nanoTime();
+                if (sendReminder(entry.getKey(), entry.getValue(), titles)) {
+                    reminded++;
+                }
+                users++;
+                loans += entry.getValue().size();
+                afterUserId = entry.getKey();
+                if (!awaitNextSlot(sendStartNanos)) {
+                    lastChunk = true;
+                    break;
+                }
+            }
+            if (lastChunk) {
+                break;
+            }
+        }
+
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        System.out.println("Due reminders: reminded " + reminded + " of " + users + " users about "
+                + loans + " loans due within " + daysAhead + " days in " + elapsedMillis + " ms");
+        return reminded;
+    }
+
+    private boolean sendReminder(Long userId, List<Borrow> loans, Map<Long, String> titles) {
+        List<DueSoonLoanDTO> body = loans.stream()
+                .map(borrow -> new DueSoonLoanDTO(borrow.getId(), borrow.getBookId(),
+                        titles.get(borrow.getBookId()), borrow.getDueDate()))
+                .toList();
+        try {
+            restTemplate.postForObject(notificationServiceUrl + "/due-soon-reminder/" + userId, body, Object.class);
+        } catch (Exception e) {
+            // Left unmarked, so the next run retries this user
+            System.err.println("Due reminders: failed to notify user " + userId + ": " + e.getMessage());
+            meterRegistry.counter("borrow.reminders", "outcome", "failed").increment();
+            return false;
+        }
+
+        List<Long> borrowIds = loans.stream().map(Borrow::getId).toList();
+        transactionTemplate.executeWithoutResult(status -> borrowRepository.markDueReminderSent(borrowIds));
+        meterRegistry.counter("borrow.reminders", "outcome", "sent").increment();
+        return true;
+    }
+
+    // Holds each send to the configured rate; false if interrupted, leaving the rest for the next run
+    private boolean awaitNextSlot(long sendStartNanos) {
+        long waitNanos = sendStartNanos + sendIntervalNanos - System.nanoTime();
+        if (waitNanos <= 0) {
+            return true;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
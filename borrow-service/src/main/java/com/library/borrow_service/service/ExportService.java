@@ -0,0 +1,156 @@
+package com.library.borrow_service.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.borrow_service.config.ShardRouter;
+import com.library.borrow_service.dto.BorrowFineDTO;
+import com.library.borrow_service.entity.Borrow;
+import com.library.borrow_service.entity.BorrowFine;
+import com.library.borrow_service.repository.BorrowFineRepository;
+import com.library.borrow_service.repository.BorrowRepository;
+
+/**
+ * Streams borrows and fines as NDJSON or CSV. Rows are read in keyset chunks and written
+ * as they arrive, so memory use does not grow with the size of the export.
+ */
+@Service
+public class ExportService {
+
+    private static final int EXPORT_CHUNK_SIZE = 1000;
+
+    private static final String BORROW_CSV_HEADER = "id,userId,bookId,borrowDate,dueDate,returnDate,status,fineAmount,createdAt,updatedAt";
+    private static final String FINE_CSV_HEADER = "id,borrowId,userId,bookId,amount,reason,paid,status,createdAt";
+
+    private final BorrowRepository borrowRepository;
+    private final BorrowFineRepository borrowFineRepository;
+    private final ObjectMapper objectMapper;
+    private final ShardRouter shardRouter;
+
+    public ExportService(BorrowRepository borrowRepository, BorrowFineRepository borrowFineRepository,
+                         ObjectMapper objectMapper, ShardRouter shardRouter) {
+        this.borrowRepository = borrowRepository;
+        this.borrowFineRepository = borrowFineRepository;
+        this.objectMapper = objectMapper;
+        this.shardRouter = shardRouter;
+    }
+
+    public static boolean isCsv(String format) {
+        return "csv".equalsIgnoreCase(format);
+    }
+
+    public void writeBorrows(String format, Borrow.BorrowStatus status, LocalDate from, LocalDate to,
+                             OutputStream outputStream) throws IOException {
+        boolean csv = isCsv(format);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        if (csv) {
+            writer.write(BORROW_CSV_HEADER);
+            writer.write('\n');
+        }
+
+        // Shard id ranges ascend with the shard number, so walking the shards in order keeps ids ascending
+        long afterId = 0L;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            afterId = writeBorrowShard(shard, afterId, csv, status, from, to, writer);
+        }
+    }
+
+    private long writeBorrowShard(int shard, long afterId, boolean csv, Borrow.BorrowStatus status, LocalDate from,
+                                  LocalDate to, Writer writer) throws IOException {
+        while (true) {
+            long after = afterId;
+            List<Borrow> chunk = shardRouter.onShard(shard, () -> borrowRepository.findPageAfter(after, status,
+                    BorrowService.startOfDay(from), BorrowService.startOfNextDay(to), PageRequest.of(0, EXPORT_CHUNK_SIZE)));
+            for (Borrow borrow : chunk) {
+                if (csv) {
+                    writeCsvRow(writer, borrow.getId(), borrow.getUserId(), borrow.getBookId(), borrow.getBorrowDate(),
+                            borrow.getDueDate(), borrow.getReturnDate(), borrow.getStatus(), borrow.getFineAmount(),
+                            borrow.getCreatedAt(), borrow.getUpdatedAt());
+                } else {
+                    writeJsonLine(writer, borrow);
+                }
+            }
+            writer.flush();
+            if (!chunk.isEmpty()) {
+                afterId = chunk.get(chunk.size() - 1).getId();
+            }
+            if (chunk.size() < EXPORT_CHUNK_SIZE) {
+                return afterId;
+            }
+        }
+    }
+
+    public void writeFines(String format, Boolean paid, BorrowFine.FineReason reason, LocalDate from, LocalDate to,
+                           OutputStream outputStream) throws IOException {
+        boolean csv = isCsv(format);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        if (csv) {
+            writer.write(FINE_CSV_HEADER);
+            writer.write('\n');
+        }
+
+        long afterId = 0L;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            afterId = writeFineShard(shard, afterId, csv, paid, reason, from, to, writer);
+        }
+    }
+
+    private long writeFineShard(int shard, long afterId, boolean csv, Boolean paid, BorrowFine.FineReason reason,
+                                LocalDate from, LocalDate to, Writer writer) throws IOException {
+        while (true) {
+            long after = afterId;
+            List<BorrowFineDTO> chunk = shardRouter.onShard(shard, () -> borrowFineRepository.findFineDetailsAfter(after,
+                    paid, reason, BorrowService.startOfDay(from), BorrowService.startOfNextDay(to),
+                    PageRequest.of(0, EXPORT_CHUNK_SIZE)));
+            for (BorrowFineDTO fine : chunk) {
+                if (csv) {
+                    writeCsvRow(writer, fine.getId(), fine.getBorrowId(), fine.getUserId(), fine.getBookId(),
+                            fine.getAmount(), fine.getReason(), fine.getPaid(), fine.getStatus(), fine.getCreatedAt());
+                } else {
+                    writeJsonLine(writer, fine);
+                }
+            }
+            writer.flush();
+            if (!chunk.isEmpty()) {
+                afterId = chunk.get(chunk.size() - 1).getId();
+            }
+            if (chunk.size() < EXPORT_CHUNK_SIZE) {
+                return afterId;
+            }
+        }
+    }
+
+    private void writeJsonLine(Writer writer, Object row) throws IOException {
+        writer.write(objectMapper.writeValueAsString(row));
+        writer.write('\n');
+    }
+
+    private void writeCsvRow(Writer writer, Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writer.write(escapeCsv(values[i].toString()));
+            }
+        }
+        writer.write('\n');
+    }
+
+    private String escapeCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
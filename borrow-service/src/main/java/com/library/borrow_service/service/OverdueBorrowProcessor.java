@@ -0,0 +1,222 @@
+package com.library.borrow_service.service;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.library.borrow_service.config.ShardRouter;
+import com.library.borrow_service.entity.Borrow;
+import com.library.borrow_service.entity.BorrowFine;
+import com.library.borrow_service.event.BorrowEventLog;
+import com.library.borrow_service.repository.BorrowRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Marks overdue borrows as LATE_RETURNED and charges their late fines in fixed-size chunks,
+ * keeping each borrow's materialized fine_amount in step.
+ * Each chunk is committed in its own transaction, so memory use and lock time stay bounded
+ * no matter how many loans are overdue.
+ */
+@Service
+public class OverdueBorrowProcessor {
+
+    // One late fine per borrow, held by the unique (borrow_id, reason) index; a racing writer's row is updated instead
+    private static final String UPSERT_LATE_FINE_SQL =
+            "INSERT INTO borrow_fines (borrow_id, user_id, amount, reason, paid, created_at) VALUES (?, ?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE amount = VALUES(amount)";
+
+    private final BorrowRepository borrowRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BorrowLockService borrowLockService;
+    private final ShardRouter shardRouter;
+    private final BorrowEventLog borrowEventLog;
+    private final MeterRegistry meterRegistry;
+    private final int chunkSize;
+
+    public OverdueBorrowProcessor(BorrowRepository borrowRepository, JdbcTemplate jdbcTemplate,
+                                  TransactionTemplate transactionTemplate,
+                                  BorrowLockService borrowLockService, ShardRouter shardRouter,
+                                  BorrowEventLog borrowEventLog, MeterRegistry meterRegistry,
+                                  @Value("${borrow.overdue.chunk-size:500}") int chunkSize) {
+        this.borrowRepository = borrowRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.borrowLockService = borrowLockService;
+        this.shardRouter = shardRouter;
+        this.borrowEventLog = borrowEventLog;
+        this.meterRegistry = meterRegistry;
+        this.chunkSize = chunkSize;
+    }
+
+    public void checkAndLockOverdueUsers() {
+        LocalDateTime currentDate = LocalDateTime.now();
+        long startNanos = System.nanoTime();
+        long afterId = 0L;
+        int chunks = 0;
+        int processed = 0;
+        int lockedUsers = 0;
+
+        while (true) {
+            List<Borrow> chunk = borrowRepository.findOverdueBorrowsAfter(
+                    currentDate, Borrow.BorrowStatus.BORROWED, afterId, PageRequest.of(0, chunkSize));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            afterId = chunk.get(chunk.size() - 1).getId();
+
+            Timer.Sample sample = Timer.start(meterRegistry);
+            List<Borrow> flipped = transactionTemplate.execute(status -> processChunk(chunk, currentDate));
+            Set<Long> userIds = userIdsOf(flipped);
+            borrowLockService.lockUsers(userIds);
+            sample.stop(meterRegistry.timer("borrow.overdue.chunk", "job", "mark-overdue"));
+
+            int flippedCount = flipped != null ? flipped.size() : 0;
+            meterRegistry.counter("borrow.overdue.borrows", "job", "mark-overdue").increment(flippedCount);
+            chunks++;
+            processed += flippedCount;
+            lockedUsers += userIds.size();
+            System.out.println("Overdue processing: chunk " + chunks + " done, " + processed
+                    + " borrows marked overdue so far (" + throughput(processed, startNanos) + " borrows/s)");
+
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+        }
+
+        System.out.println("Overdue processing finished: " + processed + " borrows in " + chunks + " chunks, "
+                + lockedUsers + " user lock requests, "
+                + Duration.ofNanos(System.nanoTime() - startNanos).toMillis() + " ms ("
+                + throughput(processed, startNanos) + " borrows/s)");
+    }
+
+    // Grow the late fines of overdue loans that are still out, and their materialized fine totals
+    public void refreshOutstandingFines() {
+        LocalDateTime currentDate = LocalDateTime.now();
+        long startNanos = System.nanoTime();
+        long afterId = 0L;
+        int refreshed = 0;
+
+        while (true) {
+            List<Borrow> chunk = borrowRepository.findOutstandingAfter(
+                    Borrow.BorrowStatus.LATE_RETURNED, afterId, PageRequest.of(0, chunkSize));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            afterId = chunk.get(chunk.size() - 1).getId();
+
+            List<Long> borrowIds = chunk.stream().map(Borrow::getId).collect(Collectors.toList());
+            Timer.Sample sample = Timer.start(meterRegistry);
+            transactionTemplate.executeWithoutResult(status -> {
+                upsertLateFines(chunk, currentDate);
+                borrowRepository.refreshFineAmounts(borrowIds);
+            });
+            sample.stop(meterRegistry.timer("borrow.overdue.chunk", "job", "refresh-fines"));
+            meterRegistry.counter("borrow.overdue.borrows", "job", "refresh-fines").increment(chunk.size());
+            refreshed += chunk.size();
+
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+        }
+
+        System.out.println("Outstanding fine refresh finished: " + refreshed + " overdue borrows in "
+                + Duration.ofNanos(System.nanoTime() - startNanos).toMillis() + " ms");
+    }
+
+    // Mark the given borrows overdue if they are still BORROWED and past their due date
+    public int markOverdue(Collection<Long> borrowIds) {
+        int updated = 0;
+        for (Map.Entry<Integer, List<Long>> shardIds : shardRouter.groupIdsByShard(borrowIds).entrySet()) {
+            updated += shardRouter.onShard(shardIds.getKey(), () -> markOverdueOnShard(shardIds.getValue()));
+        }
+        return updated;
+    }
+
+    private int markOverdueOnShard(Collection<Long> borrowIds) {
+        LocalDateTime currentDate = LocalDateTime.now();
+        List<Borrow> overdueBorrows = borrowRepository.findOverdueBorrowsByIds(
+                borrowIds, currentDate, Borrow.BorrowStatus.BORROWED);
+        if (overdueBorrows.isEmpty()) {
+            return 0;
+        }
+
+        List<Borrow> flipped = transactionTemplate.execute(status -> processChunk(overdueBorrows, currentDate));
+        borrowLockService.lockUsers(userIdsOf(flipped));
+        return flipped != null ? flipped.size() : 0;
+    }
+
+    // Returns the borrows this chunk actually flipped: one returned or changed since the chunk was
+    // read is skipped by the conditional update, and gets neither a late fine nor a user lock
+    private List<Borrow> processChunk(List<Borrow> chunk, LocalDateTime currentDate) {
+        List<Long> borrowIds = chunk.stream().map(Borrow::getId).collect(Collectors.toList());
+        // The bulk update skips the entity listener; the flipped rows are found again by this exact timestamp
+        LocalDateTime markedAt = currentDate.truncatedTo(ChronoUnit.MICROS);
+        int updated = borrowRepository.updateStatusByIds(
+                borrowIds, Borrow.BorrowStatus.BORROWED, Borrow.BorrowStatus.LATE_RETURNED, markedAt);
+        if (updated == 0) {
+            return List.of();
+        }
+        Set<Long> flippedIds = new HashSet<>(borrowRepository.findIdsUpdatedAt(
+                borrowIds, Borrow.BorrowStatus.LATE_RETURNED, markedAt));
+        List<Borrow> flipped = chunk.stream()
+                .filter(borrow -> flippedIds.contains(borrow.getId()))
+                .collect(Collectors.toList());
+        if (flipped.isEmpty()) {
+            return flipped;
+        }
+        List<Long> flippedBorrowIds = flipped.stream().map(Borrow::getId).collect(Collectors.toList());
+
+        borrowEventLog.appendOverdue(flippedBorrowIds, markedAt);
+        upsertLateFines(flipped, currentDate);
+        borrowRepository.refreshFineAmounts(flippedBorrowIds);
+        return flipped;
+    }
+
+    private static Set<Long> userIdsOf(List<Borrow> borrows) {
+        if (borrows == null) {
+            return Set.of();
+        }
+        return borrows.stream()
+                .map(Borrow::getUserId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    // One batched upsert per chunk: no read-then-write window for returnBook to slip a second late fine into
+    private void upsertLateFines(List<Borrow> chunk, LocalDateTime currentDate) {
+        List<Object[]> fines = new ArrayList<>(chunk.size());
+        Timestamp createdAt = Timestamp.valueOf(currentDate);
+        for (Borrow borrow : chunk) {
+            long daysLate = Duration.between(borrow.getDueDate(), currentDate).toDays();
+            BigDecimal fineAmount = BorrowService.LATE_FINE_RATE.multiply(BigDecimal.valueOf(Math.max(daysLate, 0)));
+            fines.add(new Object[] { borrow.getId(), borrow.getUserId(), fineAmount,
+                    BorrowFine.FineReason.LATE.name(), false, createdAt });
+        }
+        if (!fines.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_LATE_FINE_SQL, fines);
+        }
+    }
+
+    private long throughput(int processed, long startNanos) {
+        long elapsedMillis = Math.max(Duration.ofNanos(System.nanoTime() - startNanos).toMillis(), 1);
+        return processed * 1000L / elapsedMillis;
+    }
+}
@@ -0,0 +1,34 @@
+package com.library.borrow_service.service;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Striped in-process locks keyed by user id. Checkouts of the same user run one at a time,
+ * while different users only contend when they hash to the same stripe.
+ */
+@Component
+public class UserBorrowLocks {
+
+    private final ReentrantLock[] stripes;
+
+    public UserBorrowLocks(@Value("${borrow.user-lock-stripes:64}") int stripeCount) {
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public <T> T withLock(Long userId, Supplier<T> action) {
+        ReentrantLock lock = stripes[Math.floorMod(userId.hashCode(), stripes.length)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
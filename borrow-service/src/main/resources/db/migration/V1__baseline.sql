@@ -0,0 +1,26 @@
+-- Schema as previously created by Hibernate ddl-auto: update.
+-- Existing databases are baselined at this version and skip this script.
+
+CREATE TABLE borrows (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    user_id BIGINT NOT NULL,
+    book_id BIGINT NOT NULL,
+    borrow_date DATETIME(6) NOT NULL,
+    due_date DATETIME(6) NOT NULL,
+    return_date DATETIME(6),
+    status VARCHAR(20) NOT NULL,
+    created_at DATETIME(6),
+    updated_at DATETIME(6),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE borrow_fines (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    borrow_id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    amount DECIMAL(10, 2) NOT NULL,
+    reason VARCHAR(20) NOT NULL,
+    paid BOOLEAN NOT NULL,
+    created_at DATETIME(6),
+    PRIMARY KEY (id)
+);
@@ -0,0 +1,22 @@
+-- Active borrows of a user, duplicate-book and limit checks
+-- (findByUserId, findActiveBorrowsByUser, countActiveBorrowsByUser,
+--  checkEligibility, findByUserIdAndBookIdAndStatus)
+CREATE INDEX idx_borrows_user_status_book ON borrows (user_id, status, book_id);
+
+-- Overdue scans and the overdue timer window
+-- (findOverdueBorrows, findOverdueBorrowsAfter, findDueBetween)
+CREATE INDEX idx_borrows_status_due_date ON borrows (status, due_date);
+
+-- Per-book history and counts (findByBookId, countByBookId)
+CREATE INDEX idx_borrows_book ON borrows (book_id);
+
+-- A borrow carries at most one fine per reason; the late fine upserts rely on it.
+-- Duplicates left by earlier racing inserts are dropped first, keeping the oldest row.
+DELETE FROM borrow_fines WHERE id NOT IN (
+    SELECT keep_id FROM (SELECT MIN(id) AS keep_id FROM borrow_fines GROUP BY borrow_id, reason) AS kept);
+
+-- Fines of a borrow (findByBorrowId, findByBorrowIdIn, findByBorrowIdAndReason, findByBorrowIdInAndReason)
+CREATE UNIQUE INDEX uk_borrow_fines_borrow_reason ON borrow_fines (borrow_id, reason);
+
+-- Unpaid fines of a user (findByUserIdAndPaid, sumUnpaidAmountByUserId)
+CREATE INDEX idx_borrow_fines_user_paid ON borrow_fines (user_id, paid);
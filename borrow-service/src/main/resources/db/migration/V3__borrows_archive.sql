@@ -0,0 +1,19 @@
+-- Cold storage for completed borrows moved out of the hot borrows table
+CREATE TABLE borrows_archive (
+    id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    book_id BIGINT NOT NULL,
+    borrow_date DATETIME(6) NOT NULL,
+    due_date DATETIME(6) NOT NULL,
+    return_date DATETIME(6),
+    status VARCHAR(20) NOT NULL,
+    created_at DATETIME(6),
+    updated_at DATETIME(6),
+    archived_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_borrows_archive_user ON borrows_archive (user_id);
+
+-- Archiver candidate scan (findArchivableBorrowIds)
+CREATE INDEX idx_borrows_status_return_date ON borrows (status, return_date);
@@ -0,0 +1,8 @@
+-- Materialized total of the fines recorded against each borrow
+ALTER TABLE borrows ADD COLUMN fine_amount DECIMAL(10,2) NOT NULL DEFAULT 0;
+ALTER TABLE borrows_archive ADD COLUMN fine_amount DECIMAL(10,2) NOT NULL DEFAULT 0;
+
+UPDATE borrows SET fine_amount =
+    (SELECT COALESCE(SUM(f.amount), 0) FROM borrow_fines f WHERE f.borrow_id = borrows.id);
+UPDATE borrows_archive SET fine_amount =
+    (SELECT COALESCE(SUM(f.amount), 0) FROM borrow_fines f WHERE f.borrow_id = borrows_archive.id);
@@ -0,0 +1,19 @@
+-- When a fine was paid, so payments can be rolled up by day
+ALTER TABLE borrow_fines ADD COLUMN paid_at DATETIME(6);
+
+-- Daily circulation rollup per book, rebuilt day by day by BorrowStatsService
+CREATE TABLE borrow_daily_stats (
+    stat_date DATE NOT NULL,
+    book_id BIGINT NOT NULL,
+    loans INT NOT NULL DEFAULT 0,
+    returns INT NOT NULL DEFAULT 0,
+    overdue INT NOT NULL DEFAULT 0,
+    fines_issued DECIMAL(12,2) NOT NULL DEFAULT 0,
+    fines_paid DECIMAL(12,2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (stat_date, book_id)
+);
+
+-- Day-window scans of the rollup job
+CREATE INDEX idx_borrows_borrow_date ON borrows (borrow_date);
+CREATE INDEX idx_borrow_fines_created_at ON borrow_fines (created_at);
+CREATE INDEX idx_borrow_fines_paid_at ON borrow_fines (paid_at);
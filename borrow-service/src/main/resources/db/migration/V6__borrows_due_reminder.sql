@@ -0,0 +1,2 @@
+-- Due date the last due-soon reminder covered; a re-dated loan no longer matches and is reminded again
+ALTER TABLE borrows ADD COLUMN due_reminder_for DATETIME(6);
@@ -0,0 +1,69 @@
+-- Append-only log of loan transitions, written in the transaction that changes the borrow.
+-- Each event carries the loan's state after the transition.
+CREATE TABLE borrow_events (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    borrow_id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    book_id BIGINT NOT NULL,
+    event_type VARCHAR(20) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    borrow_date DATETIME(6) NOT NULL,
+    due_date DATETIME(6),
+    return_date DATETIME(6),
+    occurred_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_borrow_events_borrow ON borrow_events (borrow_id);
+
+-- Loans that existed before the log, as one IMPORTED event each with their current state
+INSERT INTO borrow_events
+    (borrow_id, user_id, book_id, event_type, status, borrow_date, due_date, return_date, occurred_at)
+SELECT id, user_id, book_id, 'IMPORTED', status, borrow_date, due_date, return_date, occurred_at FROM (
+    SELECT id, user_id, book_id, status, borrow_date, due_date, return_date,
+           COALESCE(updated_at, created_at, borrow_date) AS occurred_at FROM borrows
+    UNION ALL
+    SELECT id, user_id, book_id, status, borrow_date, due_date, return_date,
+           COALESCE(updated_at, created_at, borrow_date) FROM borrows_archive
+) loans ORDER BY id;
+
+-- Last event applied by each projection
+CREATE TABLE borrow_projection_checkpoints (
+    name VARCHAR(50) NOT NULL,
+    last_event_id BIGINT NOT NULL DEFAULT 0,
+    updated_at DATETIME(6),
+    PRIMARY KEY (name)
+);
+
+-- Read models built from borrow_events by the projections
+CREATE TABLE borrow_user_history (
+    borrow_id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    book_id BIGINT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    borrow_date DATETIME(6) NOT NULL,
+    due_date DATETIME(6),
+    return_date DATETIME(6),
+    updated_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (borrow_id)
+);
+
+CREATE INDEX idx_borrow_user_history_user ON borrow_user_history (user_id);
+
+CREATE TABLE borrow_book_counts (
+    book_id BIGINT NOT NULL,
+    loans BIGINT NOT NULL DEFAULT 0,
+    returns BIGINT NOT NULL DEFAULT 0,
+    lost BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (book_id)
+);
+
+CREATE TABLE borrow_overdue_set (
+    borrow_id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    book_id BIGINT NOT NULL,
+    due_date DATETIME(6),
+    PRIMARY KEY (borrow_id)
+);
+
+CREATE INDEX idx_borrow_overdue_set_due_date ON borrow_overdue_set (due_date);
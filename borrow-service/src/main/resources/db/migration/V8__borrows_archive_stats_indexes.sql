@@ -0,0 +1,4 @@
+-- Day-window scans of the rollup job over archived loans, matching the ones on borrows
+CREATE INDEX idx_borrows_archive_borrow_date ON borrows_archive (borrow_date);
+CREATE INDEX idx_borrows_archive_status_return_date ON borrows_archive (status, return_date);
+CREATE INDEX idx_borrows_archive_status_due_date ON borrows_archive (status, due_date);
@@ -0,0 +1,44 @@
+package com.library.borrow_service.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class BoundedTtlCacheTest {
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntryWhenFull() {
+        BoundedTtlCache<Integer, String> cache = new BoundedTtlCache<>(2);
+        cache.put(1, "one", 60_000);
+        cache.put(2, "two", 60_000);
+        cache.get(1);
+        cache.put(3, "three", 60_000);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get(1)).isEqualTo("one");
+        assertThat(cache.get(2)).isNull();
+        assertThat(cache.get(3)).isEqualTo("three");
+    }
+
+    @Test
+    void expiredEntriesAreNotReturnedAndCanBeReclaimed() {
+        BoundedTtlCache<Integer, String> cache = new BoundedTtlCache<>(10);
+        cache.put(1, "stale", 0);
+
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.putIfAbsent(1, "fresh", 60_000)).isNull();
+        assertThat(cache.putIfAbsent(1, "other", 60_000)).isEqualTo("fresh");
+    }
+
+    @Test
+    void conditionalReplaceAndRemoveOnlyTouchTheExpectedValue() {
+        BoundedTtlCache<Integer, String> cache = new BoundedTtlCache<>(10);
+        String claimed = new String("claimed");
+        cache.put(1, claimed, 60_000);
+
+        assertThat(cache.replace(1, new String("claimed"), "other", 60_000)).isFalse();
+        assertThat(cache.replace(1, claimed, "done", 60_000)).isTrue();
+        assertThat(cache.remove(1, claimed)).isFalse();
+        assertThat(cache.get(1)).isEqualTo("done");
+    }
+}
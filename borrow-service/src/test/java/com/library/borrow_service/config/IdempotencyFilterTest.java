@@ -0,0 +1,111 @@
+package com.library.borrow_service.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+
+class IdempotencyFilterTest {
+
+    private final IdempotencyFilter filter = new IdempotencyFilter(60, 100);
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @Test
+    void aRetryReplaysTheStoredResponseWithoutRunningTheRequestAgain() throws Exception {
+        FilterChain created = (request, response) -> {
+            executions.incrementAndGet();
+            String body = new String(request.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            ((HttpServletResponse) response).setStatus(HttpStatus.CREATED.value());
+            response.setContentType("application/json");
+            response.getWriter().write("{\"echo\":" + body + "}");
+        };
+
+        MockHttpServletResponse first = send("key-1", "{\"bookId\":7}", created);
+        MockHttpServletResponse retry = send("key-1", "{\"bookId\":7}", created);
+
+        assertThat(executions).hasValue(1);
+        assertThat(first.getStatus()).isEqualTo(201);
+        assertThat(first.getContentAsString()).isEqualTo("{\"echo\":{\"bookId\":7}}");
+        assertThat(retry.getStatus()).isEqualTo(201);
+        assertThat(retry.getContentAsString()).isEqualTo(first.getContentAsString());
+        assertThat(retry.getHeader("Idempotent-Replayed")).isEqualTo("true");
+    }
+
+    @Test
+    void reusingAKeyWithADifferentBodyIs422() throws Exception {
+        FilterChain ok = (request, response) -> executions.incrementAndGet();
+
+        send("key-2", "{\"bookId\":7}", ok);
+        MockHttpServletResponse reused = send("key-2", "{\"bookId\":8}", ok);
+
+        assertThat(executions).hasValue(1);
+        assertThat(reused.getStatus()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY.value());
+    }
+
+    @Test
+    void aDuplicateOfARequestStillRunningIs409() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FilterChain slow = (request, response) -> {
+            executions.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        CompletableFuture<MockHttpServletResponse> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return send("key-3", "{}", slow);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        MockHttpServletResponse duplicate = send("key-3", "{}", slow);
+        release.countDown();
+
+        assertThat(duplicate.getStatus()).isEqualTo(HttpStatus.CONFLICT.value());
+        assertThat(first.get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(200);
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void serverErrorsAreNotStoredSoARetryRunsAgain() throws Exception {
+        FilterChain failing = (request, response) -> {
+            executions.incrementAndGet();
+            ((HttpServletResponse) response).setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        };
+
+        MockHttpServletResponse first = send("key-4", "{}", failing);
+        MockHttpServletResponse retry = send("key-4", "{}", failing);
+
+        assertThat(first.getStatus()).isEqualTo(503);
+        assertThat(retry.getStatus()).isEqualTo(503);
+        assertThat(retry.getHeader("Idempotent-Replayed")).isNull();
+        assertThat(executions).hasValue(2);
+    }
+
+    private MockHttpServletResponse send(String key, String body, FilterChain chain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/borrows");
+        request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, key);
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
@@ -0,0 +1,131 @@
+package com.library.borrow_service.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import com.library.borrow_service.controller.BorrowController;
+import com.library.borrow_service.dto.BorrowBatchResultDTO;
+import com.library.borrow_service.dto.BorrowDTO;
+import com.library.borrow_service.dto.BorrowFineDTO;
+import com.library.borrow_service.entity.Borrow;
+import com.library.borrow_service.entity.BorrowFine;
+import com.library.borrow_service.repository.BorrowFineRepository;
+import com.library.borrow_service.repository.BorrowRepository;
+import com.library.borrow_service.scheduler.OverdueTimer;
+import com.library.borrow_service.service.BorrowService;
+
+/**
+ * Two local H2 shards: rows land on the shard of their user, ids name their shard, and
+ * admin-wide reads gather from both.
+ */
+@SpringBootTest(properties = "borrow.sharding.urls="
+        + "jdbc:h2:mem:shard0;MODE=MySQL;DATABASE_TO_LOWER=TRUE,"
+        + "jdbc:h2:mem:shard1;MODE=MySQL;DATABASE_TO_LOWER=TRUE")
+class ShardRoutingTest {
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private BorrowRepository borrowRepository;
+
+    @Autowired
+    private BorrowFineRepository borrowFineRepository;
+
+    @Autowired
+    private BorrowService borrowService;
+
+    @Autowired
+    private BorrowController borrowController;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // The real timer would flip the past-due loans below in the background before they are read back
+    @MockitoBean
+    private OverdueTimer overdueTimer;
+
+    @Test
+    void routesRowsByUserAndGathersAdminQueries() {
+        Borrow evenUserLoan = saveOverdueLoan(40L);
+        Borrow oddUserLoan = saveOverdueLoan(41L);
+
+        assertThat(shardRouter.shardForId(evenUserLoan.getId())).isZero();
+        assertThat(shardRouter.shardForId(oddUserLoan.getId())).isEqualTo(1);
+        assertThat(oddUserLoan.getId()).isGreaterThan(ShardRouter.ID_RANGE);
+        assertThat(countOnShard(0, 41L)).isZero();
+        assertThat(countOnShard(1, 41L)).isEqualTo(1);
+
+        assertThat(shardRouter.onUser(41L, () -> borrowRepository.findByUserId(41L)))
+                .extracting(Borrow::getId)
+                .containsExactly(oddUserLoan.getId());
+        assertThat(shardRouter.onId(oddUserLoan.getId(), () -> borrowRepository.findById(oddUserLoan.getId())))
+                .isPresent();
+
+        assertThat(borrowService.getOverdueBorrows())
+                .extracting(BorrowDTO::getId)
+                .contains(evenUserLoan.getId(), oddUserLoan.getId());
+        assertThat(borrowService.getAllFines())
+                .extracting(BorrowFineDTO::getBorrowId)
+                .contains(evenUserLoan.getId(), oddUserLoan.getId());
+    }
+
+    @Test
+    void batchReturnReportsIdsNoShardHolds() {
+        Borrow evenUserLoan = saveLoanDueIn(42L, 7);
+        Borrow oddUserLoan = saveLoanDueIn(43L, 7);
+        Long beyondLastShard = 3 * ShardRouter.ID_RANGE + 5;
+
+        List<BorrowBatchResultDTO> results = borrowController.markReturnedBatch(
+                List.of(evenUserLoan.getId(), beyondLastShard, oddUserLoan.getId(), -1L)).getBody();
+
+        assertThat(results).extracting(BorrowBatchResultDTO::getBorrowId)
+                .containsExactly(evenUserLoan.getId(), beyondLastShard, oddUserLoan.getId(), -1L);
+        assertThat(results).extracting(BorrowBatchResultDTO::getError)
+                .containsExactly(null, "Borrow record not found", null, "Borrow record not found");
+        assertThat(borrowController.markReturnedBatch(List.of(beyondLastShard)).getBody())
+                .extracting(BorrowBatchResultDTO::getError)
+                .containsExactly("Borrow record not found");
+    }
+
+    private Borrow saveLoanDueIn(Long userId, int days) {
+        return shardRouter.onUser(userId, () -> {
+            Borrow borrow = new Borrow();
+            borrow.setUserId(userId);
+            borrow.setBookId(7L);
+            borrow.setBorrowDate(LocalDateTime.now());
+            borrow.setDueDate(LocalDateTime.now().plusDays(days));
+            borrow.setStatus(Borrow.BorrowStatus.BORROWED);
+            return borrowRepository.save(borrow);
+        });
+    }
+
+    private Borrow saveOverdueLoan(Long userId) {
+        return shardRouter.onUser(userId, () -> {
+            LocalDateTime now = LocalDateTime.now();
+            Borrow borrow = new Borrow();
+            borrow.setUserId(userId);
+            borrow.setBookId(7L);
+            borrow.setBorrowDate(now.minusDays(20));
+            borrow.setDueDate(now.minusDays(6));
+            borrow.setStatus(Borrow.BorrowStatus.BORROWED);
+            Borrow saved = borrowRepository.save(borrow);
+            borrowFineRepository.save(new BorrowFine(saved.getId(), userId, BigDecimal.valueOf(60000), BorrowFine.FineReason.LATE));
+            return saved;
+        });
+    }
+
+    private Integer countOnShard(int shard, Long userId) {
+        return shardRouter.onShard(shard, () ->
+                jdbcTemplate.queryForObject("SELECT COUNT(*) FROM borrows WHERE user_id = ?", Integer.class, userId));
+    }
+}
@@ -0,0 +1,138 @@
+package com.library.borrow_service.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import com.library.borrow_service.dto.BorrowBatchResultDTO;
+import com.library.borrow_service.service.BorrowLockService;
+import com.library.borrow_service.service.CheckoutValidator;
+
+/**
+ * Single checkouts through POST /borrows go through the same per-user lock and borrow limit
+ * as the service checkout, however many arrive at once; desk batches report every book.
+ */
+@SpringBootTest
+class BorrowControllerTest {
+
+    private static final Long USER_ID = 9601L;
+    private static final Long LOCKED_USER_ID = 9602L;
+    private static final Long BATCH_USER_ID = 9603L;
+    private static final int PARALLEL_CHECKOUTS = 12;
+
+    @Autowired
+    private BorrowController borrowController;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private CheckoutValidator checkoutValidator;
+
+    @MockitoBean
+    private BorrowLockService borrowLockService;
+
+    @Test
+    void parallelCheckoutsOfOneUserStopAtTheBorrowLimit() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> checkouts = new ArrayList<>();
+        try (ExecutorService clients = Executors.newFixedThreadPool(PARALLEL_CHECKOUTS)) {
+            for (int i = 0; i < PARALLEL_CHECKOUTS; i++) {
+                long bookId = 9610L + i;
+                checkouts.add(clients.submit((Callable<Object>) () -> {
+                    start.await();
+                    return borrowController.createBorrow(request(USER_ID, bookId));
+                }));
+            }
+            start.countDown();
+        }
+
+        int rejected = 0;
+        for (Future<?> checkout : checkouts) {
+            try {
+                checkout.get();
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).hasMessage("User has reached maximum borrow limit");
+                rejected++;
+            }
+        }
+
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM borrows WHERE user_id = ? AND status = 'BORROWED'", Integer.class, USER_ID))
+                .isEqualTo(5);
+        assertThat(rejected).isEqualTo(PARALLEL_CHECKOUTS - 5);
+    }
+
+    @Test
+    void lockedUserIsRejectedBeforeValidation() {
+        when(borrowLockService.isLocked(LOCKED_USER_ID)).thenReturn(true);
+
+        assertThatThrownBy(() -> borrowController.createBorrow(request(LOCKED_USER_ID, 9620L)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("User is locked from borrowing due to outstanding fines");
+        verify(checkoutValidator, never()).validateUserAndBook(anyLong(), anyLong());
+    }
+
+    @Test
+    void batchCheckoutReportsEachBookInRequestOrder() {
+        borrowController.createBorrow(request(BATCH_USER_ID, 9630L));
+        List<Long> bookIds = List.of(9631L, 9699L, 9630L, 9632L, 9632L, 9633L, 9634L, 9635L, 9636L);
+        when(checkoutValidator.validateUserAndBooks(BATCH_USER_ID, bookIds))
+                .thenReturn(Set.of(9630L, 9631L, 9632L, 9633L, 9634L, 9635L, 9636L));
+        BorrowController.BatchBorrowRequest batch = new BorrowController.BatchBorrowRequest();
+        batch.setUserId(BATCH_USER_ID);
+        batch.setBookIds(bookIds);
+        batch.setDueDate("2030-01-01");
+
+        List<BorrowBatchResultDTO> results = borrowController.createBorrows(batch).getBody();
+
+        assertThat(results).extracting(BorrowBatchResultDTO::getBookId).containsExactlyElementsOf(bookIds);
+        assertThat(results).extracting(BorrowBatchResultDTO::getError).containsExactly(
+                null,
+                "Invalid bookId",
+                "User already has this book borrowed",
+                null,
+                "User already has this book borrowed",
+                null,
+                null,
+                "User has reached maximum borrow limit",
+                "User has reached maximum borrow limit");
+        assertThat(results).filteredOn(BorrowBatchResultDTO::isSuccess)
+                .allSatisfy(result -> {
+                    assertThat(result.getBorrowId()).isNotNull();
+                    assertThat(result.getBorrow().getDueDate()).isEqualTo(LocalDate.of(2030, 1, 1).atStartOfDay());
+                });
+        assertThat(jdbcTemplate.queryForList(
+                "SELECT book_id FROM borrows WHERE user_id = ? AND status = 'BORROWED' ORDER BY book_id",
+                Long.class, BATCH_USER_ID))
+                .containsExactly(9630L, 9631L, 9632L, 9633L, 9634L);
+    }
+
+    private static BorrowController.CreateBorrowRequest request(Long userId, Long bookId) {
+        BorrowController.CreateBorrowRequest request = new BorrowController.CreateBorrowRequest();
+        request.setUserId(userId);
+        request.setBookId(bookId);
+        request.setDueDate("2030-01-01");
+        return request;
+    }
+}
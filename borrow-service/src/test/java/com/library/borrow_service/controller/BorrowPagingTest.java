@@ -0,0 +1,176 @@
+package com.library.borrow_service.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.library.borrow_service.config.ShardRouter;
+import com.library.borrow_service.dto.BorrowFineDTO;
+import com.library.borrow_service.dto.KeysetPageDTO;
+import com.library.borrow_service.entity.Borrow;
+import com.library.borrow_service.service.BorrowService;
+
+/**
+ * Keyset pages and exports over two H2 shards. Each test writes its rows on its own day in 2001,
+ * so the date filter keeps out the seed data and the other tests' rows.
+ */
+@SpringBootTest(properties = { "borrow.sharding.urls="
+        + "jdbc:h2:mem:pageshard0;MODE=MySQL;DATABASE_TO_LOWER=TRUE,"
+        + "jdbc:h2:mem:pageshard1;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+        // The 2001 loans below are old enough for the nightly archive run to move them
+        "borrow.archive.cron=-" })
+class BorrowPagingTest {
+
+    // An even and an odd user, one on each shard
+    private static final Long EVEN_USER = 9700L;
+    private static final Long ODD_USER = 9701L;
+
+    @Autowired
+    private BorrowController borrowController;
+
+    @Autowired
+    private BorrowService borrowService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void pagesWalkBothShardsInIdOrder() {
+        LocalDate day = LocalDate.of(2001, 2, 3);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            ids.addAll(insertBorrows(i % 2 == 0 ? EVEN_USER : ODD_USER, day, 1));
+        }
+
+        List<KeysetPageDTO<Borrow>> pages = walkBorrowPages(day, 3);
+
+        assertThat(pages).extracting(page -> page.getItems().size()).containsExactly(3, 3, 1);
+        assertThat(pages).extracting(KeysetPageDTO::isHasMore).containsExactly(true, true, false);
+        assertThat(pages.stream().flatMap(page -> page.getItems().stream()).map(Borrow::getId))
+                .containsExactlyElementsOf(ids.stream().sorted().collect(Collectors.toList()));
+        assertThat(ids).anyMatch(id -> shardRouter.shardForId(id) == 0).anyMatch(id -> shardRouter.shardForId(id) == 1);
+    }
+
+    @Test
+    void hasMoreIsFalseWhenTheLastPageIsExactlyFull() {
+        LocalDate day = LocalDate.of(2001, 3, 4);
+        insertBorrows(EVEN_USER, day, 3);
+        insertBorrows(ODD_USER, day, 3);
+
+        assertThat(walkBorrowPages(day, 3)).extracting(KeysetPageDTO::isHasMore).containsExactly(true, false);
+        assertThat(walkBorrowPages(day, 6)).extracting(KeysetPageDTO::isHasMore).containsExactly(false);
+        assertThat(walkBorrowPages(day, 5)).extracting(page -> page.getItems().size()).containsExactly(5, 1);
+
+        KeysetPageDTO<Borrow> pastTheEnd = page(day, walkBorrowPages(day, 6).get(0).getNextAfterId(), 6);
+        assertThat(pastTheEnd.getItems()).isEmpty();
+        assertThat(pastTheEnd.getNextAfterId()).isNull();
+        assertThat(pastTheEnd.isHasMore()).isFalse();
+    }
+
+    @Test
+    void exportStreamsEveryRowOfEveryShardInIdOrder() throws Exception {
+        LocalDate day = LocalDate.of(2001, 4, 5);
+        // More than one export chunk on the first shard
+        List<Long> ids = new ArrayList<>(insertBorrows(EVEN_USER, day, 1100));
+        ids.addAll(insertBorrows(ODD_USER, day, 5));
+
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        borrowController.exportBorrows("ndjson", null, day, day).getBody().writeTo(ndjson);
+        List<String> lines = lines(ndjson);
+        assertThat(lines).hasSize(1105);
+        assertThat(lines).extracting(line -> Long.parseLong(line.replaceAll("^\\{\"id\":(\\d+),.*$", "$1")))
+                .containsExactlyElementsOf(ids.stream().sorted().collect(Collectors.toList()));
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        borrowController.exportBorrows("csv", Borrow.BorrowStatus.RETURNED, day, day).getBody().writeTo(csv);
+        assertThat(lines(csv)).hasSize(1106).first().asString().startsWith("id,userId,bookId");
+    }
+
+    @Test
+    void finePagesWalkBothShards() {
+        LocalDate day = LocalDate.of(2001, 5, 6);
+        List<Long> fineIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Long userId = i % 2 == 0 ? EVEN_USER : ODD_USER;
+            long borrowId = 97_000L + i;
+            fineIds.add(shardRouter.onUser(userId, () -> {
+                jdbcTemplate.update("INSERT INTO borrow_fines (borrow_id, user_id, amount, reason, paid, created_at) "
+                        + "VALUES (?, ?, 1, 'DAMAGE', FALSE, ?)", borrowId, userId, day.atTime(10, 0));
+                return jdbcTemplate.queryForObject("SELECT MAX(id) FROM borrow_fines", Long.class);
+            }));
+        }
+
+        List<KeysetPageDTO<BorrowFineDTO>> pages = new ArrayList<>();
+        Long afterId = null;
+        do {
+            KeysetPageDTO<BorrowFineDTO> page = borrowService.getFinesPage(afterId, 2, false, null, day, day);
+            pages.add(page);
+            afterId = page.getNextAfterId();
+        } while (pages.get(pages.size() - 1).isHasMore());
+
+        assertThat(pages).extracting(page -> page.getItems().size()).containsExactly(2, 2, 1);
+        assertThat(pages.stream().flatMap(page -> page.getItems().stream()).map(BorrowFineDTO::getId))
+                .containsExactlyElementsOf(fineIds.stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    void listIsCappedToTheNewestLoans() {
+        LocalDate day = LocalDate.of(2001, 6, 7);
+        insertBorrows(EVEN_USER, day, 3);
+        Long newest = insertBorrows(ODD_USER, day, 3).get(2);
+
+        List<Borrow> borrows = borrowController.getAllBorrows(2).getBody();
+
+        assertThat(borrows).extracting(Borrow::getId)
+                .hasSize(2)
+                .startsWith(newest)
+                .isSortedAccordingTo((a, b) -> Long.compare(b, a));
+    }
+
+    private List<KeysetPageDTO<Borrow>> walkBorrowPages(LocalDate day, int size) {
+        List<KeysetPageDTO<Borrow>> pages = new ArrayList<>();
+        Long afterId = null;
+        do {
+            KeysetPageDTO<Borrow> page = page(day, afterId, size);
+            pages.add(page);
+            afterId = page.getNextAfterId();
+        } while (pages.get(pages.size() - 1).isHasMore());
+        return pages;
+    }
+
+    private KeysetPageDTO<Borrow> page(LocalDate day, Long afterId, int size) {
+        return borrowController.getBorrowsPage(afterId, size, null, day, day).getBody();
+    }
+
+    // Returned loans, so neither the overdue sweep nor the timer touches them
+    private List<Long> insertBorrows(Long userId, LocalDate day, int count) {
+        return shardRouter.onUser(userId, () -> {
+            Long before = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM borrows", Long.class);
+            jdbcTemplate.batchUpdate("INSERT INTO borrows (user_id, book_id, borrow_date, due_date, return_date, status) "
+                    + "VALUES (?, 1, ?, ?, ?, 'RETURNED')",
+                    IntStream.range(0, count).mapToObj(i -> new Object[] {
+                            userId, day.atTime(9, 0), day.plusDays(14).atStartOfDay(), day.plusDays(1).atStartOfDay() })
+                            .collect(Collectors.toList()));
+            return jdbcTemplate.queryForList("SELECT id FROM borrows WHERE id > ? ORDER BY id", Long.class, before);
+        });
+    }
+
+    private static List<String> lines(ByteArrayOutputStream output) {
+        return Arrays.asList(output.toString(StandardCharsets.UTF_8).split("\n"));
+    }
+}
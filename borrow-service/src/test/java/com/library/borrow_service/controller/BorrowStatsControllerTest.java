@@ -0,0 +1,33 @@
+package com.library.borrow_service.controller;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.library.borrow_service.service.BorrowService;
+import com.library.borrow_service.service.BorrowStatsService;
+
+class BorrowStatsControllerTest {
+
+    private final BorrowService borrowService = mock(BorrowService.class);
+    private final MockMvc mockMvc = MockMvcBuilders
+            .standaloneSetup(new BorrowStatsController(mock(BorrowStatsService.class), borrowService))
+            .build();
+
+    // The book detail page reads response.data.count
+    @Test
+    void countsBorrowsOfABook() throws Exception {
+        when(borrowService.countBorrowsByBook(7L)).thenReturn(12L);
+
+        mockMvc.perform(get("/borrows/count").param("bookId", "7"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bookId").value(7))
+                .andExpect(jsonPath("$.count").value(12));
+    }
+}
@@ -0,0 +1,62 @@
+package com.library.borrow_service.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Parse cost of RequestDateBinder against the exception-driven fallback it replaced, for the
+ * date-only format the frontend sends and for ISO instants. Run with ./gradlew benchmark.
+ */
+@Tag("benchmark")
+class RequestDateBinderBenchmark {
+
+    private static final int WARM_UP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+    private static final int CALLS_PER_ROUND = 200_000;
+
+    private static final List<String> DATE_ONLY = List.of("2024-05-01", "2024-06-15", "2025-01-31", "2025-12-24");
+    private static final List<String> INSTANTS = List.of(
+            "2024-05-01T10:20:30.123Z", "2024-06-15T08:00:00Z", "2025-01-31T17:45:12.5Z", "2025-12-24T23:59:59.999Z");
+
+    // Keeps the JIT from dropping the parse calls
+    private long sink;
+
+    @Test
+    void compareParsers() {
+        report("date only", DATE_ONLY);
+        report("instant", INSTANTS);
+        assertThat(sink).isNotZero();
+    }
+
+    private void report(String format, List<String> inputs) {
+        double fallback = nanosPerCall(inputs, RequestDateBinderTest::javaTimeParse);
+        double binder = nanosPerCall(inputs, RequestDateBinder::parse);
+        System.out.printf("%-10s exception fallback: %8.1f ns/op   binder: %8.1f ns/op   (%.1fx)%n",
+                format, fallback, binder, fallback / binder);
+    }
+
+    private double nanosPerCall(List<String> inputs, Function<String, LocalDateTime> parser) {
+        for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+            run(inputs, parser);
+        }
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            run(inputs, parser);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return (double) best / CALLS_PER_ROUND;
+    }
+
+    private void run(List<String> inputs, Function<String, LocalDateTime> parser) {
+        for (int i = 0; i < CALLS_PER_ROUND; i++) {
+            sink += parser.apply(inputs.get(i & 3)).getDayOfYear();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.library.borrow_service.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class RequestDateBinderTest {
+
+    // Same result as the Instant.parse / LocalDate.parse fallback it replaces
+    @ParameterizedTest
+    @ValueSource(strings = { "2024-05-01", "2024-02-29", "2024-05-01T10:20:30Z", "2024-05-01T10:20:30.123Z",
+            "2024-05-01T10:20:30.123456789Z", "2024-12-31T23:59:59+07:00", "2024-01-01T00:00:00-05:30" })
+    void matchesTheJavaTimeParsers(String value) {
+        assertThat(RequestDateBinder.parse(value)).isEqualTo(javaTimeParse(value));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "", "2024-5-1", "2023-02-29", "2024-13-01", "2024-05-01T24:00:00Z", "2024-05-01T10:20:30",
+            "2024-05-01T10:20:30.Z", "2024-05-01 10:20:30Z", "2024-05-01T10:20:30+19:00", "01/05/2024" })
+    void rejectsOtherShapes(String value) {
+        assertThat(RequestDateBinder.parse(value)).isNull();
+        assertThatThrownBy(() -> RequestDateBinder.bind(value, "dueDate"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid date format for dueDate");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "2024-05-01T10:20Z", "2024-05-01T10:20:30+0700", "2024-05-01T10:20:30+07" })
+    void acceptsShortTimesAndOffsets(String value) {
+        assertThat(RequestDateBinder.parse(value)).isNotNull();
+    }
+
+    static LocalDateTime javaTimeParse(String value) {
+        try {
+            return LocalDateTime.ofInstant(Instant.parse(value), ZoneId.systemDefault());
+        } catch (java.time.format.DateTimeParseException ex) {
+            return LocalDate.parse(value).atStartOfDay();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.library.borrow_service.event;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.library.borrow_service.entity.Borrow;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:eventlog;MODE=MySQL;DATABASE_TO_LOWER=TRUE")
+class BorrowEventLogTest {
+
+    private static final Long USER_ID = 9401L;
+    private static final Duration SETTLE_TIME = Duration.ofMillis(300);
+
+    @Autowired
+    private BorrowEventLog borrowEventLog;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // markedAt only finds the flipped rows; a flip recorded late must not be dated before the settle window
+    @Test
+    void overdueEventsOccurWhenTheyAreAppended() {
+        LocalDateTime markedAt = LocalDateTime.now().minusMinutes(10).truncatedTo(ChronoUnit.MICROS);
+        jdbcTemplate.update("INSERT INTO borrows (user_id, book_id, borrow_date, due_date, status, updated_at) "
+                + "VALUES (?, 9402, ?, ?, 'LATE_RETURNED', ?)", USER_ID, Timestamp.valueOf(markedAt.minusDays(20)),
+                Timestamp.valueOf(markedAt.minusDays(1)), Timestamp.valueOf(markedAt));
+        Long borrowId = jdbcTemplate.queryForObject("SELECT id FROM borrows WHERE user_id = ?", Long.class, USER_ID);
+
+        LocalDateTime appendedFrom = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        assertThat(borrowEventLog.appendOverdue(List.of(borrowId), markedAt)).isEqualTo(1);
+
+        LocalDateTime occurredAt = jdbcTemplate.queryForObject(
+                "SELECT occurred_at FROM borrow_events WHERE borrow_id = ? AND event_type = 'OVERDUE'",
+                LocalDateTime.class, borrowId);
+        assertThat(occurredAt).isAfterOrEqualTo(appendedFrom);
+    }
+
+    // The first event after the checkpoint commits last: nothing is read until both have settled
+    @Test
+    void lowerIdCommittingAfterAHigherOneIsNotSkipped() throws Exception {
+        long checkpoint = borrowEventLog.lastEventId();
+        CountDownLatch appended = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        Thread slowWriter = Thread.ofVirtual().start(() -> transactionTemplate.executeWithoutResult(status -> {
+            borrowEventLog.append(loan(94_101L), BorrowEvent.Type.BORROWED);
+            appended.countDown();
+            await(commit);
+        }));
+        appended.await();
+        borrowEventLog.append(loan(94_102L), BorrowEvent.Type.BORROWED);
+
+        assertThat(borrowEventLog.readAfter(checkpoint, SETTLE_TIME, 10)).isEmpty();
+        commit.countDown();
+        slowWriter.join();
+        Thread.sleep(SETTLE_TIME.toMillis() + 100);
+
+        List<BorrowEvent> events = borrowEventLog.readAfter(checkpoint, SETTLE_TIME, 10);
+        assertThat(events).extracting(BorrowEvent::borrowId).containsExactly(94_101L, 94_102L);
+        assertThat(events.get(0).id()).isLessThan(events.get(1).id());
+    }
+
+    // An old event behind a young one is not read ahead of it, whatever its timestamp says
+    @Test
+    void readStopsAtTheFirstUnsettledEvent() {
+        long checkpoint = borrowEventLog.lastEventId();
+        LocalDateTime longAgo = LocalDateTime.now().minusHours(1);
+        insertEvent(94_201L, longAgo);
+        insertEvent(94_202L, LocalDateTime.now().plusMinutes(1));
+        insertEvent(94_203L, longAgo);
+
+        assertThat(borrowEventLog.readAfter(checkpoint, SETTLE_TIME, 10))
+                .extracting(BorrowEvent::borrowId)
+                .containsExactly(94_201L);
+    }
+
+    private void insertEvent(Long borrowId, LocalDateTime occurredAt) {
+        jdbcTemplate.update("INSERT INTO borrow_events (borrow_id, user_id, book_id, event_type, status, borrow_date, "
+                + "occurred_at) VALUES (?, ?, 9402, 'BORROWED', 'BORROWED', ?, ?)", borrowId, USER_ID,
+                Timestamp.valueOf(occurredAt.minusDays(1)), Timestamp.valueOf(occurredAt));
+    }
+
+    private static Borrow loan(Long borrowId) {
+        Borrow borrow = new Borrow();
+        borrow.setId(borrowId);
+        borrow.setUserId(USER_ID);
+        borrow.setBookId(9402L);
+        borrow.setBorrowDate(LocalDateTime.now());
+        borrow.setDueDate(LocalDateTime.now().plusDays(14));
+        borrow.setStatus(Borrow.BorrowStatus.BORROWED);
+        return borrow;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
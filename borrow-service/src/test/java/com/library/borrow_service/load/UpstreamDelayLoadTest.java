@@ -0,0 +1,202 @@
+package com.library.borrow_service.load;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.ClassOrderer;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestClassOrder;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Checkout throughput while user-service and book-service answer after 500 ms, with Tomcat on
+ * platform threads (200 max) and on virtual threads. CONCURRENCY clients keep a checkout in flight
+ * each, well past the 200 platform threads, and the req/s of both runs are printed side by side
+ * at the end. Stub upstreams listen on ephemeral ports wired in through user-service.url and
+ * book-service.url. Run with: gradle loadTest
+ */
+@Tag("load")
+@TestClassOrder(ClassOrderer.OrderAnnotation.class)
+class UpstreamDelayLoadTest {
+
+    private static final int UPSTREAM_DELAY_MILLIS = 500;
+    private static final int CONCURRENCY = 1000;
+    private static final int REQUESTS = 5000;
+    private static final int WARM_UP_REQUESTS = 1000;
+
+    private static final ServerSocket userService = startDelayedStub();
+    private static final ServerSocket bookService = startDelayedStub();
+    private static final Map<String, Long> requestsPerSecond = new ConcurrentSkipListMap<>();
+
+    @DynamicPropertySource
+    static void upstreamUrls(DynamicPropertyRegistry registry) {
+        registry.add("user-service.url", () -> "http://localhost:" + userService.getLocalPort());
+        registry.add("book-service.url", () -> "http://localhost:" + bookService.getLocalPort());
+    }
+
+    @AfterAll
+    static void stopUpstreams() {
+        System.out.println("LOAD summary, " + CONCURRENCY + " concurrent checkouts with " + UPSTREAM_DELAY_MILLIS
+                + " ms upstream delay: " + requestsPerSecond);
+        for (ServerSocket server : List.of(userService, bookService)) {
+            try {
+                server.close();
+            } catch (IOException e) {
+                System.err.println("Failed to stop stub upstream: " + e.getMessage());
+            }
+        }
+    }
+
+    @Nested
+    @Order(1)
+    @TestInstance(TestInstance.Lifecycle.PER_CLASS)
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+            properties = { "spring.threads.virtual.enabled=false", "borrow.validation.user-service-timeout-ms=30000",
+                    "borrow.validation.book-service-timeout-ms=30000",
+                    "borrow.http.read-timeout-ms=30000", "spring.jpa.show-sql=false",
+                    "spring.datasource.url=jdbc:h2:mem:loadplatform;MODE=MySQL;DATABASE_TO_LOWER=TRUE" })
+    class PlatformThreads {
+
+        @LocalServerPort
+        int port;
+
+        @Test
+        void checkoutThroughput() throws Exception {
+            runCheckouts("platform threads", port);
+        }
+    }
+
+    @Nested
+    @Order(2)
+    @TestInstance(TestInstance.Lifecycle.PER_CLASS)
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+            properties = { "spring.threads.virtual.enabled=true", "borrow.validation.user-service-timeout-ms=30000",
+                    "borrow.validation.book-service-timeout-ms=30000",
+                    "borrow.http.read-timeout-ms=30000", "spring.jpa.show-sql=false",
+                    "borrow.virtual-threads.pinning-monitor.enabled=true",
+                    "spring.datasource.url=jdbc:h2:mem:loadvirtual;MODE=MySQL;DATABASE_TO_LOWER=TRUE" })
+    class VirtualThreads {
+
+        @LocalServerPort
+        int port;
+
+        @Test
+        void checkoutThroughput() throws Exception {
+            runCheckouts("virtual threads", port);
+        }
+    }
+
+    private static void runCheckouts(String mode, int port) throws Exception {
+        try (HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build()) {
+            // Warm up the JIT, the connection pools and Hibernate before measuring
+            fireCheckouts(client, port, 0, WARM_UP_REQUESTS);
+
+            long start = System.nanoTime();
+            long succeeded = fireCheckouts(client, port, WARM_UP_REQUESTS, REQUESTS);
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            long perSecond = REQUESTS * 1000L / Math.max(elapsedMillis, 1);
+            requestsPerSecond.put(mode, perSecond);
+
+            System.out.println("LOAD " + mode + ": " + REQUESTS + " checkouts, " + CONCURRENCY + " at a time, with "
+                    + UPSTREAM_DELAY_MILLIS + " ms upstream delay in " + elapsedMillis + " ms, " + perSecond
+                    + " req/s, " + succeeded + " succeeded");
+            assertThat(succeeded).isEqualTo(REQUESTS);
+        }
+    }
+
+    // CONCURRENCY clients each send their share of the checkouts one after another
+    private static long fireCheckouts(HttpClient client, int port, int firstUser, int count) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        AtomicLong succeeded = new AtomicLong();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < CONCURRENCY; c++) {
+                clients.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+                        if (checkout(client, port, firstUser + i, i % 50 + 1) == 200) {
+                            succeeded.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+        }
+        return succeeded.get();
+    }
+
+    private static int checkout(HttpClient client, int port, int user, int bookId) throws IOException, InterruptedException {
+        String body = "{\"userId\":" + (10_000 + user) + ",\"bookId\":" + bookId + ",\"dueDate\":\"2030-01-01\"}";
+        return client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/borrows"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private static ServerSocket startDelayedStub() {
+        ServerSocket server;
+        try {
+            server = new ServerSocket(0, 4096);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start stub upstream", e);
+        }
+        Thread.ofVirtual().start(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    Thread.ofVirtual().start(() -> respondAfterDelay(socket));
+                } catch (IOException e) {
+                    // Closed by stopUpstreams
+                }
+            }
+        });
+        return server;
+    }
+
+    // One request per connection, so the stub only has to read the request head before answering
+    private static void respondAfterDelay(Socket socket) {
+        try (socket) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                // Skip request line and headers
+            }
+            Thread.sleep(UPSTREAM_DELAY_MILLIS);
+            byte[] body = "{\"id\":1,\"borrowLock\":false}".getBytes(StandardCharsets.UTF_8);
+            OutputStream out = socket.getOutputStream();
+            out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: " + body.length
+                    + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            out.write(body);
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Stub upstream failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
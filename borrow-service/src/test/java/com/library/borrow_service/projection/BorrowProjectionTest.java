@@ -0,0 +1,112 @@
+package com.library.borrow_service.projection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.groups.Tuple.tuple;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.library.borrow_service.dto.BookLoanCountsDTO;
+import com.library.borrow_service.dto.BorrowDTO;
+import com.library.borrow_service.entity.Borrow;
+import com.library.borrow_service.repository.BorrowRepository;
+import com.library.borrow_service.service.BorrowService;
+import com.library.borrow_service.service.OverdueBorrowProcessor;
+
+/**
+ * Loan transitions land in borrow_events, the projections follow them, and a rebuild by
+ * replay gives the same read models.
+ */
+@SpringBootTest(properties = { "borrow.projections.settle-ms=0", "borrow.projections.poll-ms=3600000" })
+class BorrowProjectionTest {
+
+    private static final Long USER_ID = 9001L;
+    private static final Long BOOK_ID = 9002L;
+
+    @Autowired
+    private BorrowRepository borrowRepository;
+
+    @Autowired
+    private BorrowService borrowService;
+
+    @Autowired
+    private OverdueBorrowProcessor overdueBorrowProcessor;
+
+    @Autowired
+    private ProjectionRunner projectionRunner;
+
+    @Autowired
+    private UserHistoryProjection userHistoryProjection;
+
+    @Autowired
+    private BookLoanCountsProjection bookLoanCountsProjection;
+
+    @Autowired
+    private OverdueSetProjection overdueSetProjection;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void projectionsFollowTheEventLogAndRebuildByReplay() {
+        LocalDateTime now = LocalDateTime.now();
+        Borrow returned = saveLoan(now.plusDays(7));
+        Borrow overdue = saveLoan(now.minusDays(2));
+        Borrow open = saveLoan(now.plusDays(14));
+
+        borrowService.returnBook(returned.getId());
+        overdueBorrowProcessor.markOverdue(List.of(overdue.getId(), open.getId()));
+
+        assertThat(eventTypes(returned.getId())).containsExactly("BORROWED", "RETURNED");
+        assertThat(eventTypes(overdue.getId())).containsExactly("BORROWED", "OVERDUE");
+        assertThat(eventTypes(open.getId())).containsExactly("BORROWED");
+
+        projectionRunner.catchUp();
+        assertReadModels(returned, overdue, open);
+
+        for (String name : List.of("user-history", "book-counts", "overdue-set")) {
+            projectionRunner.rebuild(name);
+        }
+        assertReadModels(returned, overdue, open);
+        assertThat(projectionRunner.status()).allSatisfy(status -> assertThat(status.getLag()).isZero());
+    }
+
+    private void assertReadModels(Borrow returned, Borrow overdue, Borrow open) {
+        assertThat(userHistoryProjection.findByUser(USER_ID))
+                .extracting(BorrowDTO::getId, BorrowDTO::getStatus)
+                .containsExactlyInAnyOrder(
+                        tuple(returned.getId(), Borrow.BorrowStatus.RETURNED),
+                        tuple(overdue.getId(), Borrow.BorrowStatus.LATE_RETURNED),
+                        tuple(open.getId(), Borrow.BorrowStatus.BORROWED));
+
+        BookLoanCountsDTO counts = bookLoanCountsProjection.findByBook(BOOK_ID);
+        assertThat(counts.getLoans()).isEqualTo(3);
+        assertThat(counts.getReturns()).isEqualTo(1);
+        assertThat(counts.getActive()).isEqualTo(2);
+
+        assertThat(overdueSetProjection.findAll())
+                .extracting(BorrowDTO::getId)
+                .contains(overdue.getId())
+                .doesNotContain(returned.getId(), open.getId());
+    }
+
+    private Borrow saveLoan(LocalDateTime dueDate) {
+        Borrow borrow = new Borrow();
+        borrow.setUserId(USER_ID);
+        borrow.setBookId(BOOK_ID);
+        borrow.setBorrowDate(LocalDateTime.now().minusDays(10));
+        borrow.setDueDate(dueDate);
+        borrow.setStatus(Borrow.BorrowStatus.BORROWED);
+        return borrowRepository.save(borrow);
+    }
+
+    private List<String> eventTypes(Long borrowId) {
+        return jdbcTemplate.queryForList(
+                "SELECT event_type FROM borrow_events WHERE borrow_id = ? ORDER BY id", String.class, borrowId);
+    }
+}
@@ -0,0 +1,138 @@
+package com.library.borrow_service.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.library.borrow_service.entity.Borrow;
+import com.library.borrow_service.entity.BorrowFine;
+import com.library.borrow_service.event.BorrowEventLog;
+import com.library.borrow_service.projection.UserHistoryProjection;
+import com.library.borrow_service.service.BorrowStatsService;
+
+/**
+ * Calls each borrow and fine repository lookup, and the JDBC reads of the event log, the user
+ * history and the daily stats, records the SQL they actually send with its bound parameters,
+ * and fails if EXPLAIN of any of those statements falls back to a full table scan.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:queryplan;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.driver-class-name=com.library.borrow_service.repository.StatementRecordingDriver" })
+class BorrowQueryPlanTest {
+
+    private static final PageRequest PAGE = PageRequest.of(0, 100);
+    private static final List<Long> IDS = List.of(11L, 12L, 13L);
+
+    @Autowired
+    private BorrowRepository borrowRepository;
+
+    @Autowired
+    private BorrowFineRepository borrowFineRepository;
+
+    @Autowired
+    private BorrowArchiveRepository borrowArchiveRepository;
+
+    @Autowired
+    private BorrowEventLog borrowEventLog;
+
+    @Autowired
+    private UserHistoryProjection userHistoryProjection;
+
+    @Autowired
+    private BorrowStatsService borrowStatsService;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Map<String, Runnable> queries() {
+        LocalDateTime now = LocalDateTime.now();
+        Borrow.BorrowStatus borrowed = Borrow.BorrowStatus.BORROWED;
+        Borrow.BorrowStatus late = Borrow.BorrowStatus.LATE_RETURNED;
+        Map<String, Runnable> queries = new LinkedHashMap<>();
+        queries.put("findByUserId", () -> borrowRepository.findByUserId(3L));
+        queries.put("findByBookId", () -> borrowRepository.findByBookId(7L));
+        queries.put("countByBookId", () -> borrowRepository.countByBookId(7L));
+        queries.put("findByUserIdAndBookIdAndStatus", () -> borrowRepository.findByUserIdAndBookIdAndStatus(3L, 7L, borrowed));
+        queries.put("findActiveBorrowsByUser", () -> borrowRepository.findActiveBorrowsByUser(3L, borrowed));
+        queries.put("countActiveBorrowsByUser", () -> borrowRepository.countActiveBorrowsByUser(3L, borrowed));
+        queries.put("checkEligibility", () -> borrowRepository.checkEligibility(3L, 7L, borrowed));
+        queries.put("findOverdueBorrows", () -> borrowRepository.findOverdueBorrows(now, borrowed));
+        queries.put("findOverdueBorrowsAfter", () -> borrowRepository.findOverdueBorrowsAfter(now, borrowed, 0L, PAGE));
+        queries.put("findOverdueBorrowsByIds", () -> borrowRepository.findOverdueBorrowsByIds(IDS, now, borrowed));
+        queries.put("findDueBetween", () -> borrowRepository.findDueBetween(borrowed, now, now.plusDays(1)));
+        queries.put("findDueSoonUnreminded", () -> borrowRepository.findDueSoonUnreminded(borrowed, now, now.plusDays(3), 0L, PAGE));
+        queries.put("findIdsUpdatedAt", () -> borrowRepository.findIdsUpdatedAt(IDS, late, now));
+        queries.put("findOutstandingAfter", () -> borrowRepository.findOutstandingAfter(late, 0L, PAGE));
+        queries.put("findAllByOrderByIdDesc", () -> borrowRepository.findAllByOrderByIdDesc(PAGE));
+        queries.put("findArchivableBorrowIds", () -> borrowRepository.findArchivableBorrowIds(
+                List.of(Borrow.BorrowStatus.RETURNED, late), now, PAGE));
+        queries.put("BorrowArchiveRepository.findByUserId", () -> borrowArchiveRepository.findByUserId(3L));
+        queries.put("findByBorrowId", () -> borrowFineRepository.findByBorrowId(11L));
+        queries.put("findByBorrowIdIn", () -> borrowFineRepository.findByBorrowIdIn(IDS));
+        queries.put("findByBorrowIdAndReason", () -> borrowFineRepository.findByBorrowIdAndReason(11L, BorrowFine.FineReason.LATE));
+        queries.put("findByBorrowIdInAndReason", () -> borrowFineRepository.findByBorrowIdInAndReason(IDS, BorrowFine.FineReason.LATE));
+        queries.put("sumAmountsByBorrowIds", () -> borrowFineRepository.sumAmountsByBorrowIds(IDS));
+        queries.put("BorrowFineRepository.findByUserId", () -> borrowFineRepository.findByUserId(3L));
+        queries.put("findByUserIdAndPaid", () -> borrowFineRepository.findByUserIdAndPaid(3L, false));
+        queries.put("sumUnpaidAmountByUserId", () -> borrowFineRepository.sumUnpaidAmountByUserId(3L));
+        queries.put("findFineDetailsByUserIdAndPaid", () -> borrowFineRepository.findFineDetailsByUserIdAndPaid(3L, false));
+        queries.put("BorrowEventLog.readAfter", () -> borrowEventLog.readAfter(250, Duration.ofSeconds(5), 100));
+        queries.put("UserHistoryProjection.findByUser", () -> userHistoryProjection.findByUser(3L));
+        queries.put("BorrowStatsService.rollUpDay", () -> borrowStatsService.rollUpDay(LocalDate.now()));
+        queries.put("BorrowStatsService.getStats", () -> borrowStatsService.getStats(LocalDate.now(), LocalDate.now(), "day"));
+        return queries;
+    }
+
+    @BeforeEach
+    void populateTables() {
+        List<Object[]> borrows = new ArrayList<>();
+        List<Object[]> fines = new ArrayList<>();
+        for (int i = 1; i <= 500; i++) {
+            borrows.add(new Object[] { (long) i % 50, (long) i % 40, i % 3 == 0 ? "BORROWED" : "RETURNED" });
+            fines.add(new Object[] { (long) i, (long) i % 50, i % 4 == 0 ? "LOST" : "LATE", i % 2 == 0 });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO borrows (user_id, book_id, borrow_date, due_date, status) "
+                + "VALUES (?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, ?)", borrows);
+        jdbcTemplate.batchUpdate("INSERT INTO borrow_fines (borrow_id, user_id, amount, reason, paid) "
+                + "VALUES (?, ?, 10000, ?, ?)", fines);
+    }
+
+    @TestFactory
+    Stream<DynamicTest> queriesUseAnIndex() {
+        return queries().entrySet().stream()
+                .map(query -> DynamicTest.dynamicTest(query.getKey(), () -> assertUsesIndexes(query.getKey(), query.getValue())));
+    }
+
+    private void assertUsesIndexes(String name, Runnable query) throws Throwable {
+        List<StatementRecordingDriver.RecordedStatement> statements = StatementRecordingDriver.record(query);
+        assertThat(statements).as("statements sent by %s", name).isNotEmpty();
+        try (Connection connection = dataSource.getConnection()) {
+            for (StatementRecordingDriver.RecordedStatement statement : statements) {
+                assertThat(String.join("\n", statement.explain(connection)))
+                        .as("plan for %s: %s", name, statement.sql())
+                        .doesNotContainIgnoringCase("tableScan");
+            }
+        }
+    }
+}
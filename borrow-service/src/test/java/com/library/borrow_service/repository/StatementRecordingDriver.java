@@ -0,0 +1,153 @@
+package com.library.borrow_service.repository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+/**
+ * H2 driver that records, on the thread running {@link #record}, each prepared statement the
+ * application executes together with the parameters bound to it, so tests can EXPLAIN exactly
+ * the SQL that JPA and the JDBC templates send.
+ */
+public class StatementRecordingDriver implements Driver {
+
+    private static final Driver H2 = new org.h2.Driver();
+    private static final Set<String> EXECUTE_METHODS = Set.of("execute", "executeQuery", "executeUpdate", "executeLargeUpdate");
+    private static final ThreadLocal<List<RecordedStatement>> RECORDING = new ThreadLocal<>();
+
+    public static List<RecordedStatement> record(Runnable action) {
+        List<RecordedStatement> statements = new ArrayList<>();
+        RECORDING.set(statements);
+        try {
+            action.run();
+        } finally {
+            RECORDING.remove();
+        }
+        return statements;
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+        Connection connection = H2.connect(url, info);
+        return connection != null ? proxy(Connection.class, connection, new ConnectionHandler(connection)) : null;
+    }
+
+    @Override
+    public boolean acceptsURL(String url) throws SQLException {
+        return H2.acceptsURL(url);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) throws SQLException {
+        return H2.getPropertyInfo(url, info);
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return H2.getMajorVersion();
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return H2.getMinorVersion();
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return H2.jdbcCompliant();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return H2.getParentLogger();
+    }
+
+    private static <T> T proxy(Class<T> type, T target, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // A statement as executed: its SQL and the setter calls that bound its parameters, in index order
+    public record RecordedStatement(String sql, List<Binding> bindings) {
+
+        public List<String> explain(Connection connection) throws Throwable {
+            try (PreparedStatement explain = connection.prepareStatement("EXPLAIN " + sql)) {
+                for (Binding binding : bindings) {
+                    invoke(explain, binding.setter(), binding.args());
+                }
+                List<String> plan = new ArrayList<>();
+                try (ResultSet rows = explain.executeQuery()) {
+                    while (rows.next()) {
+                        plan.add(rows.getString(1));
+                    }
+                }
+                return plan;
+            }
+        }
+    }
+
+    public record Binding(Method setter, Object[] args) {
+    }
+
+    private record ConnectionHandler(Connection connection) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = StatementRecordingDriver.invoke(connection, method, args);
+            if (method.getName().equals("prepareStatement") && result instanceof PreparedStatement statement) {
+                return StatementRecordingDriver.proxy(PreparedStatement.class, statement,
+                        new StatementHandler(statement, (String) args[0]));
+            }
+            return result;
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+
+        private final PreparedStatement statement;
+        private final String sql;
+        private final Map<Integer, Binding> bindings = new TreeMap<>();
+
+        StatementHandler(PreparedStatement statement, String sql) {
+            this.statement = statement;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                bindings.put(index, new Binding(method, args.clone()));
+            } else if (method.getName().equals("clearParameters")) {
+                bindings.clear();
+            } else if (EXECUTE_METHODS.contains(method.getName()) && (args == null || args.length == 0)) {
+                List<RecordedStatement> recording = RECORDING.get();
+                if (recording != null) {
+                    recording.add(new RecordedStatement(sql, List.copyOf(bindings.values())));
+                }
+            }
+            return StatementRecordingDriver.invoke(statement, method, args);
+        }
+    }
+}
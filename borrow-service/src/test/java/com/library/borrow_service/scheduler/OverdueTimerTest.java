@@ -0,0 +1,70 @@
+package com.library.borrow_service.scheduler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.library.borrow_service.entity.Borrow;
+import com.library.borrow_service.repository.BorrowRepository;
+
+/**
+ * The timer window holds only loans not yet due, and a loan in it flips to overdue
+ * shortly after its due date without waiting for the hourly run.
+ */
+@SpringBootTest
+class OverdueTimerTest {
+
+    private static final Long USER_ID = 9101L;
+    private static final Long BOOK_ID = 9102L;
+
+    @Autowired
+    private OverdueTimer overdueTimer;
+
+    @Autowired
+    private BorrowRepository borrowRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void loadsOnlyLoansNotYetDueAndFlipsThemWhenDue() throws InterruptedException {
+        LocalDateTime now = LocalDateTime.now();
+        // Saved beyond the horizon, then moved into the past behind the entity listener's back,
+        // like a backlog that built up while the service was down
+        Borrow pastDue = saveLoan(now.plusDays(30));
+        jdbcTemplate.update("UPDATE borrows SET due_date = ? WHERE id = ?", now.minusDays(2), pastDue.getId());
+        Borrow dueSoon = saveLoan(now.plusSeconds(2));
+        overdueTimer.cancel(dueSoon.getId());
+
+        overdueTimer.loadUpcoming();
+
+        assertThat(overdueTimer.isScheduled(pastDue.getId())).isFalse();
+        assertThat(overdueTimer.isScheduled(dueSoon.getId())).isTrue();
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (status(dueSoon) == Borrow.BorrowStatus.BORROWED && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertThat(status(dueSoon)).isEqualTo(Borrow.BorrowStatus.LATE_RETURNED);
+        assertThat(status(pastDue)).isEqualTo(Borrow.BorrowStatus.BORROWED);
+    }
+
+    private Borrow saveLoan(LocalDateTime dueDate) {
+        Borrow borrow = new Borrow();
+        borrow.setUserId(USER_ID);
+        borrow.setBookId(BOOK_ID);
+        borrow.setBorrowDate(LocalDateTime.now().minusDays(10));
+        borrow.setDueDate(dueDate);
+        borrow.setStatus(Borrow.BorrowStatus.BORROWED);
+        return borrowRepository.save(borrow);
+    }
+
+    private Borrow.BorrowStatus status(Borrow borrow) {
+        return borrowRepository.findById(borrow.getId()).orElseThrow().getStatus();
+    }
+}
@@ -0,0 +1,98 @@
+package com.library.borrow_service.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import com.library.borrow_service.dto.BorrowDTO;
+import com.library.borrow_service.scheduler.OverdueTimer;
+
+/**
+ * Old completed loans move to borrows_archive in copy-then-delete batches, and stay visible to
+ * the full user history and to the daily rollup once they are there.
+ */
+@SpringBootTest(properties = { "borrow.archive.batch-size=2", "borrow.archive.cron=-",
+        "spring.datasource.url=jdbc:h2:mem:archiver;MODE=MySQL;DATABASE_TO_LOWER=TRUE" })
+class BorrowArchiverTest {
+
+    private static final Long USER_ID = 9801L;
+    private static final Long BOOK_ID = 9810L;
+    private static final LocalDateTime BORROWED_AT = LocalDateTime.of(2002, 1, 10, 9, 0);
+    private static final LocalDateTime LATE_DUE_AT = LocalDateTime.of(2002, 1, 11, 9, 0);
+    private static final LocalDateTime RETURNED_AT = LocalDateTime.of(2002, 1, 12, 11, 0);
+
+    @Autowired
+    private BorrowArchiver borrowArchiver;
+
+    @Autowired
+    private BorrowService borrowService;
+
+    @Autowired
+    private BorrowStatsService borrowStatsService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // The loan still out below is past due; the real timer would act on it in the background
+    @MockitoBean
+    private OverdueTimer overdueTimer;
+
+    @Test
+    void movesOldCompletedLoansAndKeepsThemInHistoryAndStats() {
+        List<Long> oldReturns = new ArrayList<>();
+        oldReturns.add(insertLoan("LATE_RETURNED", LATE_DUE_AT, RETURNED_AT));
+        for (int i = 0; i < 4; i++) {
+            oldReturns.add(insertLoan("RETURNED", BORROWED_AT.plusDays(14), RETURNED_AT));
+        }
+        Long stillOut = insertLoan("LATE_RETURNED", LATE_DUE_AT, null);
+        Long recentReturn = insertLoan("RETURNED", LocalDateTime.now().plusDays(10), LocalDateTime.now().minusDays(3));
+
+        // Five old loans of this user in batches of two, plus whatever the seed data has
+        assertThat(borrowArchiver.archiveCompletedBorrows()).isGreaterThanOrEqualTo(5);
+
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM borrows WHERE user_id = ? ORDER BY id", Long.class, USER_ID))
+                .containsExactly(stillOut, recentReturn);
+        assertThat(jdbcTemplate.queryForList(
+                "SELECT id FROM borrows_archive WHERE user_id = ? AND archived_at IS NOT NULL ORDER BY id", Long.class, USER_ID))
+                .containsExactlyElementsOf(oldReturns);
+
+        assertThat(borrowService.getBorrowsByUser(USER_ID, false))
+                .extracting(BorrowDTO::getId)
+                .containsExactlyInAnyOrder(stillOut, recentReturn);
+        assertThat(borrowService.getBorrowsByUser(USER_ID, true))
+                .extracting(BorrowDTO::getId)
+                .containsAll(oldReturns)
+                .contains(stillOut, recentReturn)
+                .hasSize(7);
+
+        // All seven were borrowed the same day; the five returns and the overdue late return are archived
+        for (LocalDateTime day : List.of(BORROWED_AT, LATE_DUE_AT, RETURNED_AT)) {
+            borrowStatsService.rollUpDay(day.toLocalDate());
+        }
+        assertThat(statFor(BORROWED_AT.toLocalDate(), "loans")).isEqualTo(7);
+        assertThat(statFor(LATE_DUE_AT.toLocalDate(), "overdue")).isEqualTo(2);
+        assertThat(statFor(RETURNED_AT.toLocalDate(), "returns")).isEqualTo(5);
+    }
+
+    private Long insertLoan(String status, LocalDateTime dueDate, LocalDateTime returnDate) {
+        jdbcTemplate.update("INSERT INTO borrows (user_id, book_id, borrow_date, due_date, return_date, status) "
+                + "VALUES (?, ?, ?, ?, ?, ?)", USER_ID, BOOK_ID, BORROWED_AT, dueDate, returnDate, status);
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM borrows", Long.class);
+    }
+
+    private int statFor(LocalDate day, String column) {
+        List<Integer> values = jdbcTemplate.queryForList(
+                "SELECT " + column + " FROM borrow_daily_stats WHERE stat_date = ? AND book_id = ?",
+                Integer.class, day, BOOK_ID);
+        return values.isEmpty() ? 0 : values.get(0);
+    }
+}
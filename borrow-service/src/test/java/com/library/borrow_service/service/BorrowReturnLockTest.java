@@ -0,0 +1,127 @@
+package com.library.borrow_service.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.library.borrow_service.dto.BorrowFineDTO;
+import com.library.borrow_service.entity.Borrow;
+import com.library.borrow_service.entity.BorrowFine;
+import com.library.borrow_service.repository.BorrowFineRepository;
+import com.library.borrow_service.repository.BorrowRepository;
+import com.library.borrow_service.scheduler.OverdueTimer;
+
+/**
+ * Late returns, lost books and fines lock or unlock the user through user-service only after the
+ * fine change has committed, never from inside the transaction.
+ */
+@SpringBootTest
+class BorrowReturnLockTest {
+
+    private static final Long USER_ID = 9201L;
+    private static final Long FINED_USER_ID = 9203L;
+
+    @Autowired
+    private BorrowService borrowService;
+
+    @Autowired
+    private BorrowRepository borrowRepository;
+
+    @Autowired
+    private BorrowFineRepository borrowFineRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private BorrowLockService borrowLockService;
+
+    // The real timer would flip the past-due loans below to overdue before they are returned
+    @MockitoBean
+    private OverdueTimer overdueTimer;
+
+    @Test
+    void lateReturnsLockTheUserAfterCommit() {
+        List<String> observed = new ArrayList<>();
+        Thread testThread = Thread.currentThread();
+        // The hourly overdue sweep starts with the context and may lock the same user from its own thread
+        doAnswer(invocation -> {
+            Collection<Long> userIds = invocation.getArgument(0);
+            if (!userIds.isEmpty() && Thread.currentThread() == testThread) {
+                observed.add("transaction active: " + TransactionSynchronizationManager.isActualTransactionActive());
+                observed.add("fines committed: " + jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM borrow_fines WHERE user_id = ?", Integer.class, USER_ID));
+            }
+            return null;
+        }).when(borrowLockService).lockUsers(anyCollection());
+
+        Borrow single = saveLateLoan();
+        borrowService.returnBook(single.getId());
+        Borrow first = saveLateLoan();
+        Borrow second = saveLateLoan();
+        borrowService.returnBooks(List.of(first.getId(), second.getId()));
+
+        assertThat(observed).containsExactly(
+                "transaction active: false", "fines committed: 1",
+                "transaction active: false", "fines committed: 3");
+    }
+
+    @Test
+    void fineChangesLockAndUnlockTheUserAfterCommit() {
+        List<String> observed = new ArrayList<>();
+        doAnswer(invocation -> {
+            observed.add(lockCallState("lock"));
+            return null;
+        }).when(borrowLockService).lockUser(FINED_USER_ID);
+        doAnswer(invocation -> {
+            observed.add(lockCallState("unlock"));
+            return null;
+        }).when(borrowLockService).unlockUser(FINED_USER_ID);
+
+        Borrow borrow = saveLoan(FINED_USER_ID, LocalDateTime.now().plusDays(7));
+        borrowService.reportLostBook(borrow.getId());
+        BorrowFineDTO damage = borrowService.createFine(
+                borrow.getId(), FINED_USER_ID, new BigDecimal("3.00"), BorrowFine.FineReason.DAMAGE);
+        borrowService.payFine(damage.getId());
+        borrowFineRepository.findByBorrowIdAndReason(borrow.getId(), BorrowFine.FineReason.LOST)
+                .ifPresent(lost -> borrowService.payFine(lost.getId()));
+
+        assertThat(observed).containsExactly(
+                "lock, transaction active: false, unpaid fines: 1",
+                "lock, transaction active: false, unpaid fines: 2",
+                "unlock, transaction active: false, unpaid fines: 0");
+    }
+
+    private String lockCallState(String call) {
+        return call + ", transaction active: " + TransactionSynchronizationManager.isActualTransactionActive()
+                + ", unpaid fines: " + jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM borrow_fines WHERE user_id = ? AND paid = FALSE", Integer.class, FINED_USER_ID);
+    }
+
+    private Borrow saveLateLoan() {
+        return saveLoan(USER_ID, LocalDateTime.now().minusDays(3));
+    }
+
+    private Borrow saveLoan(Long userId, LocalDateTime dueDate) {
+        Borrow borrow = new Borrow();
+        borrow.setUserId(userId);
+        borrow.setBookId(9202L);
+        borrow.setBorrowDate(LocalDateTime.now().minusDays(20));
+        borrow.setDueDate(dueDate);
+        borrow.setStatus(Borrow.BorrowStatus.BORROWED);
+        return borrowRepository.save(borrow);
+    }
+}
@@ -0,0 +1,55 @@
+package com.library.borrow_service.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.ConnectException;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CheckoutValidatorTest {
+
+    private final RestTemplate restTemplate = mock(RestTemplate.class);
+    private final CheckoutValidator checkoutValidator =
+            new CheckoutValidator(restTemplate, new SimpleMeterRegistry(),
+                    "http://user-service", "http://book-service", 200, 1000);
+
+    @Test
+    void aSlowUpstreamTimesOutOnItsOwnDeadlineWith504() {
+        when(restTemplate.getForEntity(contains("/users/"), any())).thenAnswer(invocation -> {
+            Thread.sleep(5000);
+            return ResponseEntity.ok().build();
+        });
+        when(restTemplate.getForEntity(contains("/books/"), any())).thenReturn(ResponseEntity.ok().build());
+
+        assertThatThrownBy(() -> checkoutValidator.validateUserAndBook(1L, 2L))
+                .isInstanceOfSatisfying(ResponseStatusException.class, e -> {
+                    assertThat(e.getStatusCode()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+                    assertThat(e.getReason()).isEqualTo("user-service did not answer within 200 ms");
+                });
+    }
+
+    @Test
+    void anUnreachableUpstreamIs503() {
+        when(restTemplate.getForEntity(contains("/users/"), any())).thenReturn(ResponseEntity.ok().build());
+        when(restTemplate.getForEntity(contains("/books/"), any()))
+                .thenThrow(new ResourceAccessException("I/O error", new ConnectException("Connection refused")));
+
+        assertThatThrownBy(() -> checkoutValidator.validateUserAndBook(1L, 2L))
+                .isInstanceOfSatisfying(ResponseStatusException.class, e -> {
+                    assertThat(e.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+                    assertThat(e.getReason()).isEqualTo("book-service is unavailable");
+                });
+    }
+}
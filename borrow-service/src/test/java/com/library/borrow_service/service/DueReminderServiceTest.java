@@ -0,0 +1,86 @@
+package com.library.borrow_service.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.web.client.RestTemplate;
+
+import com.library.borrow_service.dto.DueSoonLoanDTO;
+import com.library.borrow_service.entity.Borrow;
+import com.library.borrow_service.repository.BorrowRepository;
+
+/**
+ * Chunks of three loans over users with two loans each: every chunk cuts a user in half, who
+ * must still get a single reminder covering both loans.
+ */
+@SpringBootTest(properties = { "borrow.reminders.chunk-size=3", "borrow.reminders.rate-per-second=1000",
+        "spring.datasource.url=jdbc:h2:mem:reminders;MODE=MySQL;DATABASE_TO_LOWER=TRUE" })
+class DueReminderServiceTest {
+
+    private static final List<Long> USERS = List.of(9301L, 9302L, 9303L, 9304L);
+
+    @Autowired
+    private DueReminderService dueReminderService;
+
+    @Autowired
+    private BorrowRepository borrowRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private RestTemplate restTemplate;
+
+    @MockitoBean
+    private BookTitleService bookTitleService;
+
+    @Test
+    void eachUserGetsOneReminderForAllTheirLoansAcrossChunks() {
+        for (Long userId : USERS) {
+            saveLoanDueIn(userId, 1);
+            saveLoanDueIn(userId, 2);
+        }
+        when(bookTitleService.getBookTitles(anyCollection())).thenReturn(Map.of());
+        Map<String, List<DueSoonLoanDTO>> sent = new ConcurrentHashMap<>();
+        doAnswer(invocation -> {
+            sent.put(invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+        }).when(restTemplate).postForObject(anyString(), any(), eq(Object.class));
+
+        assertThat(dueReminderService.sendDueSoonReminders()).isEqualTo(USERS.size());
+
+        for (Long userId : USERS) {
+            assertThat(sent.get("http://localhost:8085/api/notifications/due-soon-reminder/" + userId))
+                    .as("reminder for user %s", userId)
+                    .hasSize(2);
+        }
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM borrows WHERE user_id BETWEEN ? AND ? "
+                + "AND due_reminder_for IS NULL", Integer.class, USERS.get(0), USERS.get(USERS.size() - 1))).isZero();
+        assertThat(dueReminderService.sendDueSoonReminders()).isZero();
+    }
+
+    private void saveLoanDueIn(Long userId, int days) {
+        Borrow borrow = new Borrow();
+        borrow.setUserId(userId);
+        borrow.setBookId(9300L + days);
+        borrow.setBorrowDate(LocalDateTime.now());
+        borrow.setDueDate(LocalDateTime.now().plusDays(days));
+        borrow.setStatus(Borrow.BorrowStatus.BORROWED);
+        borrowRepository.save(borrow);
+    }
+}
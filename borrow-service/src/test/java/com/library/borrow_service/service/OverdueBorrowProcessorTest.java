@@ -0,0 +1,99 @@
+package com.library.borrow_service.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.library.borrow_service.entity.Borrow;
+import com.library.borrow_service.repository.BorrowFineRepository;
+import com.library.borrow_service.repository.BorrowRepository;
+import com.library.borrow_service.scheduler.OverdueTimer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Every writer of a late fine upserts against the unique (borrow_id, reason) index, so the overdue
+ * refresh and a return racing on the same loan end up with one LATE fine, not two.
+ */
+@SpringBootTest
+class OverdueBorrowProcessorTest {
+
+    private static final Long USER_ID = 9501L;
+
+    @Autowired
+    private OverdueBorrowProcessor overdueBorrowProcessor;
+
+    @Autowired
+    private BorrowRepository borrowRepository;
+
+    @Autowired
+    private BorrowFineRepository borrowFineRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockitoBean
+    private BorrowLockService borrowLockService;
+
+    // The real timer would flip the past-due loan below on its own schedule
+    @MockitoBean
+    private OverdueTimer overdueTimer;
+
+    @Test
+    void lateFineWritersShareOneRowPerBorrow() {
+        Borrow borrow = saveLateLoan(4);
+        double refreshedBefore = meterRegistry.counter("borrow.overdue.borrows", "job", "refresh-fines").count();
+
+        overdueBorrowProcessor.checkAndLockOverdueUsers();
+        overdueBorrowProcessor.refreshOutstandingFines();
+        // What returnBook does when it read no fine just before the refresh inserted one
+        transactionTemplate.executeWithoutResult(status -> borrowFineRepository.upsertLateFine(
+                borrow.getId(), USER_ID, new BigDecimal("5.00"), LocalDateTime.now()));
+
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM borrow_fines WHERE borrow_id = ? AND reason = 'LATE'", Integer.class, borrow.getId()))
+                .isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT amount FROM borrow_fines WHERE borrow_id = ?", BigDecimal.class, borrow.getId()))
+                .isEqualByComparingTo("5.00");
+        assertThat(meterRegistry.counter("borrow.overdue.borrows", "job", "refresh-fines").count())
+                .isGreaterThan(refreshedBefore);
+        assertThat(meterRegistry.timer("borrow.overdue.chunk", "job", "refresh-fines").count()).isPositive();
+    }
+
+    @Test
+    void plainDuplicateInsertIsRejected() {
+        Borrow borrow = saveLateLoan(2);
+        String insert = "INSERT INTO borrow_fines (borrow_id, user_id, amount, reason, paid) VALUES (?, ?, 1, 'LATE', FALSE)";
+        jdbcTemplate.update(insert, borrow.getId(), USER_ID);
+
+        assertThatThrownBy(() -> jdbcTemplate.update(insert, borrow.getId(), USER_ID))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    private Borrow saveLateLoan(int daysLate) {
+        Borrow borrow = new Borrow();
+        borrow.setUserId(USER_ID);
+        borrow.setBookId(9502L);
+        borrow.setBorrowDate(LocalDateTime.now().minusDays(20));
+        borrow.setDueDate(LocalDateTime.now().minusDays(daysLate).minusHours(1));
+        borrow.setStatus(Borrow.BorrowStatus.BORROWED);
+        return borrowRepository.save(borrow);
+    }
+}
@@ -24,7 +24,7 @@ const Dashboard = () => {
         const [usersRes, booksRes, borrowsRes, finesRes] = await Promise.allSettled([
           axios.get('http://localhost:8083/users?role=USER'), // User service
           axios.get('http://localhost:8082/books'), // Book service
-          axios.get('http://localhost:8086/borrows'), // Borrow service
+          axios.get('http://localhost:8086/borrows/count'), // Borrow service
           axios.get('http://localhost:8086/fines') // Fine service
         ]);
 
@@ -38,7 +38,7 @@ const Dashboard = () => {
           : 0;
         
         const totalBorrows = borrowsRes.status === 'fulfilled' 
-          ? borrowsRes.value.data.length 
+          ? borrowsRes.value.data.count 
           : 0;
         
         const totalFines = finesRes.status === 'fulfilled' 
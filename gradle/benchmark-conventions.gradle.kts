@@ -0,0 +1,45 @@
+// Benchmark and load-test tasks shared by the services. Each service is also a standalone build,
+// so they apply this file themselves: apply(from = "../gradle/benchmark-conventions.gradle.kts")
+//
+// "benchmark" runs tests tagged benchmark: hand-rolled timing loops that print the best of a few
+// rounds. "loadTest" runs tests tagged load: a whole service driven over HTTP against stub or
+// simulated upstreams, printing throughput. Neither asserts on timings, and neither is JMH-grade:
+// there is no forked JVM per benchmark, no guard against dead-code elimination, no error bars,
+// and they share the machine with Gradle and the service under test. Compare numbers from the
+// same machine before and after a change; do not quote them as absolute figures.
+
+val testSourceSet = the<SourceSetContainer>()["test"]
+
+tasks.named<Test>("test") {
+    useJUnitPlatform {
+        excludeTags("load", "benchmark")
+    }
+}
+
+tasks.register<Test>("benchmark") {
+    description = "Runs the microbenchmarks (not JMH-grade; see gradle/benchmark-conventions.gradle.kts)."
+    group = "verification"
+    testClassesDirs = testSourceSet.output.classesDirs
+    classpath = testSourceSet.runtimeClasspath
+    useJUnitPlatform {
+        includeTags("benchmark")
+    }
+    testLogging {
+        showStandardStreams = true
+    }
+}
+
+tasks.register<Test>("loadTest") {
+    description = "Runs the load tests (not JMH-grade; see gradle/benchmark-conventions.gradle.kts)."
+    group = "verification"
+    testClassesDirs = testSourceSet.output.classesDirs
+    classpath = testSourceSet.runtimeClasspath
+    useJUnitPlatform {
+        includeTags("load")
+    }
+    // Print a stack trace whenever a virtual thread blocks while pinned to its carrier
+    jvmArgs("-Djdk.tracePinnedThreads=short")
+    testLogging {
+        showStandardStreams = true
+    }
+}
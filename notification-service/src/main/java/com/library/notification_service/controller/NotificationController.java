@@ -1,13 +1,17 @@
 package com.library.notification_service.controller;
 
+import java.util.List;
+
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.library.notification_service.dto.DueSoonLoanDTO;
 import com.library.notification_service.dto.NotificationDTO;
 import com.library.notification_service.service.NotificationService;
 
@@ -56,6 +60,24 @@ public class NotificationController {
         return ResponseEntity.ok(notification);
     }
 
+    // Called by borrow-service's daily job with every loan of the user due soon, so one email covers them all
+    @PostMapping("/due-soon-reminder/{userId}")
+    public ResponseEntity<NotificationDTO> sendDueSoonReminderNotification(
+            @PathVariable Long userId,
+            @RequestBody List<DueSoonLoanDTO> loans) {
+
+        if (loans == null || loans.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        NotificationDTO notification = notificationService.createDueSoonReminderNotification(userId, loans);
+
+        // Automatically send the notification
+        notificationService.sendNotification(notification.getId());
+
+        return ResponseEntity.ok(notification);
+    }
+
     @PostMapping("/fine-payment-reminder/{fineId}")
     public ResponseEntity<NotificationDTO> sendFinePaymentReminderNotification(@PathVariable Long fineId) {
         try {
@@ -1,5 +1,6 @@
 package com.library.notification_service.service;
 
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -10,6 +11,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.client.RestTemplate;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.notification_service.dto.DueSoonLoanDTO;
 import com.library.notification_service.dto.NotificationDTO;
 import com.library.notification_service.entity.Notification;
 import com.library.notification_service.repository.NotificationRepository;
@@ -21,11 +26,16 @@ public class NotificationService {
     private final NotificationRepository notificationRepository;
     private final JavaMailSender mailSender;
     private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
 
-    public NotificationService(NotificationRepository notificationRepository, JavaMailSender mailSender, RestTemplate restTemplate) {
+    private static final DateTimeFormatter DUE_DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    public NotificationService(NotificationRepository notificationRepository, JavaMailSender mailSender,
+                               RestTemplate restTemplate, ObjectMapper objectMapper) {
         this.notificationRepository = notificationRepository;
         this.mailSender = mailSender;
         this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
     }
 
     // Notification operations
@@ -186,6 +196,17 @@ public class NotificationService {
         return createNotification(userId, Notification.NotificationType.EMAIL, template, payload);
     }
 
+    // One reminder covering every loan of the user that falls due soon
+    public NotificationDTO createDueSoonReminderNotification(Long userId, List<DueSoonLoanDTO> loans) {
+        String template = "BOOK_DUE_SOON";
+        try {
+            String payload = objectMapper.writeValueAsString(loans);
+            return createNotification(userId, Notification.NotificationType.EMAIL, template, payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid due-soon loans: " + e.getMessage());
+        }
+    }
+
     // Helper methods
     private boolean simulateSendNotification(Notification notification) {
         // Send actual email based on notification type and template
@@ -244,6 +265,8 @@ public class NotificationService {
                 return "Fine Payment Successful";
             case "FINE_PAYMENT_REMINDER":
                 return "Nhắc nhở thanh toán phí phạt";
+            case "BOOK_DUE_SOON":
+                return "Nhắc nhở sách sắp đến hạn trả";
             default:
                 return "Library Notification";
         }
@@ -259,6 +282,9 @@ public class NotificationService {
                 return "Chào bạn,\n\nThanh toán phí phạt của bạn đã được xử lý thành công.\n\nTài khoản của bạn đã được mở khóa. Cảm ơn bạn đã sử dụng hệ thống thư viện của chúng tôi.";
             case "FINE_PAYMENT_REMINDER":
                 return "Chào bạn,\n\nBạn còn có phí phạt chưa thanh toán trong hệ thống thư viện.\n\nVui lòng thanh toán phí phạt để có thể tiếp tục mượn sách. Nếu bạn đã thanh toán, vui lòng bỏ qua email này.\n\nCảm ơn bạn đã sử dụng hệ thống thư viện của chúng tôi.";
+            case "BOOK_DUE_SOON":
+                return "Chào bạn,\n\nCác sách bạn mượn sau sắp đến hạn trả:\n\n" + getDueSoonLoanLines(notification)
+                        + "\nVui lòng trả hoặc gia hạn sách trước ngày hạn để tránh phí phạt.\n\nCảm ơn bạn đã sử dụng hệ thống thư viện của chúng tôi.";
             case "BOOK_BORROWED":
                 return "Chào bạn,\n\nBạn đã mượn sách thành công.\n\nVui lòng trả sách trước ngày hạn.";
             case "BOOK_OVERDUE":
@@ -272,6 +298,21 @@ public class NotificationService {
         }
     }
 
+    private String getDueSoonLoanLines(Notification notification) {
+        try {
+            List<DueSoonLoanDTO> loans = objectMapper.readValue(notification.getPayload(), new TypeReference<List<DueSoonLoanDTO>>() {});
+            StringBuilder lines = new StringBuilder();
+            for (DueSoonLoanDTO loan : loans) {
+                lines.append("- ").append(loan.getBookTitle())
+                        .append(" (hạn trả ").append(loan.getDueDate().format(DUE_DATE_FORMAT)).append(")\n");
+            }
+            return lines.toString();
+        } catch (JsonProcessingException e) {
+            System.err.println("Failed to read due-soon payload for notification " + notification.getId() + ": " + e.getMessage());
+            return "";
+        }
+    }
+
     private NotificationDTO convertToDTO(Notification notification) {
         NotificationDTO dto = new NotificationDTO();
         dto.setId(notification.getId());
@@ -28,6 +28,7 @@ dependencyManagement {
 dependencies {
     implementation("org.springframework.boot:spring-boot-starter-web")
     implementation("org.springframework.boot:spring-boot-starter-data-jpa")
+    implementation("org.springframework.boot:spring-boot-starter-actuator")
     runtimeOnly("com.mysql:mysql-connector-j")
 	implementation("org.springframework.cloud:spring-cloud-starter-openfeign")
     compileOnly("org.projectlombok:lombok")
@@ -41,3 +42,11 @@ dependencies {
 tasks.withType<Test> {
     useJUnitPlatform()
 }
+
+// "benchmark" times the VNPay signing; "loadTest" drives the payment flow and stale-payment
+// reconciliation against the embedded VNPay simulator. The Docker build context only holds this
+// service and skips tests, so it builds without the shared convention.
+val benchmarkConventions = file("../gradle/benchmark-conventions.gradle.kts")
+if (benchmarkConventions.exists()) {
+    apply(from = benchmarkConventions)
+}
@@ -3,9 +3,13 @@ package com.library.payment_service;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 
 @SpringBootApplication
+@EnableScheduling
 public class PaymentServiceApplication {
 
 	public static void main(String[] args) {
@@ -13,8 +17,13 @@ public class PaymentServiceApplication {
 	}
 
 	@Bean
-	public RestTemplate restTemplate() {
-		return new RestTemplate();
+	public RestTemplate restTemplate(@Value("${payment.http.connect-timeout-ms:2000}") int connectTimeoutMillis,
+									 @Value("${payment.http.read-timeout-ms:5000}") int readTimeoutMillis) {
+		// Bounded so an unresponsive notification-service cannot stall the outbox relay
+		SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+		requestFactory.setConnectTimeout(connectTimeoutMillis);
+		requestFactory.setReadTimeout(readTimeoutMillis);
+		return new RestTemplate(requestFactory);
 	}
 
 }
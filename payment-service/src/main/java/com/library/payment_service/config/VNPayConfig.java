@@ -13,6 +13,8 @@ public class VNPayConfig {
     private String payUrl;
     private String returnUrl;
     private String ipnUrl;
+    // Merchant API endpoint for querydr (transaction status) requests
+    private String apiUrl;
     private String currency;
     private String version;
     private String command;
@@ -58,6 +60,14 @@ public class VNPayConfig {
         this.ipnUrl = ipnUrl;
     }
 
+    public String getApiUrl() {
+        return apiUrl;
+    }
+
+    public void setApiUrl(String apiUrl) {
+        this.apiUrl = apiUrl;
+    }
+
     public String getCurrency() {
         return currency;
     }
@@ -14,6 +14,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.library.payment_service.dto.CreatePaymentRequest;
 import com.library.payment_service.dto.PaymentDTO;
+import com.library.payment_service.service.PaymentReconciler;
 import com.library.payment_service.service.PaymentService;
 
 import jakarta.servlet.http.HttpServletRequest;
@@ -24,9 +25,11 @@ import jakarta.servlet.http.HttpServletRequest;
 public class PaymentController {
 
     private final PaymentService paymentService;
+    private final PaymentReconciler paymentReconciler;
 
-    public PaymentController(PaymentService paymentService) {
+    public PaymentController(PaymentService paymentService, PaymentReconciler paymentReconciler) {
         this.paymentService = paymentService;
+        this.paymentReconciler = paymentReconciler;
     }
 
     @PostMapping("/vnpay")
@@ -75,4 +78,14 @@ public class PaymentController {
         List<PaymentDTO> payments = paymentService.getPaymentsByUserId(userId);
         return ResponseEntity.ok(payments);
     }
+
+    // Runs the stale-payment reconciliation now instead of waiting for the schedule
+    @PostMapping("/reconcile")
+    public ResponseEntity<?> reconcile() {
+        PaymentReconciler.Summary summary = paymentReconciler.reconcile();
+        if (summary == null) {
+            return ResponseEntity.status(409).body(Map.of("error", "Reconciliation already running"));
+        }
+        return ResponseEntity.ok(summary);
+    }
 }
@@ -10,11 +10,13 @@ import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
 
 @Entity
-@Table(name = "payments")
+// Serves the reconciliation scan for stale PENDING payments
+@Table(name = "payments", indexes = @Index(name = "idx_payments_status_id", columnList = "status, id"))
 public class Payment {
 
     @Id
@@ -49,6 +51,10 @@ public class Payment {
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
+    // The vnp_CreateDate sent to VNPay; querydr must send it back as vnp_TransactionDate
+    @Column(name = "gateway_create_date", length = 14)
+    private String gatewayCreateDate;
+
     // Constructors
     public Payment() {}
 
@@ -133,6 +139,14 @@ public class Payment {
         this.createdAt = createdAt;
     }
 
+    public String getGatewayCreateDate() {
+        return gatewayCreateDate;
+    }
+
+    public void setGatewayCreateDate(String gatewayCreateDate) {
+        this.gatewayCreateDate = gatewayCreateDate;
+    }
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -0,0 +1,59 @@
+package com.library.payment_service.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.library.payment_service.entity.PaymentOutbox;
+
+@Repository
+public interface PaymentOutboxRepository extends JpaRepository<PaymentOutbox, Long> {
+
+    @Query("SELECT o.id FROM PaymentOutbox o WHERE o.status = :status AND o.nextAttemptAt <= :now ORDER BY o.id")
+    List<Long> findDueIds(@Param("status") PaymentOutbox.OutboxStatus status,
+                          @Param("now") LocalDateTime now,
+                          Pageable pageable);
+
+    // Takes the messages still due; a row another relay claimed first has moved its next attempt past now
+    @Modifying
+    @Query("UPDATE PaymentOutbox o SET o.claimedBy = :token, o.nextAttemptAt = :leaseUntil "
+            + "WHERE o.id IN :ids AND o.status = :status AND o.nextAttemptAt <= :now")
+    int claim(@Param("ids") Collection<Long> ids,
+              @Param("token") String token,
+              @Param("status") PaymentOutbox.OutboxStatus status,
+              @Param("now") LocalDateTime now,
+              @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    List<PaymentOutbox> findByClaimedByOrderById(String claimedBy);
+
+    // Only rows still claimed by token: once a lease has run out another relay may own the message
+    @Modifying
+    @Query("UPDATE PaymentOutbox o SET o.status = :status, o.sentAt = :sentAt, o.attempts = o.attempts + 1, "
+            + "o.claimedBy = NULL, o.lastError = NULL WHERE o.id IN :ids AND o.claimedBy = :token")
+    int markSent(@Param("ids") Collection<Long> ids,
+                 @Param("token") String token,
+                 @Param("status") PaymentOutbox.OutboxStatus status,
+                 @Param("sentAt") LocalDateTime sentAt);
+
+    @Modifying
+    @Query("UPDATE PaymentOutbox o SET o.status = :status, o.attempts = :attempts, o.nextAttemptAt = :nextAttemptAt, "
+            + "o.lastError = :lastError, o.claimedBy = NULL WHERE o.id = :id AND o.claimedBy = :token")
+    int reschedule(@Param("id") Long id,
+                   @Param("token") String token,
+                   @Param("status") PaymentOutbox.OutboxStatus status,
+                   @Param("attempts") int attempts,
+                   @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                   @Param("lastError") String lastError);
+
+    long countByStatus(PaymentOutbox.OutboxStatus status);
+
+    @Query("SELECT MIN(o.createdAt) FROM PaymentOutbox o WHERE o.status = :status")
+    LocalDateTime findOldestCreatedAt(@Param("status") PaymentOutbox.OutboxStatus status);
+}
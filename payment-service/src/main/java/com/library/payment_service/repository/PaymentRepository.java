@@ -1,8 +1,14 @@
 package com.library.payment_service.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.library.payment_service.entity.Payment;
@@ -11,4 +17,22 @@ import com.library.payment_service.entity.Payment;
 public interface PaymentRepository extends JpaRepository<Payment, String> {
     List<Payment> findByUserId(Long userId);
     List<Payment> findByReferenceId(Long referenceId);
+
+    // Keyset page of payments still in status, created before the cutoff, ordered by id
+    @Query("SELECT p FROM Payment p WHERE p.status = :status AND p.method = :method "
+            + "AND p.createdAt < :createdBefore AND p.id > :afterId ORDER BY p.id")
+    List<Payment> findStale(@Param("status") Payment.PaymentStatus status,
+                            @Param("method") Payment.PaymentMethod method,
+                            @Param("createdBefore") LocalDateTime createdBefore,
+                            @Param("afterId") String afterId,
+                            Pageable pageable);
+
+    // Settles a payment only while it is still PENDING; returns 0 when another callback got there first
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Payment p SET p.status = :status, p.transactionId = :transactionId "
+            + "WHERE p.id = :id AND p.status = :pending")
+    int completePending(@Param("id") String id,
+                        @Param("status") Payment.PaymentStatus status,
+                        @Param("transactionId") String transactionId,
+                        @Param("pending") Payment.PaymentStatus pending);
 }
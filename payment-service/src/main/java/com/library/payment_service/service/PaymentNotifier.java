@@ -0,0 +1,45 @@
+package com.library.payment_service.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import com.library.payment_service.entity.Payment;
+import com.library.payment_service.entity.PaymentOutbox;
+
+/**
+ * Delivers one payment-success notification to notification-service. Failures are thrown to
+ * PaymentOutboxRelay, which schedules the retry.
+ */
+@Component
+public class PaymentNotifier {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentNotifier.class);
+
+    private final RestTemplate restTemplate;
+
+    public PaymentNotifier(RestTemplate restTemplate) {
+        this.restTemplate = restTemplate;
+    }
+
+    public void sendPaymentSuccessEmail(PaymentOutbox message) {
+        log.info("Sending payment success email for payment: {}, type: {}, userId: {}",
+                 message.getPaymentId(), message.getPaymentType(), message.getUserId());
+
+        String endpoint;
+        if (message.getPaymentType() == Payment.PaymentType.BORROW_FEE) {
+            endpoint = "/borrow-payment-success/" + message.getUserId();
+        } else {
+            endpoint = "/fine-payment-success/" + message.getUserId();
+        }
+
+        String url = "http://localhost:8085/api/notifications" + endpoint +
+                     "?amount=" + message.getAmount().toString() +
+                     "&paymentMethod=VNPAY" +
+                     "&transactionId=" + message.getPaymentId();
+
+        String response = restTemplate.postForObject(url, null, String.class);
+        log.info("Notification service response for payment {}: {}", message.getPaymentId(), response);
+    }
+}
@@ -0,0 +1,197 @@
+package com.library.payment_service.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.library.payment_service.entity.PaymentOutbox;
+import com.library.payment_service.repository.PaymentOutboxRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Delivers payment_outbox messages to notification-service in batches. A batch is first claimed
+ * with a lease, so relays on several instances never send the same message at once and a relay
+ * that dies mid-batch leaves its messages to be retried once the lease runs out. Batches are
+ * capped so that delivering every message at the HTTP timeouts still fits in the lease, and
+ * outcomes are only written back to rows the relay still holds. A failed delivery is retried
+ * with exponential backoff until the maximum number of attempts.
+ */
+@Service
+public class PaymentOutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentOutboxRelay.class);
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final PaymentOutboxRepository paymentOutboxRepository;
+    private final PaymentNotifier paymentNotifier;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration lease;
+    private final Duration baseBackoff;
+    private final Duration maxBackoff;
+
+    private final Counter sent;
+    private final Counter retried;
+    private final Counter failed;
+    private final Timer deliveryTimer;
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong lagSeconds = new AtomicLong();
+
+    public PaymentOutboxRelay(PaymentOutboxRepository paymentOutboxRepository, PaymentNotifier paymentNotifier,
+                              TransactionTemplate transactionTemplate, MeterRegistry meterRegistry,
+                              @Value("${payment.outbox.batch-size:50}") int batchSize,
+                              @Value("${payment.outbox.max-attempts:10}") int maxAttempts,
+                              @Value("${payment.outbox.lease-ms:60000}") long leaseMillis,
+                              @Value("${payment.outbox.base-backoff-ms:5000}") long baseBackoffMillis,
+                              @Value("${payment.outbox.max-backoff-ms:3600000}") long maxBackoffMillis,
+                              @Value("${payment.http.connect-timeout-ms:2000}") long connectTimeoutMillis,
+                              @Value("${payment.http.read-timeout-ms:5000}") long readTimeoutMillis) {
+        this.paymentOutboxRepository = paymentOutboxRepository;
+        this.paymentNotifier = paymentNotifier;
+        this.transactionTemplate = transactionTemplate;
+        // Each delivery is one HTTP call, so connect plus read timeout is its worst case
+        long worstCaseDeliveryMillis = Math.max(1, connectTimeoutMillis + readTimeoutMillis);
+        this.batchSize = (int) Math.max(1, Math.min(batchSize, leaseMillis / worstCaseDeliveryMillis));
+        if (this.batchSize < batchSize) {
+            log.info("Outbox batch size capped at {} so deliveries of up to {} ms each fit in the {} ms lease",
+                     this.batchSize, worstCaseDeliveryMillis, leaseMillis);
+        }
+        this.maxAttempts = maxAttempts;
+        this.lease = Duration.ofMillis(leaseMillis);
+        this.baseBackoff = Duration.ofMillis(baseBackoffMillis);
+        this.maxBackoff = Duration.ofMillis(maxBackoffMillis);
+
+        this.sent = Counter.builder("payment.outbox.delivered").tag("outcome", "sent")
+                .description("Outbox messages delivered").register(meterRegistry);
+        this.retried = Counter.builder("payment.outbox.delivered").tag("outcome", "retry")
+                .description("Outbox deliveries that failed and were rescheduled").register(meterRegistry);
+        this.failed = Counter.builder("payment.outbox.delivered").tag("outcome", "failed")
+                .description("Outbox messages given up after the last attempt").register(meterRegistry);
+        this.deliveryTimer = Timer.builder("payment.outbox.delivery")
+                .description("Time to deliver one outbox message").register(meterRegistry);
+        Gauge.builder("payment.outbox.pending", pending, AtomicLong::get)
+                .description("Outbox messages waiting to be delivered").register(meterRegistry);
+        Gauge.builder("payment.outbox.lag.seconds", lagSeconds, AtomicLong::get)
+                .description("Age of the oldest undelivered outbox message").register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${payment.outbox.poll-ms:1000}", fixedDelayString = "${payment.outbox.poll-ms:1000}")
+    public void relay() {
+        try {
+            int delivered;
+            do {
+                delivered = relayBatch();
+            } while (delivered == batchSize);
+        } catch (Exception e) {
+            log.error("Outbox relay failed", e);
+        } finally {
+            refreshLag();
+        }
+    }
+
+    // Claims up to one batch of due messages and delivers them; returns how many were claimed
+    public int relayBatch() {
+        String token = UUID.randomUUID().toString();
+        List<PaymentOutbox> batch = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> dueIds = paymentOutboxRepository.findDueIds(
+                    PaymentOutbox.OutboxStatus.PENDING, now, PageRequest.of(0, batchSize));
+            if (dueIds.isEmpty()) {
+                return List.of();
+            }
+            paymentOutboxRepository.claim(dueIds, token, PaymentOutbox.OutboxStatus.PENDING, now, now.plus(lease));
+            return paymentOutboxRepository.findByClaimedByOrderById(token);
+        });
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> sentIds = new ArrayList<>();
+        List<PaymentOutbox> undelivered = new ArrayList<>();
+        for (PaymentOutbox message : batch) {
+            long startNanos = System.nanoTime();
+            try {
+                paymentNotifier.sendPaymentSuccessEmail(message);
+                sentIds.add(message.getId());
+            } catch (Exception e) {
+                reschedule(message, e);
+                undelivered.add(message);
+            } finally {
+                deliveryTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        Integer written = transactionTemplate.execute(status -> {
+            int rows = sentIds.isEmpty() ? 0
+                    : paymentOutboxRepository.markSent(sentIds, token, PaymentOutbox.OutboxStatus.SENT, LocalDateTime.now());
+            for (PaymentOutbox message : undelivered) {
+                rows += paymentOutboxRepository.reschedule(message.getId(), token, message.getStatus(),
+                        message.getAttempts(), message.getNextAttemptAt(), message.getLastError());
+            }
+            return rows;
+        });
+        if (written == null || written < batch.size()) {
+            log.warn("Outbox lease ran out during a batch: {} of {} outcomes were left to the relay now holding them",
+                     batch.size() - (written == null ? 0 : written), batch.size());
+        }
+        sent.increment(sentIds.size());
+        return batch.size();
+    }
+
+    int batchSize() {
+        return batchSize;
+    }
+
+    private void reschedule(PaymentOutbox message, Exception e) {
+        int attempts = message.getAttempts() + 1;
+        message.setAttempts(attempts);
+        String error = String.valueOf(e.getMessage());
+        message.setLastError(error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+        if (attempts >= maxAttempts) {
+            message.setStatus(PaymentOutbox.OutboxStatus.FAILED);
+            failed.increment();
+            log.error("Giving up on notification for payment {} after {} attempts: {}",
+                      message.getPaymentId(), attempts, error);
+        } else {
+            Duration backoff = backoff(attempts);
+            message.setNextAttemptAt(LocalDateTime.now().plus(backoff));
+            retried.increment();
+            log.warn("Notification for payment {} failed (attempt {}), retrying in {} s: {}",
+                     message.getPaymentId(), attempts, backoff.toSeconds(), error);
+        }
+    }
+
+    // baseBackoff doubled for every earlier attempt, capped at maxBackoff
+    Duration backoff(int attempts) {
+        int doublings = Math.min(attempts - 1, 30);
+        Duration backoff = baseBackoff.multipliedBy(1L << doublings);
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+
+    private void refreshLag() {
+        try {
+            pending.set(paymentOutboxRepository.countByStatus(PaymentOutbox.OutboxStatus.PENDING));
+            LocalDateTime oldest = paymentOutboxRepository.findOldestCreatedAt(PaymentOutbox.OutboxStatus.PENDING);
+            lagSeconds.set(oldest != null ? Math.max(0, Duration.between(oldest, LocalDateTime.now()).toSeconds()) : 0);
+        } catch (Exception e) {
+            log.warn("Could not refresh outbox lag: {}", e.getMessage());
+        }
+    }
+}
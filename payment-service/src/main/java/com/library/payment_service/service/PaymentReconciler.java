@@ -0,0 +1,219 @@
+package com.library.payment_service.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.payment_service.entity.Payment;
+import com.library.payment_service.entity.PaymentLog;
+import com.library.payment_service.entity.PaymentOutbox;
+import com.library.payment_service.repository.PaymentLogRepository;
+import com.library.payment_service.repository.PaymentOutboxRepository;
+import com.library.payment_service.repository.PaymentRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Settles VNPay payments whose return and IPN callbacks never arrived. Stale PENDING payments are
+ * read a page at a time; each page is queried against the gateway in parallel, at most
+ * concurrency queries in flight, and the answers are written back in one JDBC batch. The batch
+ * only touches rows still PENDING, so a callback landing during the query wins.
+ */
+@Service
+public class PaymentReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentReconciler.class);
+
+    private static final String SETTLE_SQL = "UPDATE payments SET status = ?, transaction_id = ? "
+            + "WHERE id = ? AND status = 'PENDING'";
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentLogRepository paymentLogRepository;
+    private final PaymentOutboxRepository paymentOutboxRepository;
+    private final VNPayQueryClient vnPayQueryClient;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Duration staleAfter;
+    private final Duration abandonAfter;
+    private final int pageSize;
+    // Fixed pool: its size is the cap on queries in flight
+    private final ExecutorService queryExecutor;
+    // The scheduled run and a manual trigger must not reconcile the same payments at once
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public PaymentReconciler(PaymentRepository paymentRepository, PaymentLogRepository paymentLogRepository,
+                             PaymentOutboxRepository paymentOutboxRepository, VNPayQueryClient vnPayQueryClient,
+                             JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${payment.reconcile.stale-after-ms:1200000}") long staleAfterMillis,
+                             @Value("${payment.reconcile.abandon-after-ms:86400000}") long abandonAfterMillis,
+                             @Value("${payment.reconcile.page-size:200}") int pageSize,
+                             @Value("${payment.reconcile.concurrency:8}") int concurrency) {
+        this.paymentRepository = paymentRepository;
+        this.paymentLogRepository = paymentLogRepository;
+        this.paymentOutboxRepository = paymentOutboxRepository;
+        this.vnPayQueryClient = vnPayQueryClient;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.staleAfter = Duration.ofMillis(staleAfterMillis);
+        this.abandonAfter = Duration.ofMillis(abandonAfterMillis);
+        this.pageSize = pageSize;
+        this.queryExecutor = Executors.newFixedThreadPool(concurrency,
+                Thread.ofPlatform().name("vnpay-query-", 0).daemon().factory());
+    }
+
+    @Scheduled(initialDelayString = "${payment.reconcile.poll-ms:300000}",
+               fixedDelayString = "${payment.reconcile.poll-ms:300000}")
+    public void reconcileStalePayments() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            log.error("Payment reconciliation failed", e);
+        }
+    }
+
+    // Null when a run is already in progress
+    public Summary reconcile() {
+        if (!lock.tryLock()) {
+            return null;
+        }
+        try {
+            long startNanos = System.nanoTime();
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime staleBefore = now.minus(staleAfter);
+            LocalDateTime abandonBefore = now.minus(abandonAfter);
+            int checked = 0;
+            int paid = 0;
+            int failed = 0;
+
+            String afterId = "";
+            while (true) {
+                List<Payment> page = paymentRepository.findStale(Payment.PaymentStatus.PENDING,
+                        Payment.PaymentMethod.VNPAY, staleBefore, afterId, PageRequest.of(0, pageSize));
+                if (page.isEmpty()) {
+                    break;
+                }
+                List<VNPayQueryClient.QueryResult> results = queryAll(page);
+                Map<Payment.PaymentStatus, Integer> settled = apply(page, results, abandonBefore);
+                checked += page.size();
+                paid += settled.getOrDefault(Payment.PaymentStatus.SUCCESS, 0);
+                failed += settled.getOrDefault(Payment.PaymentStatus.FAILED, 0);
+                afterId = page.get(page.size() - 1).getId();
+                if (page.size() < pageSize) {
+                    break;
+                }
+            }
+
+            Summary summary = new Summary(checked, paid, failed, checked - paid - failed,
+                    Duration.ofNanos(System.nanoTime() - startNanos).toMillis());
+            if (checked > 0) {
+                log.info("Reconciled {} stale payments in {} ms: {} paid, {} failed, {} unresolved",
+                         checked, summary.elapsedMillis(), paid, failed, summary.unresolved());
+            }
+            return summary;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<VNPayQueryClient.QueryResult> queryAll(List<Payment> page) {
+        List<CompletableFuture<VNPayQueryClient.QueryResult>> queries = page.stream()
+                .map(payment -> CompletableFuture.supplyAsync(() -> vnPayQueryClient.query(payment), queryExecutor))
+                .toList();
+        List<VNPayQueryClient.QueryResult> results = queries.stream().map(CompletableFuture::join).toList();
+        for (VNPayQueryClient.QueryResult result : results) {
+            meterRegistry.counter("payment.reconcile.queries", "outcome", result.outcome().name().toLowerCase()).increment();
+        }
+        return results;
+    }
+
+    // Writes every decided result in one batch; returns how many payments ended in each status
+    private Map<Payment.PaymentStatus, Integer> apply(List<Payment> page, List<VNPayQueryClient.QueryResult> results,
+                                                      LocalDateTime abandonBefore) {
+        Map<String, Payment> payments = page.stream().collect(Collectors.toMap(Payment::getId, Function.identity()));
+        List<VNPayQueryClient.QueryResult> decided = new ArrayList<>();
+        List<Payment.PaymentStatus> statuses = new ArrayList<>();
+        for (VNPayQueryClient.QueryResult result : results) {
+            Payment.PaymentStatus status = switch (result.outcome()) {
+                case PAID -> Payment.PaymentStatus.SUCCESS;
+                case FAILED -> Payment.PaymentStatus.FAILED;
+                // The pay URL expired long ago without the customer ever paying
+                case NOT_FOUND -> payments.get(result.paymentId()).getCreatedAt().isBefore(abandonBefore)
+                        ? Payment.PaymentStatus.FAILED : null;
+                case PENDING, ERROR -> null;
+            };
+            if (status != null) {
+                decided.add(result);
+                statuses.add(status);
+            }
+        }
+        if (decided.isEmpty()) {
+            return Map.of();
+        }
+
+        return transactionTemplate.execute(tx -> {
+            List<Object[]> rows = new ArrayList<>(decided.size());
+            for (int i = 0; i < decided.size(); i++) {
+                rows.add(new Object[] { statuses.get(i).name(), decided.get(i).transactionNo(), decided.get(i).paymentId() });
+            }
+            int[] updated = jdbcTemplate.batchUpdate(SETTLE_SQL, rows);
+
+            Map<Payment.PaymentStatus, Integer> settled = new EnumMap<>(Payment.PaymentStatus.class);
+            List<PaymentOutbox> notifications = new ArrayList<>();
+            List<PaymentLog> logs = new ArrayList<>();
+            for (int i = 0; i < decided.size(); i++) {
+                // 0: a callback settled it while the gateway was being queried
+                if (updated[i] != 1) {
+                    continue;
+                }
+                VNPayQueryClient.QueryResult result = decided.get(i);
+                Payment payment = payments.get(result.paymentId());
+                settled.merge(statuses.get(i), 1, Integer::sum);
+                if (statuses.get(i) == Payment.PaymentStatus.SUCCESS) {
+                    notifications.add(new PaymentOutbox(payment));
+                }
+                logs.add(new PaymentLog(UUID.randomUUID().toString(), payment.getId(), PaymentLog.GatewayType.VNPAY,
+                        result.transactionNo(), objectMapper.createObjectNode()
+                                .put("source", VNPayQueryClient.COMMAND)
+                                .put("outcome", result.outcome().name())
+                                .put("status", statuses.get(i).name())
+                                .toString()));
+            }
+            paymentOutboxRepository.saveAll(notifications);
+            paymentLogRepository.saveAll(logs);
+            return settled;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        queryExecutor.shutdownNow();
+    }
+
+    public record Summary(int checked, int paid, int failed, int unresolved, long elapsedMillis) {
+    }
+}
@@ -1,35 +1,29 @@
 package com.library.payment_service.service;
 
 import java.math.BigDecimal;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.TimeZone;
 import java.util.UUID;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestTemplate;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.library.payment_service.config.VNPayConfig;
 import com.library.payment_service.dto.PaymentDTO;
 import com.library.payment_service.entity.Payment;
 import com.library.payment_service.entity.PaymentLog;
+import com.library.payment_service.entity.PaymentOutbox;
 import com.library.payment_service.repository.PaymentLogRepository;
+import com.library.payment_service.repository.PaymentOutboxRepository;
 import com.library.payment_service.repository.PaymentRepository;
 
 @Service
@@ -42,17 +36,20 @@ public class PaymentService {
     private final PaymentLogRepository paymentLogRepository;
     private final VNPayConfig vnPayConfig;
     private final ObjectMapper objectMapper;
-    private final RestTemplate restTemplate;
+    private final VNPaySigner vnPaySigner;
+    private final PaymentOutboxRepository paymentOutboxRepository;
 
     public PaymentService(PaymentRepository paymentRepository,
                           PaymentLogRepository paymentLogRepository,
                           VNPayConfig vnPayConfig,
-                          RestTemplate restTemplate) {
+                          VNPaySigner vnPaySigner,
+                          PaymentOutboxRepository paymentOutboxRepository) {
         this.paymentRepository = paymentRepository;
         this.paymentLogRepository = paymentLogRepository;
         this.vnPayConfig = vnPayConfig;
         this.objectMapper = new ObjectMapper();
-        this.restTemplate = restTemplate;
+        this.vnPaySigner = vnPaySigner;
+        this.paymentOutboxRepository = paymentOutboxRepository;
     }
 
     public Map<String, String> createVNPayPayment(Long userId, BigDecimal amount, Long referenceId, String orderInfo, String type, String ipAddress) throws Exception {
@@ -88,47 +85,21 @@ public class PaymentService {
         SimpleDateFormat formatter = new SimpleDateFormat("yyyyMMddHHmmss");
         String vnp_CreateDate = formatter.format(cld.getTime());
         vnp_Params.put("vnp_CreateDate", vnp_CreateDate);
+        payment.setGatewayCreateDate(vnp_CreateDate);
 
         cld.add(Calendar.MINUTE, 15);
         String vnp_ExpireDate = formatter.format(cld.getTime());
         vnp_Params.put("vnp_ExpireDate", vnp_ExpireDate);
 
-        // Build query string
-        List<String> fieldNames = new ArrayList<>(vnp_Params.keySet());
-        Collections.sort(fieldNames);
-        StringBuilder hashData = new StringBuilder();
-        StringBuilder query = new StringBuilder();
-
-        for (String fieldName : fieldNames) {
-            String fieldValue = vnp_Params.get(fieldName);
-            if ((fieldValue != null) && (fieldValue.length() > 0)) {
-                // Build hash data
-                hashData.append(fieldName);
-                hashData.append('=');
-                hashData.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
-                
-                // Build query
-                query.append(URLEncoder.encode(fieldName, StandardCharsets.US_ASCII.toString()));
-                query.append('=');
-                query.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
-                
-                if (fieldNames.indexOf(fieldName) < fieldNames.size() - 1) {
-                    query.append('&');
-                    hashData.append('&');
-                }
-            }
-        }
-
-        String queryUrl = query.toString();
-        String vnp_SecureHash = hmacSHA512(vnPayConfig.getHashSecret(), hashData.toString());
-        queryUrl += "&vnp_SecureHash=" + vnp_SecureHash;
-        String paymentUrl = vnPayConfig.getPayUrl() + "?" + queryUrl;
+        VNPaySigner.SignedQuery signedQuery = vnPaySigner.signQuery(vnp_Params);
+        String vnp_SecureHash = signedQuery.secureHash();
+        String paymentUrl = vnPayConfig.getPayUrl() + "?" + signedQuery.query();
 
         log.info("========== VNPay Payment Request ==========");
         log.info("TmnCode: {}", vnPayConfig.getTmnCode());
         log.info("Amount (cents): {}", amountInCents);
         log.info("TxnRef: {}", vnp_TxnRef);
-        log.info("Hash Data (Raw): {}", hashData.toString());
+        log.info("Hash Data (Raw): {}", signedQuery.hashData());
         log.info("Hash Secret: {}", vnPayConfig.getHashSecret());
         log.info("Secure Hash: {}", vnp_SecureHash);
         log.info("Full Payment URL: {}", paymentUrl);
@@ -177,112 +148,85 @@ public class PaymentService {
         return dto;
     }
 
-    private String hmacSHA512(String key, String data) throws NoSuchAlgorithmException, InvalidKeyException {
-        Mac sha512_HMAC = Mac.getInstance("HmacSHA512");
-        SecretKeySpec keySpec = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA512");
-        sha512_HMAC.init(keySpec);
-        byte[] result = sha512_HMAC.doFinal(data.getBytes(StandardCharsets.UTF_8));
-        return byteArrayToHex(result);
-    }
-
-    private String byteArrayToHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            sb.append(String.format("%02x", b));
+    // Browser return from VNPay: one lookup, a conditional status change, and the success
+    // notification queued in the outbox in the same transaction
+    public VNPayReturnOutcome handleVNPayReturn(Map<String, String> fields) {
+        if (!vnPaySigner.verify(fields)) {
+            return new VNPayReturnOutcome(false, null);
+        }
+        String paymentId = fields.get("vnp_TxnRef");
+        Payment payment = paymentId != null ? paymentRepository.findById(paymentId).orElse(null) : null;
+        if (payment == null) {
+            return new VNPayReturnOutcome(true, null);
         }
-        return sb.toString();
-    }
-
-    public Map<String, String> processVNPayReturn(Map<String, String> params) throws Exception {
-        // Validate secure hash
-        String vnp_SecureHash = params.get("vnp_SecureHash");
-        params.remove("vnp_SecureHash");
-        params.remove("vnp_SecureHashType");
-
-        // Build hash data
-        List<String> fieldNames = new ArrayList<>(params.keySet());
-        Collections.sort(fieldNames);
-        StringBuilder hashData = new StringBuilder();
 
-        for (String fieldName : fieldNames) {
-            String fieldValue = params.get(fieldName);
-            if ((fieldValue != null) && (fieldValue.length() > 0)) {
-                hashData.append(fieldName);
-                hashData.append('=');
-                hashData.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
-                if (fieldNames.indexOf(fieldName) < fieldNames.size() - 1) {
-                    hashData.append('&');
+        if (payment.getStatus() == Payment.PaymentStatus.PENDING) {
+            boolean paid = "00".equals(fields.get("vnp_ResponseCode"));
+            Payment.PaymentStatus status = paid ? Payment.PaymentStatus.SUCCESS : Payment.PaymentStatus.FAILED;
+            // The IPN or a reloaded return page may already have settled it
+            if (paymentRepository.completePending(paymentId, status, paid ? fields.get("vnp_TransactionNo") : null,
+                    Payment.PaymentStatus.PENDING) == 1) {
+                log.info("Payment {} marked as {}", paymentId, status);
+                if (paid) {
+                    paymentOutboxRepository.save(new PaymentOutbox(payment));
                 }
             }
         }
+        return new VNPayReturnOutcome(true, payment.getType());
+    }
 
-        String calculatedHash = hmacSHA512(vnPayConfig.getHashSecret(), hashData.toString());
-        
-        if (!calculatedHash.equals(vnp_SecureHash)) {
-            throw new Exception("Invalid secure hash");
-        }
+    public record VNPayReturnOutcome(boolean signatureValid, Payment.PaymentType paymentType) {
+    }
 
-        // Update payment status
+    // Server-to-server IPN from VNPay: answers with the RspCode/Message pair the gateway expects.
+    // A repeated callback for a settled payment costs one primary-key lookup.
+    public Map<String, String> processVNPayIpn(Map<String, String> params) throws Exception {
+        if (!vnPaySigner.verify(params)) {
+            return ipnResponse("97", "Invalid Checksum");
+        }
         String paymentId = params.get("vnp_TxnRef");
-        String responseCode = params.get("vnp_ResponseCode");
-        
-        Payment payment = paymentRepository.findById(paymentId).orElseThrow(() -> new Exception("Payment not found"));
-        
-        if ("00".equals(responseCode)) {
-            payment.setStatus(Payment.PaymentStatus.SUCCESS);
-            
-            // Send success email notification
-            sendPaymentSuccessEmail(payment);
-        } else {
-            payment.setStatus(Payment.PaymentStatus.FAILED);
+        Optional<Payment> found = paymentId != null ? paymentRepository.findById(paymentId) : Optional.empty();
+        if (found.isEmpty()) {
+            return ipnResponse("01", "Order not found");
+        }
+        Payment payment = found.get();
+        String expectedAmount = String.valueOf(payment.getAmount().multiply(BigDecimal.valueOf(100)).longValue());
+        if (!expectedAmount.equals(params.get("vnp_Amount"))) {
+            return ipnResponse("04", "Invalid amount");
+        }
+        if (payment.getStatus() != Payment.PaymentStatus.PENDING) {
+            return ipnResponse("02", "Order already confirmed");
         }
-        
-        paymentRepository.save(payment);
 
-        // Log response
-        PaymentLog responseLog = new PaymentLog(
+        boolean paid = "00".equals(params.get("vnp_ResponseCode")) && "00".equals(params.get("vnp_TransactionStatus"));
+        Payment.PaymentStatus status = paid ? Payment.PaymentStatus.SUCCESS : Payment.PaymentStatus.FAILED;
+        if (paymentRepository.completePending(paymentId, status, params.get("vnp_TransactionNo"),
+                Payment.PaymentStatus.PENDING) == 0) {
+            return ipnResponse("02", "Order already confirmed");
+        }
+        log.info("VNPay IPN - payment {} marked as {}", paymentId, status);
+
+        Map<String, String> payload = new HashMap<>(params);
+        payload.remove(VNPaySigner.SECURE_HASH);
+        payload.remove(VNPaySigner.SECURE_HASH_TYPE);
+        paymentLogRepository.save(new PaymentLog(
             UUID.randomUUID().toString(),
-            payment.getId(),
-            PaymentLog.GatewayType.VNPAY,
             paymentId,
-            objectMapper.writeValueAsString(params)
-        );
-        paymentLogRepository.save(responseLog);
+            PaymentLog.GatewayType.VNPAY,
+            params.get("vnp_TransactionNo"),
+            objectMapper.writeValueAsString(payload)
+        ));
 
-        Map<String, String> result = new HashMap<>();
-        result.put("paymentId", paymentId);
-        result.put("vnp_ResponseCode", responseCode);
-        result.put("vnp_Amount", params.get("vnp_Amount"));
-        result.put("vnp_TransactionNo", params.get("vnp_TransactionNo"));
-        
-        return result;
+        if (paid) {
+            paymentOutboxRepository.save(new PaymentOutbox(payment));
+        }
+        return ipnResponse("00", "Confirm Success");
     }
 
-    public void sendPaymentSuccessEmail(Payment payment) {
-        try {
-            log.info("Sending payment success email for payment: {}, type: {}, userId: {}", 
-                     payment.getId(), payment.getType(), payment.getUserId());
-            
-            String endpoint;
-            if (payment.getType() == Payment.PaymentType.BORROW_FEE) {
-                endpoint = "/borrow-payment-success/" + payment.getUserId();
-                log.info("Sending borrow payment success email to user: {}", payment.getUserId());
-            } else {
-                endpoint = "/fine-payment-success/" + payment.getUserId();
-                log.info("Sending fine payment success email to user: {}", payment.getUserId());
-            }
-
-            String url = "http://localhost:8085/api/notifications" + endpoint +
-                         "?amount=" + payment.getAmount().toString() +
-                         "&paymentMethod=VNPAY" +
-                         "&transactionId=" + payment.getId();
-            
-            log.info("Calling notification service URL: {}", url);
-            String response = restTemplate.postForObject(url, null, String.class);
-            log.info("Notification service response: {}", response);
-            log.info("Payment success email sent successfully for payment: {}", payment.getId());
-        } catch (Exception e) {
-            log.error("Failed to send payment success email for payment: {}", payment.getId(), e);
-        }
+    private static Map<String, String> ipnResponse(String code, String message) {
+        Map<String, String> response = new LinkedHashMap<>();
+        response.put("RspCode", code);
+        response.put("Message", message);
+        return response;
     }
 }
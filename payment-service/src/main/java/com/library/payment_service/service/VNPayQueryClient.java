@@ -0,0 +1,161 @@
+package com.library.payment_service.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import com.library.payment_service.config.VNPayConfig;
+import com.library.payment_service.entity.Payment;
+
+/**
+ * Asks the VNPay merchant API (querydr) for the state of a payment's transaction. Requests and
+ * responses are signed over their fields joined with '|' in the order VNPay documents.
+ */
+@Component
+public class VNPayQueryClient {
+
+    private static final Logger log = LoggerFactory.getLogger(VNPayQueryClient.class);
+
+    public static final String COMMAND = "querydr";
+    public static final List<String> REQUEST_FIELDS = List.of("vnp_RequestId", "vnp_Version", "vnp_Command",
+            "vnp_TmnCode", "vnp_TxnRef", "vnp_TransactionDate", "vnp_CreateDate", "vnp_IpAddr", "vnp_OrderInfo");
+    public static final List<String> RESPONSE_FIELDS = List.of("vnp_ResponseId", "vnp_Command", "vnp_ResponseCode",
+            "vnp_Message", "vnp_TmnCode", "vnp_TxnRef", "vnp_Amount", "vnp_BankCode", "vnp_PayDate",
+            "vnp_TransactionNo", "vnp_TransactionType", "vnp_TransactionStatus", "vnp_OrderInfo",
+            "vnp_PromotionCode", "vnp_PromotionAmount");
+
+    // Dates in VNPay messages use the same zone createVNPayPayment formats vnp_CreateDate in
+    public static final ZoneId GATEWAY_ZONE = ZoneId.of("Etc/GMT+7");
+    public static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private static final ParameterizedTypeReference<Map<String, Object>> RESPONSE_TYPE =
+            new ParameterizedTypeReference<>() {};
+
+    private final RestTemplate restTemplate;
+    private final VNPayConfig vnPayConfig;
+    private final VNPaySigner vnPaySigner;
+    private final String ipAddress;
+
+    public VNPayQueryClient(RestTemplate restTemplate, VNPayConfig vnPayConfig, VNPaySigner vnPaySigner,
+                            @Value("${payment.reconcile.ip-address:127.0.0.1}") String ipAddress) {
+        this.restTemplate = restTemplate;
+        this.vnPayConfig = vnPayConfig;
+        this.vnPaySigner = vnPaySigner;
+        this.ipAddress = ipAddress;
+    }
+
+    // Never throws: a failed or unverifiable query comes back as ERROR, to be retried on the next run
+    public QueryResult query(Payment payment) {
+        Map<String, String> request = new HashMap<>();
+        request.put("vnp_RequestId", UUID.randomUUID().toString().replace("-", ""));
+        request.put("vnp_Version", vnPayConfig.getVersion());
+        request.put("vnp_Command", COMMAND);
+        request.put("vnp_TmnCode", vnPayConfig.getTmnCode());
+        request.put("vnp_TxnRef", payment.getId());
+        request.put("vnp_OrderInfo", "Query payment " + payment.getId());
+        request.put("vnp_TransactionDate", transactionDate(payment));
+        request.put("vnp_CreateDate", format(LocalDateTime.now()));
+        request.put("vnp_IpAddr", ipAddress);
+        request.put(VNPaySigner.SECURE_HASH, vnPaySigner.signFields(values(request, REQUEST_FIELDS)));
+
+        Map<String, String> response;
+        try {
+            Map<String, Object> body = restTemplate.exchange(vnPayConfig.getApiUrl(), HttpMethod.POST,
+                    new HttpEntity<>(request), RESPONSE_TYPE).getBody();
+            if (body == null) {
+                return QueryResult.error(payment.getId());
+            }
+            response = new HashMap<>();
+            body.forEach((name, value) -> response.put(name, value != null ? value.toString() : null));
+        } catch (RestClientException e) {
+            log.warn("VNPay query for payment {} failed: {}", payment.getId(), e.getMessage());
+            return QueryResult.error(payment.getId());
+        }
+
+        if (!vnPaySigner.verifyFields(response.get(VNPaySigner.SECURE_HASH), values(response, RESPONSE_FIELDS))) {
+            log.warn("VNPay query for payment {} returned code {} with an invalid signature",
+                     payment.getId(), response.get("vnp_ResponseCode"));
+            return QueryResult.error(payment.getId());
+        }
+        return toResult(payment, response);
+    }
+
+    private static QueryResult toResult(Payment payment, Map<String, String> response) {
+        String responseCode = response.get("vnp_ResponseCode");
+        if ("91".equals(responseCode)) {
+            return new QueryResult(payment.getId(), Outcome.NOT_FOUND, null);
+        }
+        if (!"00".equals(responseCode) || !payment.getId().equals(response.get("vnp_TxnRef"))) {
+            log.warn("VNPay query for payment {} answered {} {}", payment.getId(), responseCode, response.get("vnp_Message"));
+            return QueryResult.error(payment.getId());
+        }
+
+        String transactionNo = response.get("vnp_TransactionNo");
+        String transactionStatus = response.get("vnp_TransactionStatus");
+        if ("00".equals(transactionStatus)) {
+            String expectedAmount = String.valueOf(payment.getAmount().multiply(BigDecimal.valueOf(100)).longValue());
+            if (!expectedAmount.equals(response.get("vnp_Amount"))) {
+                log.warn("VNPay query for payment {} reports amount {}, expected {}",
+                         payment.getId(), response.get("vnp_Amount"), expectedAmount);
+                return QueryResult.error(payment.getId());
+            }
+            return new QueryResult(payment.getId(), Outcome.PAID, transactionNo);
+        }
+        // 01: not completed yet; 05 and 06: refund in progress or sent to the bank
+        if ("01".equals(transactionStatus) || "05".equals(transactionStatus) || "06".equals(transactionStatus)) {
+            return new QueryResult(payment.getId(), Outcome.PENDING, transactionNo);
+        }
+        return new QueryResult(payment.getId(), Outcome.FAILED, transactionNo);
+    }
+
+    public static String[] values(Map<String, String> fields, List<String> names) {
+        String[] values = new String[names.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = fields.get(names.get(i));
+        }
+        return values;
+    }
+
+    // VNPay looks the transaction up by the exact vnp_CreateDate of the pay request; payments
+    // created before it was stored fall back to their creation time
+    private static String transactionDate(Payment payment) {
+        return payment.getGatewayCreateDate() != null ? payment.getGatewayCreateDate() : format(payment.getCreatedAt());
+    }
+
+    public static String format(LocalDateTime serverTime) {
+        return serverTime.atZone(ZoneId.systemDefault()).withZoneSameInstant(GATEWAY_ZONE).format(DATE_FORMAT);
+    }
+
+    public enum Outcome {
+        PAID,
+        FAILED,
+        // The gateway knows the transaction but it has not completed
+        PENDING,
+        // The customer never reached the gateway
+        NOT_FOUND,
+        // No trustworthy answer this time
+        ERROR
+    }
+
+    public record QueryResult(String paymentId, Outcome outcome, String transactionNo) {
+
+        static QueryResult error(String paymentId) {
+            return new QueryResult(paymentId, Outcome.ERROR, null);
+        }
+    }
+}
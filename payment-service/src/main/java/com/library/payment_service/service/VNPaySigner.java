@@ -0,0 +1,196 @@
+package com.library.payment_service.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.stereotype.Component;
+
+import com.library.payment_service.config.VNPayConfig;
+
+/**
+ * Signs and verifies VNPay parameters with HmacSHA512 over the canonical hash data: non-empty
+ * parameters in key order, values URL-encoded as US-ASCII, joined with '&'. Each thread keeps
+ * its own initialized Mac and buffers, so a call allocates little beyond its result strings.
+ */
+@Component
+public class VNPaySigner {
+
+    public static final String SECURE_HASH = "vnp_SecureHash";
+    public static final String SECURE_HASH_TYPE = "vnp_SecureHashType";
+
+    private static final String ALGORITHM = "HmacSHA512";
+    private static final int SIGNATURE_LENGTH = 128;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final char[] UPPER_HEX = "0123456789ABCDEF".toCharArray();
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(this::newBuffers);
+
+    public VNPaySigner(VNPayConfig vnPayConfig) {
+        this.key = new SecretKeySpec(vnPayConfig.getHashSecret().getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    // Query string for the pay URL: the parameters in key order followed by their vnp_SecureHash
+    public SignedQuery signQuery(Map<String, String> params) {
+        Buffers state = buffers.get();
+        canonicalize(params, state, true);
+        String secureHash = hmac(state);
+        state.query.append('&').append(SECURE_HASH).append('=').append(secureHash);
+        return new SignedQuery(state.hashData.toString(), secureHash, state.query.toString());
+    }
+
+    // Hex signature of the parameters, ignoring any vnp_SecureHash and vnp_SecureHashType among them
+    public String sign(Map<String, String> params) {
+        Buffers state = buffers.get();
+        canonicalize(params, state, false);
+        return hmac(state);
+    }
+
+    // Hex signature of the values joined with '|', as the merchant API (querydr) signs its requests
+    // and responses; a null value counts as empty
+    public String signFields(String... values) {
+        Buffers state = buffers.get();
+        StringBuilder hashData = state.hashData;
+        hashData.setLength(0);
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                hashData.append('|');
+            }
+            if (values[i] != null) {
+                hashData.append(values[i]);
+            }
+        }
+        return hmac(state);
+    }
+
+    // Same as verify, for a signature computed by signFields
+    public boolean verifyFields(String received, String... values) {
+        if (received == null || received.length() != SIGNATURE_LENGTH) {
+            return false;
+        }
+        return MessageDigest.isEqual(signFields(values).getBytes(StandardCharsets.US_ASCII),
+                received.toLowerCase().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Checks the vnp_SecureHash VNPay sent along with the other parameters
+    public boolean verify(Map<String, String> params) {
+        String received = params.get(SECURE_HASH);
+        if (received == null || received.length() != SIGNATURE_LENGTH) {
+            return false;
+        }
+        return MessageDigest.isEqual(sign(params).getBytes(StandardCharsets.US_ASCII),
+                received.toLowerCase().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // One pass over the sorted keys fills the hash data, and the query string when asked for
+    private static void canonicalize(Map<String, String> params, Buffers state, boolean withQuery) {
+        StringBuilder hashData = state.hashData;
+        StringBuilder query = state.query;
+        hashData.setLength(0);
+        query.setLength(0);
+
+        String[] names = params.keySet().toArray(new String[0]);
+        Arrays.sort(names);
+        for (String name : names) {
+            String value = params.get(name);
+            if (value == null || value.isEmpty() || SECURE_HASH.equals(name) || SECURE_HASH_TYPE.equals(name)) {
+                continue;
+            }
+            if (hashData.length() > 0) {
+                hashData.append('&');
+                if (withQuery) {
+                    query.append('&');
+                }
+            }
+            int valueStart = hashData.append(name).append('=').length();
+            encode(value, hashData);
+            if (withQuery) {
+                encode(name, query);
+                query.append('=').append(hashData, valueStart, hashData.length());
+            }
+        }
+    }
+
+    // Same output as URLEncoder.encode(value, US_ASCII): characters outside US-ASCII become %3F
+    private static void encode(String value, StringBuilder out) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '.' || c == '-' || c == '*' || c == '_') {
+                out.append(c);
+            } else if (c == ' ') {
+                out.append('+');
+            } else {
+                if (c > 0x7f) {
+                    // A surrogate pair is one unmappable character
+                    if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                            && Character.isLowSurrogate(value.charAt(i + 1))) {
+                        i++;
+                    }
+                    c = '?';
+                }
+                out.append('%').append(UPPER_HEX[c >> 4]).append(UPPER_HEX[c & 0xf]);
+            }
+        }
+    }
+
+    private static String hmac(Buffers state) {
+        StringBuilder hashData = state.hashData;
+        int length = hashData.length();
+        if (state.bytes.length < length) {
+            state.bytes = new byte[Math.max(length, state.bytes.length * 2)];
+        }
+        // Encoded values are pure ASCII; only an unusual parameter name can need UTF-8
+        boolean ascii = true;
+        for (int i = 0; i < length && ascii; i++) {
+            char c = hashData.charAt(i);
+            state.bytes[i] = (byte) c;
+            ascii = c <= 0x7f;
+        }
+        if (ascii) {
+            state.mac.update(state.bytes, 0, length);
+        } else {
+            state.mac.update(hashData.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] digest = state.mac.doFinal();
+
+        char[] hex = state.hex;
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX[(digest[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[digest[i] & 0xf];
+        }
+        return new String(hex, 0, digest.length * 2);
+    }
+
+    private Buffers newBuffers() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return new Buffers(mac);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialize " + ALGORITHM, e);
+        }
+    }
+
+    public record SignedQuery(String hashData, String secureHash, String query) {
+    }
+
+    private static final class Buffers {
+        private final Mac mac;
+        private final StringBuilder hashData = new StringBuilder(512);
+        private final StringBuilder query = new StringBuilder(512);
+        private final char[] hex;
+        private byte[] bytes = new byte[512];
+
+        private Buffers(Mac mac) {
+            this.mac = mac;
+            this.hex = new char[mac.getMacLength() * 2];
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.library.payment_service.simulator;
+
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import com.library.payment_service.config.VNPayConfig;
+import com.library.payment_service.service.VNPayQueryClient;
+import com.library.payment_service.service.VNPaySigner;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * In-memory stand-in for the VNPay gateway, for running and load-testing the payment flow
+ * offline. It signs and verifies with the same VNPaySigner and hash secret as the service, so
+ * the pay URL, return, IPN and querydr messages are the ones the real gateway exchanges. A share
+ * of payments fails, and a share of callbacks is dropped to leave work for the reconciler.
+ */
+@Component
+@Profile("vnpay-sim")
+public class VNPaySimulator {
+
+    private static final Logger log = LoggerFactory.getLogger(VNPaySimulator.class);
+
+    private final VNPayConfig vnPayConfig;
+    private final VNPaySigner vnPaySigner;
+    private final RestTemplate restTemplate;
+    private final double successRate;
+    private final double callbackLossRate;
+    private final long queryLatencyMillis;
+    private final boolean sendIpn;
+
+    private final Map<String, Transaction> transactions = new ConcurrentHashMap<>();
+    private final AtomicLong transactionNo = new AtomicLong(14_000_000);
+    private final ExecutorService ipnExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public VNPaySimulator(VNPayConfig vnPayConfig, VNPaySigner vnPaySigner, RestTemplate restTemplate,
+                          @Value("${vnpay.simulator.success-rate:0.9}") double successRate,
+                          @Value("${vnpay.simulator.callback-loss-rate:0.05}") double callbackLossRate,
+                          @Value("${vnpay.simulator.query-latency-ms:50}") long queryLatencyMillis,
+                          @Value("${vnpay.simulator.send-ipn:true}") boolean sendIpn) {
+        this.vnPayConfig = vnPayConfig;
+        this.vnPaySigner = vnPaySigner;
+        this.restTemplate = restTemplate;
+        this.successRate = successRate;
+        this.callbackLossRate = callbackLossRate;
+        this.queryLatencyMillis = queryLatencyMillis;
+        this.sendIpn = sendIpn;
+    }
+
+    // The customer pays on the gateway page. Returns the signed return URL to redirect the
+    // browser to, or empty when the callbacks to the merchant are lost.
+    public Optional<String> pay(Map<String, String> params) {
+        if (!vnPaySigner.verify(params)) {
+            throw new IllegalArgumentException("Invalid signature");
+        }
+        if (!vnPayConfig.getTmnCode().equals(params.get("vnp_TmnCode"))) {
+            throw new IllegalArgumentException("Unknown merchant " + params.get("vnp_TmnCode"));
+        }
+        String txnRef = params.get("vnp_TxnRef");
+        if (txnRef == null || params.get("vnp_Amount") == null || params.get("vnp_CreateDate") == null) {
+            throw new IllegalArgumentException("Missing vnp_TxnRef, vnp_Amount or vnp_CreateDate");
+        }
+
+        // A reloaded pay page replays the outcome decided the first time
+        Transaction transaction = transactions.computeIfAbsent(txnRef, ref -> new Transaction(ref,
+                params.get("vnp_CreateDate"), params.get("vnp_Amount"), params.get("vnp_OrderInfo"), bankCode(params),
+                VNPayQueryClient.format(LocalDateTime.now()), String.valueOf(transactionNo.incrementAndGet()),
+                ThreadLocalRandom.current().nextDouble() < successRate));
+
+        Map<String, String> callback = new HashMap<>();
+        callback.put("vnp_TmnCode", vnPayConfig.getTmnCode());
+        callback.put("vnp_TxnRef", transaction.txnRef());
+        callback.put("vnp_Amount", transaction.amount());
+        callback.put("vnp_OrderInfo", transaction.orderInfo());
+        callback.put("vnp_BankCode", transaction.bankCode());
+        callback.put("vnp_CardType", "ATM");
+        callback.put("vnp_PayDate", transaction.payDate());
+        callback.put("vnp_TransactionNo", transaction.transactionNo());
+        // 24: the customer cancelled
+        callback.put("vnp_ResponseCode", transaction.paid() ? "00" : "24");
+        callback.put("vnp_TransactionStatus", transaction.transactionStatus());
+        String query = vnPaySigner.signQuery(callback).query();
+
+        if (ThreadLocalRandom.current().nextDouble() < callbackLossRate) {
+            log.info("VNPay simulator: dropping callbacks for {}", txnRef);
+            return Optional.empty();
+        }
+        if (sendIpn) {
+            ipnExecutor.execute(() -> deliverIpn(txnRef, query));
+        }
+        return Optional.of(params.get("vnp_ReturnUrl") + "?" + query);
+    }
+
+    // querydr on the merchant API
+    public Map<String, String> query(Map<String, String> request) {
+        if (queryLatencyMillis > 0) {
+            try {
+                Thread.sleep(queryLatencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        String txnRef = request.get("vnp_TxnRef");
+        if (!vnPaySigner.verifyFields(request.get(VNPaySigner.SECURE_HASH),
+                VNPayQueryClient.values(request, VNPayQueryClient.REQUEST_FIELDS))) {
+            return queryResponse("97", "Invalid Checksum", txnRef, null);
+        }
+        if (!vnPayConfig.getTmnCode().equals(request.get("vnp_TmnCode"))) {
+            return queryResponse("02", "Invalid merchant", txnRef, null);
+        }
+        if (!VNPayQueryClient.COMMAND.equals(request.get("vnp_Command"))) {
+            return queryResponse("03", "Invalid data format", txnRef, null);
+        }
+        // Transactions are found by vnp_TxnRef together with the vnp_CreateDate of their pay request
+        Transaction transaction = txnRef != null ? transactions.get(txnRef) : null;
+        if (transaction == null || !Objects.equals(transaction.createDate(), request.get("vnp_TransactionDate"))) {
+            return queryResponse("91", "Transaction not found", txnRef, null);
+        }
+        return queryResponse("00", "Query success", txnRef, transaction);
+    }
+
+    public int transactionCount() {
+        return transactions.size();
+    }
+
+    private Map<String, String> queryResponse(String code, String message, String txnRef, Transaction transaction) {
+        Map<String, String> response = new LinkedHashMap<>();
+        response.put("vnp_ResponseId", UUID.randomUUID().toString().replace("-", ""));
+        response.put("vnp_Command", VNPayQueryClient.COMMAND);
+        response.put("vnp_ResponseCode", code);
+        response.put("vnp_Message", message);
+        response.put("vnp_TmnCode", vnPayConfig.getTmnCode());
+        response.put("vnp_TxnRef", txnRef != null ? txnRef : "");
+        response.put("vnp_Amount", transaction != null ? transaction.amount() : "");
+        response.put("vnp_BankCode", transaction != null ? transaction.bankCode() : "");
+        response.put("vnp_PayDate", transaction != null ? transaction.payDate() : "");
+        response.put("vnp_TransactionNo", transaction != null ? transaction.transactionNo() : "");
+        response.put("vnp_TransactionType", transaction != null ? "01" : "");
+        response.put("vnp_TransactionStatus", transaction != null ? transaction.transactionStatus() : "");
+        response.put("vnp_OrderInfo", transaction != null && transaction.orderInfo() != null ? transaction.orderInfo() : "");
+        response.put("vnp_PromotionCode", "");
+        response.put("vnp_PromotionAmount", "");
+        response.put(VNPaySigner.SECURE_HASH,
+                vnPaySigner.signFields(VNPayQueryClient.values(response, VNPayQueryClient.RESPONSE_FIELDS)));
+        return response;
+    }
+
+    private void deliverIpn(String txnRef, String query) {
+        try {
+            Map<?, ?> answer = restTemplate.getForObject(URI.create(vnPayConfig.getIpnUrl() + "?" + query), Map.class);
+            log.debug("VNPay simulator: IPN for {} answered {}", txnRef, answer);
+        } catch (RestClientException e) {
+            log.warn("VNPay simulator: IPN for {} failed: {}", txnRef, e.getMessage());
+        }
+    }
+
+    private static String bankCode(Map<String, String> params) {
+        String bankCode = params.get("vnp_BankCode");
+        return bankCode != null && !bankCode.isEmpty() ? bankCode : "NCB";
+    }
+
+    @PreDestroy
+    void shutdown() {
+        ipnExecutor.shutdownNow();
+    }
+
+    private record Transaction(String txnRef, String createDate, String amount, String orderInfo, String bankCode,
+                               String payDate, String transactionNo, boolean paid) {
+
+        // 00: paid; 02: failed at the gateway
+        String transactionStatus() {
+            return paid ? "00" : "02";
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.library.payment_service.simulator;
+
+import java.net.URI;
+import java.util.Map;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+// The gateway endpoints of VNPaySimulator, at the same paths as the VNPay sandbox under /vnpay-sim
+@RestController
+@Profile("vnpay-sim")
+@RequestMapping("/vnpay-sim")
+public class VNPaySimulatorController {
+
+    private final VNPaySimulator vnPaySimulator;
+
+    public VNPaySimulatorController(VNPaySimulator vnPaySimulator) {
+        this.vnPaySimulator = vnPaySimulator;
+    }
+
+    @GetMapping("/paymentv2/vpcpay.html")
+    public ResponseEntity<String> pay(@RequestParam Map<String, String> params) {
+        try {
+            return vnPaySimulator.pay(params)
+                    .map(returnUrl -> ResponseEntity.status(HttpStatus.FOUND).location(URI.create(returnUrl)).<String>build())
+                    .orElseGet(() -> ResponseEntity.ok("Payment processed; the merchant was not notified"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/merchant_webapi/api/transaction")
+    public Map<String, String> query(@RequestBody Map<String, String> request) {
+        return vnPaySimulator.query(request);
+    }
+}
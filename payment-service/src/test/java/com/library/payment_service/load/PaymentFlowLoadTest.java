@@ -0,0 +1,119 @@
+package com.library.payment_service.load;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.library.payment_service.entity.Payment;
+import com.library.payment_service.repository.PaymentRepository;
+import com.library.payment_service.service.PaymentReconciler;
+
+/**
+ * Whole VNPay flow against the embedded simulator: create the payment, pay on the gateway page,
+ * follow the return redirect while the IPN arrives alongside, then reconcile the payments whose
+ * callbacks were dropped. The service listens on 18094, so run it with that port free:
+ * gradle loadTest
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.DEFINED_PORT, properties = {
+        "server.port=18094",
+        "vnpay.return-url=http://localhost:18094/payments/vnpay/return",
+        "vnpay.ipn-url=http://localhost:18094/payments/vnpay/ipn",
+        "vnpay.simulator.success-rate=0.9",
+        "vnpay.simulator.callback-loss-rate=0.3",
+        "vnpay.simulator.query-latency-ms=50",
+        "payment.reconcile.stale-after-ms=0",
+        // Every test payment reaches the gateway; the unknown ones are the seeded sample data
+        "payment.reconcile.abandon-after-ms=0",
+        "payment.reconcile.concurrency=8",
+        "spring.jpa.show-sql=false",
+        "spring.datasource.url=jdbc:h2:mem:paymentload"
+})
+@ActiveProfiles("vnpay-sim")
+class PaymentFlowLoadTest {
+
+    private static final int PAYMENTS = 400;
+    private static final String BASE_URL = "http://localhost:18094";
+    private static final Pattern PAYMENT_URL = Pattern.compile("\"paymentUrl\":\"([^\"]+)\"");
+
+    @Autowired
+    private PaymentReconciler paymentReconciler;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Test
+    void paymentFlowAndReconciliation() throws Exception {
+        paymentReconciler.reconcile();
+        AtomicInteger returned = new AtomicInteger();
+        try (HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build()) {
+            long start = System.nanoTime();
+            List<CompletableFuture<Void>> flows = new ArrayList<>();
+            for (int i = 0; i < PAYMENTS; i++) {
+                flows.add(payOnce(client, i, returned));
+            }
+            flows.forEach(CompletableFuture::join);
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            System.out.println("LOAD payment flow: " + PAYMENTS + " payments in " + elapsedMillis + " ms, "
+                    + (PAYMENTS * 1000L / Math.max(elapsedMillis, 1)) + " flows/s, " + returned.get() + " returned");
+        }
+
+        // Let the IPNs still in flight land before counting what is left
+        Thread.sleep(2000);
+        long pending = countPending();
+        PaymentReconciler.Summary summary = paymentReconciler.reconcile();
+        System.out.println("LOAD reconciliation: " + summary.checked() + " stale payments in " + summary.elapsedMillis()
+                + " ms, " + summary.paid() + " paid, " + summary.failed() + " failed, " + summary.unresolved() + " unresolved");
+
+        assertThat(summary.checked()).isEqualTo(pending);
+        assertThat(summary.unresolved()).isZero();
+        assertThat(countPending()).isZero();
+    }
+
+    private CompletableFuture<Void> payOnce(HttpClient client, int i, AtomicInteger returned) {
+        String body = "{\"userId\":" + (1000 + i) + ",\"amount\":" + (10000 + i) + ",\"referenceId\":" + i
+                + ",\"orderInfo\":\"Load test " + i + "\",\"type\":\"" + (i % 2 == 0 ? "fine" : "borrow") + "\"}";
+        return client.sendAsync(HttpRequest.newBuilder(URI.create(BASE_URL + "/payments/vnpay"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build(), HttpResponse.BodyHandlers.ofString())
+                .thenCompose(created -> {
+                    Matcher matcher = PAYMENT_URL.matcher(created.body());
+                    assertThat(matcher.find()).as(created.body()).isTrue();
+                    return client.sendAsync(HttpRequest.newBuilder(URI.create(matcher.group(1))).build(),
+                            HttpResponse.BodyHandlers.ofString());
+                })
+                .thenCompose(gateway -> {
+                    String returnUrl = gateway.headers().firstValue("Location").orElse(null);
+                    if (gateway.statusCode() != 302 || returnUrl == null) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    returned.incrementAndGet();
+                    return client.sendAsync(HttpRequest.newBuilder(URI.create(returnUrl)).build(),
+                            HttpResponse.BodyHandlers.discarding()).thenApply(response -> null);
+                });
+    }
+
+    private long countPending() {
+        return paymentRepository.findAll().stream()
+                .filter(payment -> payment.getMethod() == Payment.PaymentMethod.VNPAY)
+                .filter(payment -> payment.getStatus() == Payment.PaymentStatus.PENDING)
+                .count();
+    }
+}
@@ -0,0 +1,144 @@
+package com.library.payment_service.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.web.client.ResourceAccessException;
+
+import com.library.payment_service.entity.Payment;
+import com.library.payment_service.entity.PaymentOutbox;
+import com.library.payment_service.repository.PaymentOutboxRepository;
+import com.library.payment_service.repository.PaymentRepository;
+
+@SpringBootTest(properties = "payment.outbox.max-attempts=2")
+class PaymentOutboxRelayTest {
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentOutboxRelay paymentOutboxRelay;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentOutboxRepository paymentOutboxRepository;
+
+    @Autowired
+    private VNPaySigner vnPaySigner;
+
+    @MockitoBean
+    private PaymentNotifier paymentNotifier;
+
+    @Test
+    void queuesTheNotificationWithThePaymentAndRetriesUntilDelivered() throws Exception {
+        paymentOutboxRepository.deleteAll();
+        Payment payment = paymentRepository.save(new Payment(9L, new BigDecimal("30000.00"),
+                Payment.PaymentType.BORROW_FEE, Payment.PaymentMethod.VNPAY, 45L));
+        paymentService.processVNPayIpn(ipn(payment.getId(), "3000000"));
+
+        PaymentOutbox queued = paymentOutboxRepository.findAll().get(0);
+        assertThat(queued.getPaymentId()).isEqualTo(payment.getId());
+        assertThat(queued.getStatus()).isEqualTo(PaymentOutbox.OutboxStatus.PENDING);
+
+        doThrow(new ResourceAccessException("Connection refused")).when(paymentNotifier).sendPaymentSuccessEmail(any());
+        assertThat(paymentOutboxRelay.relayBatch()).isEqualTo(1);
+        PaymentOutbox retrying = paymentOutboxRepository.findById(queued.getId()).orElseThrow();
+        assertThat(retrying.getStatus()).isEqualTo(PaymentOutbox.OutboxStatus.PENDING);
+        assertThat(retrying.getAttempts()).isEqualTo(1);
+        assertThat(retrying.getClaimedBy()).isNull();
+        assertThat(retrying.getLastError()).isEqualTo("Connection refused");
+        assertThat(retrying.getNextAttemptAt()).isAfter(LocalDateTime.now());
+
+        // Not due again until the backoff has passed
+        assertThat(paymentOutboxRelay.relayBatch()).isZero();
+
+        retrying.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        paymentOutboxRepository.save(retrying);
+        doNothing().when(paymentNotifier).sendPaymentSuccessEmail(any());
+        assertThat(paymentOutboxRelay.relayBatch()).isEqualTo(1);
+        PaymentOutbox delivered = paymentOutboxRepository.findById(queued.getId()).orElseThrow();
+        assertThat(delivered.getStatus()).isEqualTo(PaymentOutbox.OutboxStatus.SENT);
+        assertThat(delivered.getAttempts()).isEqualTo(2);
+        assertThat(delivered.getSentAt()).isNotNull();
+        assertThat(delivered.getLastError()).isNull();
+    }
+
+    @Test
+    void givesUpAfterTheLastAttempt() {
+        paymentOutboxRepository.deleteAll();
+        Payment payment = paymentRepository.save(new Payment(10L, new BigDecimal("10000.00"),
+                Payment.PaymentType.FINE_PAYMENT, Payment.PaymentMethod.VNPAY, 46L));
+        PaymentOutbox message = new PaymentOutbox(payment);
+        message.setAttempts(1);
+        message = paymentOutboxRepository.save(message);
+
+        doThrow(new ResourceAccessException("Read timed out")).when(paymentNotifier).sendPaymentSuccessEmail(any());
+        paymentOutboxRelay.relayBatch();
+        assertThat(paymentOutboxRepository.findById(message.getId()).orElseThrow().getStatus())
+                .isEqualTo(PaymentOutbox.OutboxStatus.FAILED);
+        assertThat(paymentOutboxRelay.relayBatch()).isZero();
+    }
+
+    @Test
+    void doesNotOverwriteAMessageWhoseLeaseAnotherRelayTookOver() {
+        paymentOutboxRepository.deleteAll();
+        Payment payment = paymentRepository.save(new Payment(11L, new BigDecimal("20000.00"),
+                Payment.PaymentType.FINE_PAYMENT, Payment.PaymentMethod.VNPAY, 47L));
+        PaymentOutbox message = paymentOutboxRepository.save(new PaymentOutbox(payment));
+
+        // The lease runs out while the slow delivery is in flight and another relay claims the message
+        doAnswer(invocation -> {
+            PaymentOutbox claimed = paymentOutboxRepository.findById(message.getId()).orElseThrow();
+            claimed.setClaimedBy("other-relay");
+            paymentOutboxRepository.save(claimed);
+            return null;
+        }).when(paymentNotifier).sendPaymentSuccessEmail(any());
+        paymentOutboxRelay.relayBatch();
+
+        PaymentOutbox stillClaimed = paymentOutboxRepository.findById(message.getId()).orElseThrow();
+        assertThat(stillClaimed.getStatus()).isEqualTo(PaymentOutbox.OutboxStatus.PENDING);
+        assertThat(stillClaimed.getClaimedBy()).isEqualTo("other-relay");
+        assertThat(stillClaimed.getAttempts()).isZero();
+    }
+
+    @Test
+    void capsTheBatchSoWorstCaseDeliveriesFitInTheLease() {
+        // 60 s lease, 2 s connect plus 5 s read timeout per delivery
+        assertThat(paymentOutboxRelay.batchSize()).isEqualTo(8);
+    }
+
+    @Test
+    void backsOffExponentiallyUpToTheCap() {
+        assertThat(paymentOutboxRelay.backoff(1)).isEqualTo(Duration.ofSeconds(5));
+        assertThat(paymentOutboxRelay.backoff(3)).isEqualTo(Duration.ofSeconds(20));
+        assertThat(paymentOutboxRelay.backoff(40)).isEqualTo(Duration.ofHours(1));
+    }
+
+    private Map<String, String> ipn(String paymentId, String amount) {
+        Map<String, String> params = new HashMap<>();
+        params.put("vnp_TmnCode", "OAZCZS0F");
+        params.put("vnp_TxnRef", paymentId);
+        params.put("vnp_Amount", amount);
+        params.put("vnp_ResponseCode", "00");
+        params.put("vnp_TransactionStatus", "00");
+        params.put("vnp_TransactionNo", "14000002");
+        params.put("vnp_PayDate", "20261019103500");
+        params.put(VNPaySigner.SECURE_HASH, vnPaySigner.sign(params));
+        return params;
+    }
+}
@@ -0,0 +1,154 @@
+package com.library.payment_service.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.library.payment_service.entity.Payment;
+import com.library.payment_service.entity.PaymentOutbox;
+import com.library.payment_service.repository.PaymentOutboxRepository;
+import com.library.payment_service.repository.PaymentRepository;
+import com.library.payment_service.simulator.VNPaySimulator;
+
+// Every payment is paid on the simulated gateway, but none of the callbacks reach the service
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.DEFINED_PORT, properties = {
+        "server.port=18084",
+        "spring.datasource.url=jdbc:h2:mem:reconcile",
+        "vnpay.simulator.success-rate=1",
+        "vnpay.simulator.callback-loss-rate=1",
+        "vnpay.simulator.query-latency-ms=0",
+        "payment.reconcile.stale-after-ms=0",
+        "payment.reconcile.abandon-after-ms=0",
+        "payment.reconcile.page-size=2"
+})
+@ActiveProfiles("vnpay-sim")
+class PaymentReconcilerTest {
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentReconciler paymentReconciler;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentOutboxRepository paymentOutboxRepository;
+
+    @Autowired
+    private VNPaySimulator vnPaySimulator;
+
+    @Autowired
+    private VNPaySigner vnPaySigner;
+
+    @Autowired
+    private VNPayQueryClient vnPayQueryClient;
+
+    @Test
+    void settlesPaymentsWhoseCallbacksWereLost() throws Exception {
+        // Settle whatever the other tests left pending, and forget the notifications that queued
+        paymentReconciler.reconcile();
+        paymentOutboxRepository.deleteAll();
+        List<String> paid = new ArrayList<>();
+        try (HttpClient client = HttpClient.newHttpClient()) {
+            for (int i = 0; i < 3; i++) {
+                Map<String, String> created = paymentService.createVNPayPayment(20L + i, new BigDecimal("15000.00"),
+                        100L + i, "Late fee " + i, "fine", "127.0.0.1");
+                HttpResponse<String> page = client.send(HttpRequest.newBuilder(URI.create(created.get("paymentUrl"))).build(),
+                        HttpResponse.BodyHandlers.ofString());
+                assertThat(page.statusCode()).isEqualTo(200);
+                paid.add(created.get("paymentId"));
+            }
+        }
+        // Created but never taken to the gateway
+        String abandoned = paymentService.createVNPayPayment(30L, new BigDecimal("5000.00"), 110L, "Borrow fee",
+                "borrow", "127.0.0.1").get("paymentId");
+        assertThat(paymentRepository.findById(paid.get(0)).orElseThrow().getStatus())
+                .isEqualTo(Payment.PaymentStatus.PENDING);
+
+        PaymentReconciler.Summary summary = paymentReconciler.reconcile();
+        assertThat(summary.checked()).isEqualTo(4);
+        assertThat(summary.paid()).isEqualTo(3);
+        assertThat(summary.failed()).isEqualTo(1);
+        for (String paymentId : paid) {
+            Payment payment = paymentRepository.findById(paymentId).orElseThrow();
+            assertThat(payment.getStatus()).isEqualTo(Payment.PaymentStatus.SUCCESS);
+            assertThat(payment.getTransactionId()).isNotBlank();
+        }
+        assertThat(paymentRepository.findById(abandoned).orElseThrow().getStatus())
+                .isEqualTo(Payment.PaymentStatus.FAILED);
+        assertThat(paymentOutboxRepository.findAll()).extracting(PaymentOutbox::getPaymentId)
+                .containsExactlyInAnyOrderElementsOf(paid);
+
+        assertThat(paymentReconciler.reconcile().checked()).isZero();
+    }
+
+    @Test
+    void simulatorOnlyFindsATransactionByItsCreateDate() throws Exception {
+        Map<String, String> created = paymentService.createVNPayPayment(40L, new BigDecimal("8000.00"), 120L,
+                "Borrow fee", "borrow", "127.0.0.1");
+        try (HttpClient client = HttpClient.newHttpClient()) {
+            client.send(HttpRequest.newBuilder(URI.create(created.get("paymentUrl"))).build(),
+                    HttpResponse.BodyHandlers.discarding());
+        }
+        String paymentId = created.get("paymentId");
+        String createDate = paymentRepository.findById(paymentId).orElseThrow().getGatewayCreateDate();
+        assertThat(created.get("paymentUrl")).contains("vnp_CreateDate=" + createDate);
+
+        assertThat(vnPaySimulator.query(signedQuery(paymentId, createDate))).containsEntry("vnp_ResponseCode", "00");
+        String otherDate = VNPayQueryClient.format(LocalDateTime.now().plusHours(1));
+        assertThat(vnPaySimulator.query(signedQuery(paymentId, otherDate))).containsEntry("vnp_ResponseCode", "91");
+
+        // The client sends the stored create date, not one derived from created_at
+        Payment payment = paymentRepository.findById(paymentId).orElseThrow();
+        payment.setCreatedAt(payment.getCreatedAt().minusMinutes(1));
+        assertThat(vnPayQueryClient.query(payment).outcome()).isEqualTo(VNPayQueryClient.Outcome.PAID);
+    }
+
+    @Test
+    void simulatorRejectsAnUnsignedQuery() {
+        Map<String, String> request = new HashMap<>();
+        request.put("vnp_RequestId", "r1");
+        request.put("vnp_Version", "2.1.0");
+        request.put("vnp_Command", VNPayQueryClient.COMMAND);
+        request.put("vnp_TmnCode", "OAZCZS0F");
+        request.put("vnp_TxnRef", "unknown");
+        request.put(VNPaySigner.SECURE_HASH, vnPaySigner.signFields("tampered"));
+
+        Map<String, String> response = vnPaySimulator.query(request);
+        assertThat(response).containsEntry("vnp_ResponseCode", "97");
+        assertThat(vnPaySigner.verifyFields(response.get(VNPaySigner.SECURE_HASH),
+                VNPayQueryClient.values(response, VNPayQueryClient.RESPONSE_FIELDS))).isTrue();
+    }
+
+    private Map<String, String> signedQuery(String paymentId, String transactionDate) {
+        Map<String, String> request = new HashMap<>();
+        request.put("vnp_RequestId", "r2");
+        request.put("vnp_Version", "2.1.0");
+        request.put("vnp_Command", VNPayQueryClient.COMMAND);
+        request.put("vnp_TmnCode", "OAZCZS0F");
+        request.put("vnp_TxnRef", paymentId);
+        request.put("vnp_TransactionDate", transactionDate);
+        request.put("vnp_CreateDate", VNPayQueryClient.format(LocalDateTime.now()));
+        request.put("vnp_IpAddr", "127.0.0.1");
+        request.put("vnp_OrderInfo", "Query payment " + paymentId);
+        request.put(VNPaySigner.SECURE_HASH,
+                vnPaySigner.signFields(VNPayQueryClient.values(request, VNPayQueryClient.REQUEST_FIELDS)));
+        return request;
+    }
+}
@@ -0,0 +1,96 @@
+package com.library.payment_service.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.library.payment_service.entity.Payment;
+import com.library.payment_service.repository.PaymentRepository;
+
+@SpringBootTest
+class VNPayCallbackTest {
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private VNPaySigner vnPaySigner;
+
+    @Test
+    void settlesAPaymentOnceAndAcknowledgesRepeats() throws Exception {
+        Payment payment = paymentRepository.save(new Payment(7L, new BigDecimal("50000.00"),
+                Payment.PaymentType.FINE_PAYMENT, Payment.PaymentMethod.VNPAY, 42L));
+
+        assertThat(paymentService.processVNPayIpn(ipn(payment.getId(), "5000000", true)))
+                .containsEntry("RspCode", "00");
+        Payment settled = paymentRepository.findById(payment.getId()).orElseThrow();
+        assertThat(settled.getStatus()).isEqualTo(Payment.PaymentStatus.SUCCESS);
+        assertThat(settled.getTransactionId()).isEqualTo("14000001");
+
+        assertThat(paymentService.processVNPayIpn(ipn(payment.getId(), "5000000", true)))
+                .containsEntry("RspCode", "02");
+    }
+
+    @Test
+    void rejectsBadCallbacks() throws Exception {
+        Payment payment = paymentRepository.save(new Payment(7L, new BigDecimal("20000.00"),
+                Payment.PaymentType.BORROW_FEE, Payment.PaymentMethod.VNPAY, 43L));
+
+        Map<String, String> tampered = ipn(payment.getId(), "2000000", true);
+        tampered.put("vnp_ResponseCode", "24");
+        assertThat(paymentService.processVNPayIpn(tampered)).containsEntry("RspCode", "97");
+        assertThat(paymentService.processVNPayIpn(ipn("no-such-payment", "2000000", true)))
+                .containsEntry("RspCode", "01");
+        assertThat(paymentService.processVNPayIpn(ipn(payment.getId(), "100", true)))
+                .containsEntry("RspCode", "04");
+
+        assertThat(paymentService.processVNPayIpn(ipn(payment.getId(), "2000000", false)))
+                .containsEntry("RspCode", "00");
+        assertThat(paymentRepository.findById(payment.getId()).orElseThrow().getStatus())
+                .isEqualTo(Payment.PaymentStatus.FAILED);
+    }
+
+    @Test
+    void returnSettlesOnceAndReportsThePaymentType() {
+        Payment payment = paymentRepository.save(new Payment(8L, new BigDecimal("10000.00"),
+                Payment.PaymentType.FINE_PAYMENT, Payment.PaymentMethod.VNPAY, 44L));
+
+        PaymentService.VNPayReturnOutcome outcome = paymentService.handleVNPayReturn(ipn(payment.getId(), "1000000", true));
+        assertThat(outcome.signatureValid()).isTrue();
+        assertThat(outcome.paymentType()).isEqualTo(Payment.PaymentType.FINE_PAYMENT);
+        assertThat(paymentRepository.findById(payment.getId()).orElseThrow().getStatus())
+                .isEqualTo(Payment.PaymentStatus.SUCCESS);
+
+        // A late failure callback does not undo the settled payment
+        paymentService.handleVNPayReturn(ipn(payment.getId(), "1000000", false));
+        assertThat(paymentRepository.findById(payment.getId()).orElseThrow().getStatus())
+                .isEqualTo(Payment.PaymentStatus.SUCCESS);
+
+        Map<String, String> tampered = ipn(payment.getId(), "1000000", true);
+        tampered.put("vnp_Amount", "1");
+        assertThat(paymentService.handleVNPayReturn(tampered).signatureValid()).isFalse();
+    }
+
+    private Map<String, String> ipn(String paymentId, String amount, boolean paid) {
+        Map<String, String> params = new HashMap<>();
+        params.put("vnp_TmnCode", "OAZCZS0F");
+        params.put("vnp_TxnRef", paymentId);
+        params.put("vnp_Amount", amount);
+        params.put("vnp_ResponseCode", paid ? "00" : "24");
+        params.put("vnp_TransactionStatus", paid ? "00" : "02");
+        params.put("vnp_TransactionNo", "14000001");
+        params.put("vnp_BankCode", "NCB");
+        params.put("vnp_PayDate", "20261019103500");
+        params.put(VNPaySigner.SECURE_HASH, vnPaySigner.sign(params));
+        return params;
+    }
+}
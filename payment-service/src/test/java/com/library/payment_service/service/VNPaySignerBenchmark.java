@@ -0,0 +1,64 @@
+package com.library.payment_service.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Sign and verify cost of VNPaySigner against the inline signing code it replaced, on the
+ * parameters of a payment request. Run with ./gradlew benchmark.
+ */
+@Tag("benchmark")
+class VNPaySignerBenchmark {
+
+    private static final int WARM_UP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+    private static final int CALLS_PER_ROUND = 20_000;
+
+    // Keeps the JIT from dropping the calls
+    private long sink;
+
+    @Test
+    void compareSigners() throws Exception {
+        VNPaySigner signer = VNPaySignerTest.newSigner();
+        Map<String, String> params = VNPaySignerTest.paymentParams();
+        Map<String, String> returned = VNPaySignerTest.paymentParams();
+        returned.put(VNPaySigner.SECURE_HASH, signer.sign(returned));
+
+        double legacySign = nanosPerCall(() -> VNPaySignerTest.legacyHmac(VNPaySignerTest.legacyHashData(params)).length());
+        double signerSign = nanosPerCall(() -> signer.signQuery(params).query().length());
+        double signerVerify = nanosPerCall(() -> signer.verify(returned) ? 1 : 0);
+
+        System.out.printf("sign    inline: %8.0f ns/op   signer: %8.0f ns/op   (%.1fx)%n",
+                legacySign, signerSign, legacySign / signerSign);
+        System.out.printf("verify  signer: %8.0f ns/op%n", signerVerify);
+        assertThat(sink).isNotZero();
+    }
+
+    private double nanosPerCall(Call call) throws Exception {
+        for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+            run(call);
+        }
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            run(call);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return (double) best / CALLS_PER_ROUND;
+    }
+
+    private void run(Call call) throws Exception {
+        for (int i = 0; i < CALLS_PER_ROUND; i++) {
+            sink += call.run();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Call {
+        int run() throws Exception;
+    }
+}
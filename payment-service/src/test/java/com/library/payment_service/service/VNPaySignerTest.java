@@ -0,0 +1,105 @@
+package com.library.payment_service.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+
+import com.library.payment_service.config.VNPayConfig;
+
+class VNPaySignerTest {
+
+    static final String SECRET = "D0DTJ6R932I9FJPC6G9J3M0DSLIM6AEM";
+
+    private final VNPaySigner signer = newSigner();
+
+    @Test
+    void signsLikeTheFormerInlineImplementation() throws Exception {
+        Map<String, String> params = paymentParams();
+
+        VNPaySigner.SignedQuery signed = signer.signQuery(params);
+
+        assertThat(signed.hashData()).isEqualTo(legacyHashData(params));
+        assertThat(signed.secureHash()).isEqualTo(legacyHmac(legacyHashData(params)));
+        assertThat(signed.query()).isEqualTo(legacyHashData(params) + "&vnp_SecureHash=" + signed.secureHash());
+    }
+
+    @Test
+    void verifiesReturnedParameters() {
+        Map<String, String> params = paymentParams();
+        params.put(VNPaySigner.SECURE_HASH, signer.sign(params));
+        params.put(VNPaySigner.SECURE_HASH_TYPE, "HmacSHA512");
+        assertThat(signer.verify(params)).isTrue();
+
+        params.put("vnp_Amount", "1");
+        assertThat(signer.verify(params)).isFalse();
+        params.remove(VNPaySigner.SECURE_HASH);
+        assertThat(signer.verify(params)).isFalse();
+    }
+
+    static VNPaySigner newSigner() {
+        VNPayConfig config = new VNPayConfig();
+        config.setHashSecret(SECRET);
+        return new VNPaySigner(config);
+    }
+
+    static Map<String, String> paymentParams() {
+        Map<String, String> params = new HashMap<>();
+        params.put("vnp_Version", "2.1.0");
+        params.put("vnp_Command", "pay");
+        params.put("vnp_TmnCode", "OAZCZS0F");
+        params.put("vnp_Amount", "5000000");
+        params.put("vnp_CurrCode", "VND");
+        params.put("vnp_BankCode", "NCB");
+        params.put("vnp_TxnRef", "5f0c4a9e-8c1b-4f7e-9a57-0d2b1c3e4f56");
+        params.put("vnp_OrderInfo", "Thanh toán phí mượn sách #42 (user 7) ~ 😀");
+        params.put("vnp_OrderType", "other");
+        params.put("vnp_Locale", "vn");
+        params.put("vnp_ReturnUrl", "http://localhost:8084/payments/vnpay/return");
+        params.put("vnp_IpAddr", "0:0:0:0:0:0:0:1");
+        params.put("vnp_CreateDate", "20261019103000");
+        params.put("vnp_ExpireDate", "20261019104500");
+        return params;
+    }
+
+    // The signing code PaymentService and VNPayReturnController used to carry inline
+    static String legacyHashData(Map<String, String> params) throws Exception {
+        List<String> fieldNames = new ArrayList<>(params.keySet());
+        Collections.sort(fieldNames);
+        StringBuilder hashData = new StringBuilder();
+        for (String fieldName : fieldNames) {
+            String fieldValue = params.get(fieldName);
+            if ((fieldValue != null) && (fieldValue.length() > 0)) {
+                hashData.append(fieldName);
+                hashData.append('=');
+                hashData.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
+                if (fieldNames.indexOf(fieldName) < fieldNames.size() - 1) {
+                    hashData.append('&');
+                }
+            }
+        }
+        return hashData.toString();
+    }
+
+    static String legacyHmac(String data) throws Exception {
+        Mac sha512_HMAC = Mac.getInstance("HmacSHA512");
+        SecretKeySpec keySpec = new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA512");
+        sha512_HMAC.init(keySpec);
+        byte[] result = sha512_HMAC.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder();
+        for (byte b : result) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
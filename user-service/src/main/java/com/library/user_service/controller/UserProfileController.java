@@ -18,6 +18,7 @@ import org.springframework.web.server.ResponseStatusException;
 import com.library.user_service.dto.UpdateUserProfileDto;
 import com.library.user_service.dto.UserProfileDto;
 import com.library.user_service.dto.UserProfileResponseDto;
+import com.library.user_service.service.BorrowLockCacheClient;
 import com.library.user_service.service.UserProfileService;
 
 @RestController
@@ -26,9 +27,11 @@ import com.library.user_service.service.UserProfileService;
 public class UserProfileController {
 
     private final UserProfileService userProfileService;
+    private final BorrowLockCacheClient borrowLockCacheClient;
 
-    public UserProfileController(UserProfileService userProfileService) {
+    public UserProfileController(UserProfileService userProfileService, BorrowLockCacheClient borrowLockCacheClient) {
         this.userProfileService = userProfileService;
+        this.borrowLockCacheClient = borrowLockCacheClient;
     }
 
     @GetMapping
@@ -62,6 +65,10 @@ public class UserProfileController {
             @PathVariable Long id,
             @RequestBody UpdateUserProfileDto updateDto) {
         UserProfileResponseDto updated = userProfileService.updateUserProfile(id, updateDto);
+        // Committed by now; borrow-service must not keep serving the old lock state from its cache
+        if (updateDto.getBorrowLock() != null) {
+            borrowLockCacheClient.evict(updated.getUserId());
+        }
         return ResponseEntity.ok(updated);
     }
 
@@ -71,6 +78,12 @@ public class UserProfileController {
         return ResponseEntity.noContent().build();
     }
 
+    @PutMapping("/lock")
+    public ResponseEntity<Void> lockBorrowingBatch(@RequestBody List<Long> userIds) {
+        userProfileService.lockUsersBorrowing(userIds);
+        return ResponseEntity.ok().build();
+    }
+
     @PutMapping("/{userId}/lock")
     public ResponseEntity<Void> lockBorrowing(@PathVariable Long userId) {
         userProfileService.lockUserBorrowing(userId);
@@ -1,8 +1,13 @@
 package com.library.user_service.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.library.user_service.entity.UserProfile;
@@ -10,4 +15,8 @@ import com.library.user_service.entity.UserProfile;
 @Repository
 public interface UserProfileRepository extends JpaRepository<UserProfile, Long> {
     Optional<UserProfile> findByUserId(Long userId);
+
+    @Modifying
+    @Query("UPDATE UserProfile p SET p.borrowLock = true, p.updatedAt = :now WHERE p.userId IN :userIds AND p.borrowLock = false")
+    int lockBorrowingByUserIds(@Param("userIds") Collection<Long> userIds, @Param("now") LocalDateTime now);
 }
\ No newline at end of file
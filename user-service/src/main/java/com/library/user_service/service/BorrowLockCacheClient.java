@@ -0,0 +1,35 @@
+package com.library.user_service.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Tells borrow-service to drop its cached borrow lock state for a user whose lock an admin
+ * changed here, so the change applies to the next checkout instead of after the cache TTL.
+ */
+@Component
+public class BorrowLockCacheClient {
+
+    private final RestTemplate restTemplate;
+    private final String borrowServiceUrl;
+
+    public BorrowLockCacheClient(@Value("${borrow-service.url:http://localhost:8086}") String borrowServiceUrl) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(2000);
+        requestFactory.setReadTimeout(2000);
+        this.restTemplate = new RestTemplate(requestFactory);
+        this.borrowServiceUrl = borrowServiceUrl;
+    }
+
+    // Best effort: borrow-service keeps an unlocked state only briefly, and re-reads it after that
+    public void evict(Long userId) {
+        try {
+            restTemplate.delete(borrowServiceUrl + "/borrows/lock-cache/" + userId);
+        } catch (RestClientException e) {
+            System.err.println("Failed to evict borrow lock cache for user " + userId + ": " + e.getMessage());
+        }
+    }
+}
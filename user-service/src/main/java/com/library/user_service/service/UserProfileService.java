@@ -1,5 +1,6 @@
 package com.library.user_service.service;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -94,6 +95,13 @@ public class UserProfileService {
         userProfileRepository.save(userProfile);
     }
 
+    public int lockUsersBorrowing(List<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return 0;
+        }
+        return userProfileRepository.lockBorrowingByUserIds(userIds, LocalDateTime.now());
+    }
+
     public void unlockUserBorrowing(Long userId) {
         UserProfile userProfile = userProfileRepository.findByUserId(userId)
                 .orElseThrow(() -> new RuntimeException("User profile not found for user ID: " + userId));